@@ -34,7 +34,7 @@ fi
 
 export PATH="${PATH}:${CI_BIN_DIRECTORY}:."
 
-java -jar "${CI_BIN_DIRECTORY}/ci-tools.jar" \
+ci-tools.sh \
   check-commits-since \
   "@.ci-local/check-commits-since.txt" | tee "commits-check.json"
 
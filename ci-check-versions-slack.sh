@@ -35,7 +35,7 @@ fi
 
 export PATH="${PATH}:${CI_BIN_DIRECTORY}:."
 
-java -jar "${CI_BIN_DIRECTORY}/ci-tools.jar" \
+ci-tools.sh \
   check-versions \
   --configuration .ci-local/check-versions.properties \
   --formatter slack | tee version-check.json
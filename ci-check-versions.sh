@@ -29,4 +29,4 @@ CI_BIN_DIRECTORY=$(realpath .ci) ||
 
 export PATH="${PATH}:${CI_BIN_DIRECTORY}:."
 
-exec java -jar "${CI_BIN_DIRECTORY}/ci-tools.jar" check-versions --configuration .ci-local/check-versions.properties
+exec ci-tools.sh check-versions --configuration .ci-local/check-versions.properties "$@"
@@ -0,0 +1,163 @@
+#!/bin/sh
+
+#------------------------------------------------------------------------
+# A script to run one of the commands in ci-tools.jar. If a ci-tools
+# daemon (started with "ci-tools.jar serve") is listening on the local
+# port given by CI_TOOLS_DAEMON_PORT (9150 by default), the command is run
+# by the daemon. Otherwise, the command is run in a new JVM.
+#
+# The daemon is only used if the token file that it writes at startup
+# (CI_TOOLS_DAEMON_TOKEN_FILE, by default daemon-<port>.token in
+# ~/.cache/ci-tools) exists and is owned by the current user, and only if
+# the daemon was started from a jar with the same checksum as the jar
+# used by this script. The daemon rejects any other request, and the
+# command is then run in a new JVM.
+#
+# The JVM is started with a class-data-sharing archive when one is
+# available (see cds_configure below).
+#
+# Usage: ci-tools.sh <command> [arguments]
+#
+
+#------------------------------------------------------------------------
+# Utility methods
+
+fatal()
+{
+  echo "ci-tools.sh: fatal: $1" 1>&2
+  exit 1
+}
+
+CI_BIN_DIRECTORY=$(realpath .ci) ||
+  fatal "could not determine bin directory"
+
+CI_TOOLS_JAR="${CI_BIN_DIRECTORY}/ci-tools.jar"
+CI_TOOLS_JAVA_OPTIONS=""
+
+#------------------------------------------------------------------------
+# Use a class-data-sharing archive to reduce JVM startup time, unless
+# CI_TOOLS_CDS is set to "off". A JVM only accepts an archive that was
+# dumped from the exact jar file (including its modification time) that it
+# is running, and a fresh checkout gives the jar a new modification time.
+# The jar is therefore copied into a cache directory, named after its
+# checksum, and an archive is dumped for the copy using the class list
+# shipped beside the jar (ci-tools.classlist, which "mvn -P cds package"
+# produces). The archive is dumped in the background, so the first
+# invocation for a given jar is no slower, and later invocations use the
+# archive. If the archive cannot be used (for example, after the JVM is
+# upgraded), the JVM silently ignores it.
+#
+
+cds_configure()
+{
+  CDS_CLASS_LIST="${CI_BIN_DIRECTORY}/ci-tools.classlist"
+  if [ "${CI_TOOLS_CDS:-on}" = "off" ] || [ ! -f "${CDS_CLASS_LIST}" ]
+  then
+    return 0
+  fi
+
+  CDS_DIRECTORY="${CI_TOOLS_CDS_DIRECTORY:-${HOME}/.cache/ci-tools}"
+  CDS_KEY=$(cksum < "${CI_TOOLS_JAR}" | cut -d' ' -f1) || return 0
+  CDS_JAR="${CDS_DIRECTORY}/ci-tools-${CDS_KEY}.jar"
+  CDS_ARCHIVE="${CDS_DIRECTORY}/ci-tools-${CDS_KEY}.jsa"
+
+  if [ -f "${CDS_ARCHIVE}" ]
+  then
+    CI_TOOLS_JAR="${CDS_JAR}"
+    CI_TOOLS_JAVA_OPTIONS="-XX:SharedArchiveFile=${CDS_ARCHIVE} -Xshare:auto -Xlog:cds=off"
+    return 0
+  fi
+
+  # Only one process dumps the archive for a given jar.
+  mkdir -p "${CDS_DIRECTORY}" 2>/dev/null || return 0
+  mkdir "${CDS_DIRECTORY}/ci-tools-${CDS_KEY}.lock" 2>/dev/null || return 0
+
+  (
+    cp "${CI_TOOLS_JAR}" "${CDS_JAR}" &&
+    java -Xshare:dump \
+      -XX:SharedClassListFile="${CDS_CLASS_LIST}" \
+      -XX:SharedArchiveFile="${CDS_ARCHIVE}.tmp" \
+      -classpath "${CDS_JAR}" &&
+    mv "${CDS_ARCHIVE}.tmp" "${CDS_ARCHIVE}"
+  ) > /dev/null 2>&1 &
+}
+
+COMMAND="$1"
+if [ -z "${COMMAND}" ]
+then
+  fatal "usage: ci-tools.sh <command> [arguments]"
+fi
+
+case "${COMMAND}" in
+  check-versions|check-commits-since)
+    ;;
+  *)
+    cds_configure
+    exec java ${CI_TOOLS_JAVA_OPTIONS} -jar "${CI_TOOLS_JAR}" "$@"
+    ;;
+esac
+
+shift
+
+DAEMON_PORT="${CI_TOOLS_DAEMON_PORT:-9150}"
+DAEMON_TOKEN_FILE="${CI_TOOLS_DAEMON_TOKEN_FILE:-${HOME}/.cache/ci-tools/daemon-${DAEMON_PORT}.token}"
+
+run_in_jvm()
+{
+  cds_configure
+  exec java ${CI_TOOLS_JAVA_OPTIONS} -jar "${CI_TOOLS_JAR}" "${COMMAND}" "$@"
+}
+
+if [ ! -f "${DAEMON_TOKEN_FILE}" ] || [ ! -O "${DAEMON_TOKEN_FILE}" ]
+then
+  run_in_jvm "$@"
+fi
+
+if command -v sha256sum > /dev/null 2>&1
+then
+  DAEMON_JAR_SHA256=$(sha256sum < "${CI_TOOLS_JAR}" | cut -d' ' -f1)
+else
+  DAEMON_JAR_SHA256=$(shasum -a 256 < "${CI_TOOLS_JAR}" | cut -d' ' -f1)
+fi
+if [ -z "${DAEMON_JAR_SHA256}" ]
+then
+  run_in_jvm "$@"
+fi
+
+DAEMON_TEMPORARY=$(mktemp -d) ||
+  fatal "could not create temporary directory"
+
+trap 'rm -rf "${DAEMON_TEMPORARY}"' EXIT
+
+for ARGUMENT in "$@"
+do
+  printf '%s\n' "${ARGUMENT}"
+done > "${DAEMON_TEMPORARY}/arguments"
+
+# The token is passed in a file, so that it never appears in a command line.
+{
+  printf 'X-Working-Directory: %s\n' "$(pwd)"
+  printf 'X-Jar-SHA256: %s\n' "${DAEMON_JAR_SHA256}"
+  printf 'X-Token: %s\n' "$(cat "${DAEMON_TOKEN_FILE}")"
+} > "${DAEMON_TEMPORARY}/request-headers"
+
+if curl --silent --fail \
+  --connect-timeout 1 \
+  --header "@${DAEMON_TEMPORARY}/request-headers" \
+  --data-binary "@${DAEMON_TEMPORARY}/arguments" \
+  --dump-header "${DAEMON_TEMPORARY}/headers" \
+  --output "${DAEMON_TEMPORARY}/output" \
+  "http://127.0.0.1:${DAEMON_PORT}/${COMMAND}"
+then
+  tr -d '\r' < "${DAEMON_TEMPORARY}/headers" |
+    sed -n 's/^[Xx]-[Ll]og: //p' 1>&2
+  cat "${DAEMON_TEMPORARY}/output"
+
+  EXIT_CODE=$(tr -d '\r' < "${DAEMON_TEMPORARY}/headers" |
+    sed -n 's/^[Xx]-[Ee]xit-[Cc]ode: //p')
+  exit "${EXIT_CODE:-1}"
+fi
+
+rm -rf "${DAEMON_TEMPORARY}"
+trap - EXIT
+run_in_jvm "$@"
@@ -0,0 +1,66 @@
+package org.librarysimplified.ci.benchmarks;
+
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for parsing and comparing Maven artifact versions.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ArtifactVersionBenchmark
+{
+  private static final int COUNT = 1024;
+
+  private String[] texts;
+  private DefaultArtifactVersion[] versions;
+
+  @Setup
+  public void setup()
+  {
+    this.texts =
+      BenchmarkFixtures.versions(COUNT).toArray(new String[0]);
+    this.versions =
+      new DefaultArtifactVersion[COUNT];
+
+    for (int index = 0; index < COUNT; ++index) {
+      this.versions[index] = new DefaultArtifactVersion(this.texts[index]);
+    }
+  }
+
+  @Benchmark
+  public void parse(
+    final Blackhole blackhole)
+  {
+    for (final var text : this.texts) {
+      blackhole.consume(new DefaultArtifactVersion(text));
+    }
+  }
+
+  @Benchmark
+  public void compare(
+    final Blackhole blackhole)
+  {
+    for (int index = 1; index < COUNT; ++index) {
+      blackhole.consume(
+        this.versions[index].compareTo(this.versions[index - 1]));
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package org.librarysimplified.ci.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generated fixtures for benchmarks. The fixtures have the same shape as
+ * the hand-written ones used by the test suite, but can be made arbitrarily
+ * large.
+ */
+
+public final class BenchmarkFixtures
+{
+  private BenchmarkFixtures()
+  {
+
+  }
+
+  /**
+   * Generate version strings in a typical mix of formats.
+   *
+   * @param count The number of versions
+   *
+   * @return The versions, in ascending order
+   */
+
+  public static List<String> versions(
+    final int count)
+  {
+    final var results = new ArrayList<String>(count);
+    for (int index = 0; index < count; ++index) {
+      final var major = index / 100;
+      final var minor = (index / 10) % 10;
+      final var patch = index % 10;
+
+      switch (index % 4) {
+        case 0: {
+          results.add(String.format("%d.%d.%d", major, minor, patch));
+          break;
+        }
+        case 1: {
+          results.add(String.format("%d.%d.%d-alpha%02d", major, minor, patch, index % 7));
+          break;
+        }
+        case 2: {
+          results.add(String.format("%d.%d.%d-rc%d", major, minor, patch, index % 3));
+          break;
+        }
+        default: {
+          results.add(String.format("%d.%d.%d.%d", major, minor, patch, index % 5));
+          break;
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Generate a {@code maven-metadata.xml} file listing the given number of
+   * versions, with the layout used by Maven Central.
+   *
+   * @param versionCount The number of versions
+   *
+   * @return The metadata file
+   */
+
+  public static byte[] metadata(
+    final int versionCount)
+  {
+    final var versions = versions(versionCount);
+    final var release = versions.get(versions.size() - 1);
+
+    final var text = new StringBuilder(128 + (versionCount * 40));
+    text.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    text.append("<metadata>\n");
+    text.append("  <groupId>org.example</groupId>\n");
+    text.append("  <artifactId>example</artifactId>\n");
+    text.append("  <versioning>\n");
+    text.append("    <latest>").append(release).append("</latest>\n");
+    text.append("    <release>").append(release).append("</release>\n");
+    text.append("    <versions>\n");
+    for (final var version : versions) {
+      text.append("      <version>").append(version).append("</version>\n");
+    }
+    text.append("    </versions>\n");
+    text.append("    <lastUpdated>20200930144951</lastUpdated>\n");
+    text.append("  </versioning>\n");
+    text.append("</metadata>\n");
+    return text.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @param index The library index
+   *
+   * @return The {@code group:artifact} name of the library with the given
+   * index in generated catalogs
+   */
+
+  public static String moduleName(
+    final int index)
+  {
+    return String.format("org.example.group%d:artifact%d", index / 10, index);
+  }
+
+  /**
+   * Generate a TOML version catalog declaring the given number of libraries.
+   *
+   * @param libraryCount The number of libraries
+   *
+   * @return The catalog text
+   */
+
+  public static String catalog(
+    final int libraryCount)
+  {
+    final var text = new StringBuilder(libraryCount * 96);
+    text.append("[versions]\n");
+    for (int index = 0; index < libraryCount; ++index) {
+      text.append(String.format("v%d = \"1.%d.0\"\n", index, index % 50));
+    }
+
+    text.append("\n[libraries]\n");
+    for (int index = 0; index < libraryCount; ++index) {
+      text.append(
+        String.format(
+          "l%d = { module = \"%s\", version.ref = \"v%d\" }\n",
+          index,
+          moduleName(index),
+          index));
+    }
+    return text.toString();
+  }
+}
@@ -0,0 +1,81 @@
+package org.librarysimplified.ci.benchmarks;
+
+import org.librarysimplified.ci.check_versions.CheckVersionLibrary;
+import org.librarysimplified.ci.check_versions.CheckVersionRepositoryRoutes;
+import org.librarysimplified.ci.check_versions.CheckVersions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for parsing version catalogs of varying sizes. Every second
+ * library in the catalog is marked for checking.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CatalogParseBenchmark
+{
+  @Param({"10", "1000", "50000"})
+  public int libraryCount;
+
+  private Path catalog;
+  private Set<String> checkLibraries;
+  private CheckVersionRepositoryRoutes routes;
+
+  @Setup
+  public void setup()
+    throws Exception
+  {
+    this.catalog = Files.createTempFile("catalog", ".toml");
+    Files.writeString(this.catalog, BenchmarkFixtures.catalog(this.libraryCount));
+
+    this.checkLibraries = new HashSet<>(this.libraryCount);
+    for (int index = 0; index < this.libraryCount; index += 2) {
+      this.checkLibraries.add(BenchmarkFixtures.moduleName(index));
+    }
+
+    this.routes = CheckVersionRepositoryRoutes.parse(List.of(
+      "https://repo1.maven.org/maven2/",
+      "[androidx.]",
+      "https://dl.google.com/dl/android/maven2/"
+    ));
+  }
+
+  @TearDown
+  public void tearDown()
+    throws Exception
+  {
+    Files.deleteIfExists(this.catalog);
+  }
+
+  @Benchmark
+  public List<CheckVersionLibrary> parse()
+    throws Exception
+  {
+    return CheckVersions.parseLibraries(
+      this.catalog,
+      this.checkLibraries,
+      this.routes);
+  }
+}
@@ -0,0 +1,240 @@
+package org.librarysimplified.ci.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.librarysimplified.ci.ExitException;
+import org.librarysimplified.ci.check_versions.CheckVersions;
+import org.librarysimplified.ci.check_versions.CheckVersionsContext;
+import org.librarysimplified.ci.tests.FakeMavenRepository;
+import org.librarysimplified.ci.tests.TestDirectories;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end benchmarks for {@code check-versions} against a
+ * {@link FakeMavenRepository} running in the benchmark process, so that
+ * the benchmarks need no network access. Each invocation checks a
+ * generated catalog of {@code libraries} libraries, all of which are
+ * up-to-date, under one of the following network conditions:
+ *
+ * <ul>
+ *   <li>{@code lan}: 1ms latency, plus up to 1ms of jitter</li>
+ *   <li>{@code wan}: 40ms latency, plus up to 40ms of jitter</li>
+ *   <li>{@code lossy}: as {@code wan}, but 2% of requests fail with
+ *   {@code 500} and 1% are throttled with {@code 429}</li>
+ *   <li>{@code throttled}: 10ms latency, plus up to 10ms of jitter, with the
+ *   repository accepting at most 2000 requests per second</li>
+ * </ul>
+ *
+ * JMH reports the time taken by each run. At the end of each trial, the
+ * throughput (lookups per second) and the median and 99th percentile of
+ * the lookup times reported by the ndjson formatter, across all measured
+ * runs, are printed.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+public class CheckVersionsThroughputBenchmark
+{
+  @Param({"1000", "10000"})
+  public int libraries;
+
+  @Param({"lan", "wan", "lossy", "throttled"})
+  public String conditions;
+
+  @Param({"8", "32"})
+  public int threads;
+
+  private FakeMavenRepository repository;
+  private Path directory;
+  private List<String> arguments;
+  private ByteArrayOutputStream output;
+  private long runNanos;
+  private long[] lookupMillis;
+  private int lookupCount;
+  private long totalNanos;
+  private int failedRuns;
+
+  @Setup(Level.Trial)
+  public void setup()
+    throws Exception
+  {
+    this.repository = FakeMavenRepository.create(this.libraries);
+
+    switch (this.conditions) {
+      case "lan": {
+        this.repository.setLatency(Duration.ofMillis(1L), Duration.ofMillis(1L));
+        break;
+      }
+      case "wan": {
+        this.repository.setLatency(Duration.ofMillis(40L), Duration.ofMillis(40L));
+        break;
+      }
+      case "lossy": {
+        this.repository.setLatency(Duration.ofMillis(40L), Duration.ofMillis(40L));
+        this.repository.setErrorRate(0.02);
+        this.repository.setThrottleRate(0.01, Duration.ZERO);
+        break;
+      }
+      case "throttled": {
+        this.repository.setLatency(Duration.ofMillis(10L), Duration.ofMillis(10L));
+        this.repository.setRequestLimit(2000);
+        break;
+      }
+      default: {
+        throw new IllegalArgumentException("Unrecognized conditions: " + this.conditions);
+      }
+    }
+
+    this.directory = TestDirectories.createTempDirectory();
+
+    final var configuration =
+      this.repository.writeProject(this.directory, this.libraries);
+
+    this.arguments = List.of(
+      "--configuration",
+      configuration.toString(),
+      "--formatter",
+      "ndjson",
+      "--threads",
+      Integer.toString(this.threads),
+      "--maxStreamsPerHost",
+      Integer.toString(this.threads),
+      "--requestsPerSecond",
+      "5000",
+      "--requestBurst",
+      "64",
+      "--retryAttempts",
+      "10",
+      "--retryBaseDelayMilliseconds",
+      "10",
+      "--retryMaximumDelayMilliseconds",
+      "1000"
+    );
+
+    this.lookupMillis = new long[this.libraries * 16];
+    this.lookupCount = 0;
+    this.totalNanos = 0L;
+    this.failedRuns = 0;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown()
+    throws Exception
+  {
+    this.repository.close();
+    TestDirectories.deleteDirectory(this.directory);
+
+    final var sorted = Arrays.copyOf(this.lookupMillis, this.lookupCount);
+    Arrays.sort(sorted);
+
+    final var seconds = (double) this.totalNanos / 1_000_000_000.0;
+    System.out.printf(
+      "%n%d libraries, %s, %d threads: %.1f lookups/s, lookup p50 %d ms, p99 %d ms, max %d ms, %d of %d requests throttled, %d failed runs%n",
+      Integer.valueOf(this.libraries),
+      this.conditions,
+      Integer.valueOf(this.threads),
+      Double.valueOf(seconds > 0.0 ? (double) this.lookupCount / seconds : 0.0),
+      Long.valueOf(percentileOf(sorted, 0.50)),
+      Long.valueOf(percentileOf(sorted, 0.99)),
+      Long.valueOf(percentileOf(sorted, 1.0)),
+      Long.valueOf(this.repository.responses(429)),
+      Long.valueOf(this.repository.requests()),
+      Integer.valueOf(this.failedRuns));
+  }
+
+  private static long percentileOf(
+    final long[] sorted,
+    final double fraction)
+  {
+    if (sorted.length == 0) {
+      return 0L;
+    }
+    final var index = (int) Math.ceil(fraction * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+  }
+
+  /**
+   * Record the lookup times of each measured run. Runs during warmup are
+   * not recorded.
+   */
+
+  @TearDown(Level.Iteration)
+  public void record(
+    final IterationParams iteration)
+    throws Exception
+  {
+    if (iteration.getType() != IterationType.MEASUREMENT) {
+      return;
+    }
+
+    this.totalNanos += this.runNanos;
+
+    final var mapper = new ObjectMapper();
+    final var text = this.output.toString(StandardCharsets.UTF_8);
+    for (final var line : text.split("\n")) {
+      if (line.isBlank()) {
+        continue;
+      }
+
+      final var timings = mapper.readTree(line).get("timings");
+      if (timings == null) {
+        continue;
+      }
+      if (this.lookupCount == this.lookupMillis.length) {
+        this.lookupMillis =
+          Arrays.copyOf(this.lookupMillis, this.lookupMillis.length * 2);
+      }
+      this.lookupMillis[this.lookupCount] =
+        timings.get("lookupMilliseconds").asLong();
+      ++this.lookupCount;
+    }
+  }
+
+  @Benchmark
+  public int checkVersions()
+    throws Exception
+  {
+    this.output = new ByteArrayOutputStream(this.libraries * 400);
+
+    final var timeStarted = System.nanoTime();
+    try {
+      CheckVersions.run(
+        CheckVersionsContext.create(),
+        this.directory,
+        this.arguments.toArray(new String[0]),
+        new PrintStream(this.output, false, StandardCharsets.UTF_8)
+      );
+    } catch (final ExitException e) {
+      ++this.failedRuns;
+    } finally {
+      this.runNanos = System.nanoTime() - timeStarted;
+    }
+    return this.output.size();
+  }
+}
@@ -0,0 +1,68 @@
+package org.librarysimplified.ci.benchmarks;
+
+import org.librarysimplified.ci.check_versions.CheckVersionMetadataParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathFactory;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for parsing the release version out of
+ * {@code maven-metadata.xml} files of varying sizes. The DOM benchmark
+ * reproduces the original XPath-based implementation as a baseline.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MetadataParseBenchmark
+{
+  @Param({"1", "100", "5000"})
+  public int versionCount;
+
+  private byte[] metadata;
+
+  @Setup
+  public void setup()
+  {
+    this.metadata = BenchmarkFixtures.metadata(this.versionCount);
+  }
+
+  @Benchmark
+  public String parseStreaming()
+    throws Exception
+  {
+    return CheckVersionMetadataParser.parseRelease(
+      new ByteArrayInputStream(this.metadata));
+  }
+
+  @Benchmark
+  public String parseDOM()
+    throws Exception
+  {
+    final var expression =
+      XPathFactory.newInstance()
+        .newXPath()
+        .compile("/metadata/versioning/release");
+    final var document =
+      DocumentBuilderFactory.newDefaultInstance()
+        .newDocumentBuilder()
+        .parse(new ByteArrayInputStream(this.metadata));
+    return expression.evaluate(document);
+  }
+}
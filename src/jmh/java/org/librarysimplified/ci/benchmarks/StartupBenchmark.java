@@ -0,0 +1,163 @@
+package org.librarysimplified.ci.benchmarks;
+
+import org.librarysimplified.ci.tests.StartupArchives;
+import org.librarysimplified.ci.tests.StartupFixture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the time from starting {@code ci-tools.jar} in a new JVM
+ * to the first byte of output, for each command, against a local
+ * {@link StartupFixture}. The jar is taken from the {@code ci.jar} system
+ * property, or is otherwise the shaded jar in {@code target}; the
+ * {@code application} configuration requires the class-data-sharing archive
+ * that the build produces beside the jar.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+public class StartupBenchmark
+{
+  @Param({"check-versions", "check-commits-since"})
+  public String command;
+
+  /**
+   * The class-data-sharing configuration: {@code none} disables sharing,
+   * {@code jdk} uses the JDK's default archive, and {@code application}
+   * uses the archive produced for the jar.
+   */
+
+  @Param({"none", "jdk", "application"})
+  public String sharing;
+
+  private StartupFixture fixture;
+  private List<String> processCommand;
+  private Process process;
+
+  @Setup(Level.Trial)
+  public void setup()
+    throws Exception
+  {
+    final var jar = findJar();
+
+    this.fixture = StartupFixture.create();
+    this.processCommand = new ArrayList<>();
+    this.processCommand.add(StartupArchives.javaExecutable());
+
+    switch (this.sharing) {
+      case "none": {
+        this.processCommand.add("-Xshare:off");
+        break;
+      }
+      case "jdk": {
+        break;
+      }
+      case "application": {
+        final var archive = StartupArchives.archiveOf(jar);
+        if (!Files.isRegularFile(archive)) {
+          throw new IllegalStateException("No archive exists at " + archive);
+        }
+        this.processCommand.add("-XX:SharedArchiveFile=" + archive);
+        this.processCommand.add("-Xshare:on");
+        break;
+      }
+      default: {
+        throw new IllegalArgumentException("Unrecognized sharing: " + this.sharing);
+      }
+    }
+
+    this.processCommand.add("-jar");
+    this.processCommand.add(jar.toString());
+
+    switch (this.command) {
+      case "check-versions": {
+        this.processCommand.addAll(this.fixture.checkVersionsArguments());
+        break;
+      }
+      case "check-commits-since": {
+        this.processCommand.addAll(this.fixture.checkCommitsSinceArguments());
+        break;
+      }
+      default: {
+        throw new IllegalArgumentException("Unrecognized command: " + this.command);
+      }
+    }
+  }
+
+  private static Path findJar()
+    throws IOException
+  {
+    final var property = System.getProperty("ci.jar");
+    if (property != null) {
+      return Paths.get(property).toAbsolutePath();
+    }
+
+    try (var files = Files.list(Paths.get("target"))) {
+      return files
+        .filter(p -> p.getFileName().toString().endsWith("-main.jar"))
+        .findFirst()
+        .orElseThrow(() -> new IllegalStateException(
+          "No shaded jar in target; build with 'mvn package' first"))
+        .toAbsolutePath();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown()
+    throws Exception
+  {
+    this.fixture.close();
+  }
+
+  /**
+   * Wait for each process to exit after its first output has been measured,
+   * so that processes do not overlap.
+   */
+
+  @TearDown(Level.Invocation)
+  public void finish()
+    throws Exception
+  {
+    if (this.process != null) {
+      this.process.getInputStream().transferTo(OutputStream.nullOutputStream());
+      this.process.waitFor();
+      this.process = null;
+    }
+  }
+
+  @Benchmark
+  public int firstOutput()
+    throws Exception
+  {
+    this.process =
+      new ProcessBuilder(this.processCommand)
+        .redirectErrorStream(true)
+        .start();
+
+    return this.process.getInputStream().read();
+  }
+}
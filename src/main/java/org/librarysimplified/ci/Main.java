@@ -1,7 +1,9 @@
 package org.librarysimplified.ci;
 
 import org.librarysimplified.ci.check_commits_since.CheckCommitsSince;
+import org.librarysimplified.ci.check_versions.CheckVersionPrefetch;
 import org.librarysimplified.ci.check_versions.CheckVersions;
+import org.librarysimplified.ci.serve.Serve;
 
 import java.util.Arrays;
 
@@ -20,6 +22,8 @@ public final class Main
     err.println("usage:");
     err.println("  check-versions [args]");
     err.println("  check-commits-since [args]");
+    err.println("  prefetch [args]");
+    err.println("  serve [args]");
   }
 
   private static void configureLogging()
@@ -53,6 +57,14 @@ public final class Main
           CheckCommitsSince.main(Arrays.copyOfRange(args, 1, args.length));
           break;
         }
+        case "prefetch": {
+          CheckVersionPrefetch.main(Arrays.copyOfRange(args, 1, args.length));
+          break;
+        }
+        case "serve": {
+          Serve.main(Arrays.copyOfRange(args, 1, args.length));
+          break;
+        }
         default: {
           usage();
           throw new ExitException(1);
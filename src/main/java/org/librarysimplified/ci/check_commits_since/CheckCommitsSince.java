@@ -6,8 +6,12 @@ import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.librarysimplified.ci.ExitException;
+import org.librarysimplified.ci.metrics.MetricsRegistry;
 
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
@@ -18,24 +22,27 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.function.Function;
+import java.util.TreeMap;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 public final class CheckCommitsSince
 {
   private static final Logger LOG = Logger.getLogger("CheckCommitsSince");
 
-  private static final Map<String, CheckCommitsSinceStatusFormatterType> FORMATTERS =
-    Stream.of(
-      new CheckCommitsSinceStatusPlainFormatter(),
-      new CheckCommitsSinceStatusSlackFormatter()
-    ).collect(Collectors.toMap(
-      CheckCommitsSinceStatusFormatterType::name,
-      Function.identity())
-    );
+  /**
+   * The available formatters. Formatters are only instantiated when selected,
+   * so that the libraries used by other formatters are not loaded.
+   */
+
+  private static final Map<String, Supplier<CheckCommitsSinceStatusFormatterType>> FORMATTERS =
+    new TreeMap<>(Map.of(
+      CheckCommitsSinceStatusPlainFormatter.NAME,
+      () -> new CheckCommitsSinceStatusPlainFormatter(),
+      CheckCommitsSinceStatusSlackFormatter.NAME,
+      () -> new CheckCommitsSinceStatusSlackFormatter()
+    ));
 
   private CheckCommitsSince()
   {
@@ -45,6 +52,31 @@ public final class CheckCommitsSince
   public static void main(
     final String[] args)
     throws Exception
+  {
+    try (var context = CheckCommitsSinceContext.create()) {
+      run(context, Paths.get("").toAbsolutePath(), args, System.out);
+    }
+  }
+
+  /**
+   * Run a commit check.
+   *
+   * @param context          The context shared with other checks run by the
+   *                         same process
+   * @param workingDirectory The directory against which relative paths are
+   *                         resolved
+   * @param args             The command-line arguments
+   * @param out              The stream to which results are written
+   *
+   * @throws Exception On errors
+   */
+
+  public static void run(
+    final CheckCommitsSinceContext context,
+    final Path workingDirectory,
+    final String[] args,
+    final PrintStream out)
+    throws Exception
   {
     final var parameters = new CheckCommitsSinceParameters();
 
@@ -58,15 +90,33 @@ public final class CheckCommitsSince
       throw new ExitException(1);
     }
 
-    final var formatter = FORMATTERS.get(parameters.formatterName);
-    if (formatter == null) {
+    final var formatterSupplier = FORMATTERS.get(parameters.formatterName);
+    if (formatterSupplier == null) {
       LOG.severe("No formatter exists with the name '" + parameters.formatterName + "'");
       LOG.severe("Existing formatters include: " + FORMATTERS.keySet());
       throw new ExitException(1);
     }
-
-    try (var git = Git.open(parameters.gitRepository.toFile())) {
-      processBranch(parameters, git, formatter);
+    final var formatter = formatterSupplier.get();
+
+    final var metrics =
+      new CheckCommitsSinceMetrics(
+        MetricsRegistry.create(),
+        parameters.projectName,
+        parameters.branchName);
+    final var timeStarted = System.nanoTime();
+
+    try (var git = context.open(workingDirectory.resolve(parameters.gitRepository))) {
+      processBranch(parameters, git, formatter, metrics, out);
+    } finally {
+      metrics.runCompleted(Duration.ofNanos(System.nanoTime() - timeStarted));
+      if (parameters.metricsFile != null) {
+        final var file = workingDirectory.resolve(parameters.metricsFile);
+        try {
+          metrics.registry().writeFile(file);
+        } catch (final IOException e) {
+          LOG.warning("Failed to write metrics to " + file + ": " + e);
+        }
+      }
     }
   }
 
@@ -111,7 +161,8 @@ public final class CheckCommitsSince
   /**
    * Find the latest tag in the repository.
    *
-   * @param git The git repository
+   * @param git     The git repository
+   * @param metrics The metrics
    *
    * @return The latest tag, if there is one
    *
@@ -119,9 +170,11 @@ public final class CheckCommitsSince
    */
 
   private static Optional<TagWithCommit> findLatestTag(
-    final Git git)
+    final Git git,
+    final CheckCommitsSinceMetrics metrics)
     throws Exception
   {
+    final var timeStarted = System.nanoTime();
     final var tagList =
       git.tagList()
         .call();
@@ -135,6 +188,8 @@ public final class CheckCommitsSince
     }
 
     tagsWithCommits.sort(Comparator.reverseOrder());
+    metrics.tagsScanned(
+      tagsWithCommits.size(), Duration.ofNanos(System.nanoTime() - timeStarted));
     if (tagsWithCommits.isEmpty()) {
       return Optional.empty();
     }
@@ -145,7 +200,9 @@ public final class CheckCommitsSince
   private static void processBranch(
     final CheckCommitsSinceParameters parameters,
     final Git git,
-    final CheckCommitsSinceStatusFormatterType formatter)
+    final CheckCommitsSinceStatusFormatterType formatter,
+    final CheckCommitsSinceMetrics metrics,
+    final PrintStream out)
     throws Exception
   {
     /*
@@ -154,10 +211,10 @@ public final class CheckCommitsSince
      */
 
     final var latestTagOpt =
-      findLatestTag(git);
+      findLatestTag(git, metrics);
 
     if (latestTagOpt.isEmpty()) {
-      System.out.println("No tags exist in the given repository.");
+      out.println("No tags exist in the given repository.");
       return;
     }
 
@@ -169,7 +226,7 @@ public final class CheckCommitsSince
     final var latestTag =
       latestTagOpt.get();
     final var commitsSince =
-      findCommitsOnBranchSince(git, parameters.branchName, latestTag);
+      findCommitsOnBranchSince(git, parameters.branchName, latestTag, metrics);
 
     /*
      * If more time has passed since the last release than is allowed, and
@@ -187,7 +244,7 @@ public final class CheckCommitsSince
 
     if (timeNow.isAfter(timeExpectedRelease)) {
       if (commitsSince.size() >= parameters.commitCount) {
-        System.out.println(
+        out.println(
           formatter.failed(
             parameters.projectName,
             parameters.branchName,
@@ -204,7 +261,8 @@ public final class CheckCommitsSince
   private static List<RevCommit> findCommitsOnBranchSince(
     final Git git,
     final String branchName,
-    final TagWithCommit latestTag)
+    final TagWithCommit latestTag,
+    final CheckCommitsSinceMetrics metrics)
     throws Exception
   {
     /*
@@ -229,12 +287,16 @@ public final class CheckCommitsSince
      * (newest commits will be returned first).
      */
 
+    final var timeStarted = System.nanoTime();
+    var visited = 0;
+
     try (var walk = new RevWalk(repository)) {
       final var startCommit = walk.parseCommit(head.getObjectId());
       walk.markStart(startCommit);
 
       final var commits = new LinkedList<RevCommit>();
       for (final var revCommit : walk) {
+        ++visited;
         final var timeThis =
           Integer.toUnsignedLong(revCommit.getCommitTime());
 
@@ -244,6 +306,11 @@ public final class CheckCommitsSince
           break;
         }
       }
+
+      metrics.branchWalked(
+        visited,
+        commits.size(),
+        Duration.ofNanos(System.nanoTime() - timeStarted));
       return commits;
     }
   }
@@ -0,0 +1,86 @@
+package org.librarysimplified.ci.check_commits_since;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The state shared between successive commit checks in the same process.
+ *
+ * A process that runs a single check opens the git repository, uses it,
+ * and closes it again. A long-running process (see the {@code serve}
+ * command) keeps each repository open for its whole lifetime, so that the
+ * repository's object database and pack indexes are only loaded once.
+ */
+
+public final class CheckCommitsSinceContext implements AutoCloseable
+{
+  private final boolean resident;
+  private final Map<Path, Repository> repositories;
+
+  private CheckCommitsSinceContext(
+    final boolean inResident)
+  {
+    this.resident = inResident;
+    this.repositories = new HashMap<>();
+  }
+
+  /**
+   * @return A context for a process that runs a single check
+   */
+
+  public static CheckCommitsSinceContext create()
+  {
+    return new CheckCommitsSinceContext(false);
+  }
+
+  /**
+   * @return A context for a long-running process
+   */
+
+  public static CheckCommitsSinceContext createResident()
+  {
+    return new CheckCommitsSinceContext(true);
+  }
+
+  /**
+   * Open the git repository at the given path. Closing the returned value
+   * closes the repository unless the context keeps repositories open.
+   *
+   * @param path The repository path
+   *
+   * @return The repository
+   *
+   * @throws IOException On I/O errors
+   */
+
+  synchronized Git open(
+    final Path path)
+    throws IOException
+  {
+    if (!this.resident) {
+      return Git.open(path.toFile());
+    }
+
+    final var key = path.toAbsolutePath().normalize();
+    var repository = this.repositories.get(key);
+    if (repository == null) {
+      repository = Git.open(key.toFile()).getRepository();
+      this.repositories.put(key, repository);
+    }
+    return Git.wrap(repository);
+  }
+
+  @Override
+  public synchronized void close()
+  {
+    for (final var repository : this.repositories.values()) {
+      repository.close();
+    }
+    this.repositories.clear();
+  }
+}
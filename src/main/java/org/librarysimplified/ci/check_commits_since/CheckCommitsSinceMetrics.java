@@ -0,0 +1,118 @@
+package org.librarysimplified.ci.check_commits_since;
+
+import org.librarysimplified.ci.metrics.MetricsRegistry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The metrics recorded by commit checks. Each metric is labelled with the
+ * project and branch being checked.
+ *
+ * <ul>
+ *   <li>{@code ci_check_commits_since_tag_scan_duration_seconds}: The time
+ *   taken to resolve all tags and find the latest</li>
+ *   <li>{@code ci_check_commits_since_tags}: The number of tags examined</li>
+ *   <li>{@code ci_check_commits_since_walk_duration_seconds}: The time taken
+ *   to walk the branch back to the latest tag</li>
+ *   <li>{@code ci_check_commits_since_commits_visited}: The number of
+ *   commits visited by that walk</li>
+ *   <li>{@code ci_check_commits_since_commits}: The number of commits on the
+ *   branch since the latest tag</li>
+ *   <li>{@code ci_check_commits_since_run_duration_seconds} and
+ *   {@code ci_check_commits_since_run_timestamp_seconds}: The duration of
+ *   the run, and the time at which it finished</li>
+ * </ul>
+ */
+
+final class CheckCommitsSinceMetrics
+{
+  private final MetricsRegistry registry;
+  private final Map<String, String> labels;
+
+  CheckCommitsSinceMetrics(
+    final MetricsRegistry inRegistry,
+    final String projectName,
+    final String branchName)
+  {
+    this.registry =
+      Objects.requireNonNull(inRegistry, "registry");
+    this.labels =
+      Map.of(
+        "project", Objects.requireNonNullElse(projectName, ""),
+        "branch", Objects.requireNonNullElse(branchName, "")
+      );
+  }
+
+  MetricsRegistry registry()
+  {
+    return this.registry;
+  }
+
+  void tagsScanned(
+    final int tags,
+    final Duration time)
+  {
+    this.registry.gaugeSet(
+      "ci_check_commits_since_tag_scan_duration_seconds",
+      "The time taken to find the latest tag.",
+      this.labels,
+      secondsOf(time)
+    );
+    this.registry.gaugeSet(
+      "ci_check_commits_since_tags",
+      "The number of tags examined.",
+      this.labels,
+      (double) tags
+    );
+  }
+
+  void branchWalked(
+    final int visited,
+    final int since,
+    final Duration time)
+  {
+    this.registry.gaugeSet(
+      "ci_check_commits_since_walk_duration_seconds",
+      "The time taken to walk the branch back to the latest tag.",
+      this.labels,
+      secondsOf(time)
+    );
+    this.registry.gaugeSet(
+      "ci_check_commits_since_commits_visited",
+      "The number of commits visited while walking the branch.",
+      this.labels,
+      (double) visited
+    );
+    this.registry.gaugeSet(
+      "ci_check_commits_since_commits",
+      "The number of commits on the branch since the latest tag.",
+      this.labels,
+      (double) since
+    );
+  }
+
+  void runCompleted(
+    final Duration time)
+  {
+    this.registry.gaugeSet(
+      "ci_check_commits_since_run_duration_seconds",
+      "The duration of the most recent run.",
+      this.labels,
+      secondsOf(time)
+    );
+    this.registry.gaugeSet(
+      "ci_check_commits_since_run_timestamp_seconds",
+      "The time at which the most recent run finished.",
+      this.labels,
+      (double) System.currentTimeMillis() / 1000.0
+    );
+  }
+
+  private static double secondsOf(
+    final Duration time)
+  {
+    return (double) time.toNanos() / 1_000_000_000.0;
+  }
+}
@@ -1,7 +1,6 @@
 package org.librarysimplified.ci.check_commits_since;
 
 import com.beust.jcommander.Parameter;
-import org.librarysimplified.ci.check_versions.CheckVersionStatusPlainFormatter;
 
 import java.nio.file.Path;
 
@@ -47,7 +46,13 @@ public final class CheckCommitsSinceParameters
     required = false,
     names = "--formatter",
     description = "The formatter to use to display results")
-  String formatterName = CheckVersionStatusPlainFormatter.formatterName();
+  String formatterName = CheckCommitsSinceStatusPlainFormatter.formatterName();
+
+  @Parameter(
+    required = false,
+    names = "--metricsFile",
+    description = "A file to which metrics about the run are written in the Prometheus text format")
+  Path metricsFile;
 
   public CheckCommitsSinceParameters()
   {
@@ -6,6 +6,12 @@ import java.util.Objects;
 public final class CheckCommitsSinceStatusPlainFormatter
   implements CheckCommitsSinceStatusFormatterType
 {
+  /**
+   * The name of the formatter.
+   */
+
+  public static final String NAME = "plain";
+
   public CheckCommitsSinceStatusPlainFormatter()
   {
 
@@ -17,7 +23,7 @@ public final class CheckCommitsSinceStatusPlainFormatter
 
   public static String formatterName()
   {
-    return "plain";
+    return NAME;
   }
 
   @Override
@@ -11,6 +11,12 @@ import java.util.Objects;
 public final class CheckCommitsSinceStatusSlackFormatter
   implements CheckCommitsSinceStatusFormatterType
 {
+  /**
+   * The name of the formatter.
+   */
+
+  public static final String NAME = "slack";
+
   public CheckCommitsSinceStatusSlackFormatter()
   {
 
@@ -22,7 +28,7 @@ public final class CheckCommitsSinceStatusSlackFormatter
 
   public static String formatterName()
   {
-    return "slack";
+    return NAME;
   }
 
   private static ObjectNode generateOKHeader(
@@ -0,0 +1,228 @@
+package org.librarysimplified.ci.check_versions;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.librarysimplified.ci.ExitException;
+import org.tomlj.Toml;
+import org.tomlj.TomlTable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Functions to determine which libraries in a version catalog have changed
+ * between two revisions of the git repository that contains the catalog.
+ *
+ * A library has changed if its entry in the {@code [libraries]} table was
+ * added or modified, or if the entry in the {@code [versions]} table that it
+ * refers to was modified. Renaming a version entry without changing any
+ * library's version is not considered a change.
+ */
+
+public final class CheckVersionCatalogDiff
+{
+  private static final Logger LOG =
+    Logger.getLogger("CheckVersionCatalogDiff");
+
+  private CheckVersionCatalogDiff()
+  {
+
+  }
+
+  /**
+   * Determine the libraries that changed between the given base revision
+   * and {@code HEAD}. As with {@code git diff base...HEAD}, the catalog at
+   * {@code HEAD} is compared against the catalog at the merge base of the
+   * two revisions, so changes made on the base branch after the current
+   * branch diverged from it are not attributed to the current branch.
+   *
+   * @param catalog The version catalog
+   * @param baseRef The base revision
+   *
+   * @return The {@code group:artifact} names of the changed libraries
+   *
+   * @throws IOException   On I/O errors
+   * @throws ExitException If the catalog is not in a git repository, or the
+   *                       revisions cannot be resolved
+   */
+
+  public static Set<String> changedModules(
+    final Path catalog,
+    final String baseRef)
+    throws IOException, ExitException
+  {
+    Objects.requireNonNull(catalog, "catalog");
+    Objects.requireNonNull(baseRef, "baseRef");
+
+    final var catalogReal = catalog.toRealPath();
+    final var builder =
+      new FileRepositoryBuilder()
+        .findGitDir(catalogReal.getParent().toFile());
+
+    if (builder.getGitDir() == null) {
+      LOG.severe("The version catalog " + catalog + " is not inside a git repository.");
+      throw new ExitException(1);
+    }
+
+    try (var repository = builder.build()) {
+      final var workTree =
+        repository.getWorkTree().toPath().toRealPath();
+      final var catalogName =
+        workTree.relativize(catalogReal).toString().replace('\\', '/');
+
+      final var base = resolveCommit(repository, baseRef);
+      final var head = resolveCommit(repository, "HEAD");
+
+      try (var walk = new RevWalk(repository)) {
+        final var headCommit = walk.parseCommit(head);
+        final var baseCommit = mergeBaseOf(walk, walk.parseCommit(base), headCommit);
+
+        final var before =
+          libraryDescriptionsOf(repository, baseCommit, catalogName);
+        final var after =
+          libraryDescriptionsOf(repository, headCommit, catalogName);
+
+        final var changed = new HashSet<String>();
+        for (final var entry : after.entrySet()) {
+          if (!Objects.equals(before.get(entry.getKey()), entry.getValue())) {
+            changed.add(entry.getValue().get(0));
+          }
+        }
+
+        LOG.info(
+          String.format(
+            "%d libraries changed in %s since %s",
+            Integer.valueOf(changed.size()),
+            catalogName,
+            baseRef));
+        return changed;
+      }
+    }
+  }
+
+  private static ObjectId resolveCommit(
+    final Repository repository,
+    final String revision)
+    throws IOException, ExitException
+  {
+    final var id = repository.resolve(revision + "^{commit}");
+    if (id == null) {
+      LOG.severe("The git revision '" + revision + "' could not be resolved.");
+      throw new ExitException(1);
+    }
+    return id;
+  }
+
+  private static RevCommit mergeBaseOf(
+    final RevWalk walk,
+    final RevCommit base,
+    final RevCommit head)
+    throws IOException
+  {
+    walk.reset();
+    walk.setRevFilter(RevFilter.MERGE_BASE);
+    walk.markStart(base);
+    walk.markStart(head);
+
+    final var mergeBase = walk.next();
+    walk.reset();
+    walk.setRevFilter(RevFilter.ALL);
+
+    if (mergeBase == null) {
+      return base;
+    }
+    return walk.parseCommit(mergeBase);
+  }
+
+  /**
+   * Describe each library in the catalog at the given commit as its module
+   * name and its resolved version. If the catalog does not exist or cannot
+   * be parsed at that commit, no libraries are described, and so every
+   * library will be considered changed.
+   */
+
+  private static Map<String, List<String>> libraryDescriptionsOf(
+    final Repository repository,
+    final RevCommit commit,
+    final String catalogName)
+    throws IOException
+  {
+    final var text = fileAt(repository, commit, catalogName);
+    if (text.isEmpty()) {
+      return Map.of();
+    }
+
+    final var result = Toml.parse(text.get());
+    if (result.hasErrors()) {
+      LOG.warning(
+        String.format(
+          "The version catalog %s could not be parsed at %s",
+          catalogName,
+          commit.getId().abbreviate(8).name()));
+      return Map.of();
+    }
+
+    final var libraries = result.getTable("libraries");
+    if (libraries == null) {
+      return Map.of();
+    }
+
+    final var versions =
+      Optional.ofNullable(result.getTable("versions"));
+    final var descriptions =
+      new HashMap<String, List<String>>(libraries.size());
+
+    for (final var name : libraries.keySet()) {
+      final var library = libraries.getTable(name);
+      if (library == null) {
+        continue;
+      }
+      final var module = library.getString("module");
+      if (module == null) {
+        continue;
+      }
+      descriptions.put(name, List.of(module, versionOf(library, versions)));
+    }
+    return descriptions;
+  }
+
+  private static String versionOf(
+    final TomlTable library,
+    final Optional<TomlTable> versions)
+  {
+    final var versionRef = library.getString("version.ref");
+    if (versionRef != null) {
+      return versions.map(v -> v.getString(versionRef)).orElse("");
+    }
+    return Objects.toString(library.get("version"), "");
+  }
+
+  private static Optional<String> fileAt(
+    final Repository repository,
+    final RevCommit commit,
+    final String name)
+    throws IOException
+  {
+    try (var treeWalk = TreeWalk.forPath(repository, name, commit.getTree())) {
+      if (treeWalk == null) {
+        return Optional.empty();
+      }
+      final var loader = repository.open(treeWalk.getObjectId(0));
+      return Optional.of(new String(loader.getBytes(), StandardCharsets.UTF_8));
+    }
+  }
+}
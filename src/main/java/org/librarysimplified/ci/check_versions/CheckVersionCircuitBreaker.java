@@ -0,0 +1,66 @@
+package org.librarysimplified.ci.check_versions;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * A circuit breaker for a single repository. The breaker counts the
+ * requests to the repository that ended in a timeout (or any other I/O
+ * error) or a server error. Once the count reaches a threshold, the breaker
+ * opens and stays open for the rest of the run, and the repository is no
+ * longer queried.
+ */
+
+final class CheckVersionCircuitBreaker
+{
+  private static final Logger LOG =
+    Logger.getLogger("CheckVersionCircuitBreaker");
+
+  private final String repository;
+  private final int threshold;
+  private final AtomicInteger failures;
+
+  /**
+   * Create a circuit breaker.
+   *
+   * @param inRepository The repository
+   * @param inThreshold  The number of failures after which the breaker
+   *                     opens, or {@code 0} if the breaker never opens
+   */
+
+  CheckVersionCircuitBreaker(
+    final String inRepository,
+    final int inThreshold)
+  {
+    this.repository =
+      Objects.requireNonNull(inRepository, "repository");
+    this.threshold = inThreshold;
+    this.failures = new AtomicInteger(0);
+  }
+
+  /**
+   * @return {@code true} if the repository should no longer be queried
+   */
+
+  boolean isOpen()
+  {
+    return this.threshold > 0 && this.failures.get() >= this.threshold;
+  }
+
+  /**
+   * Record a failed request.
+   */
+
+  void recordFailure()
+  {
+    final var count = this.failures.incrementAndGet();
+    if (this.threshold > 0 && count == this.threshold) {
+      LOG.warning(
+        String.format(
+          "Repository %s failed %d times; skipping it for the remaining libraries",
+          this.repository,
+          Integer.valueOf(count)));
+    }
+  }
+}
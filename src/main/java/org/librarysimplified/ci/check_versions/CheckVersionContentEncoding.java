@@ -0,0 +1,122 @@
+package org.librarysimplified.ci.check_versions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.http.HttpHeaders;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The content codings accepted for metadata responses. The JDK HTTP client
+ * neither asks for compressed responses nor decompresses them, so this is
+ * done here: responses are decompressed as they are read, so that a
+ * compressed body is never held in memory in either form.
+ */
+
+final class CheckVersionContentEncoding
+{
+  /**
+   * The value of the {@code Accept-Encoding} header sent with requests.
+   */
+
+  static final String ACCEPTED = "gzip, deflate";
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private CheckVersionContentEncoding()
+  {
+
+  }
+
+  /**
+   * Decode a response body.
+   *
+   * @param headers The response headers
+   * @param stream  The response body, as received
+   *
+   * @return The decoded body
+   *
+   * @throws IOException If the body uses a coding that was not asked for, or
+   *                     the body cannot be decoded
+   */
+
+  static InputStream decode(
+    final HttpHeaders headers,
+    final InputStream stream)
+    throws IOException
+  {
+    final var codings = new ArrayList<String>();
+    for (final var value : headers.allValues("Content-Encoding")) {
+      for (final var coding : value.split(",")) {
+        final var name = coding.trim().toLowerCase(Locale.ROOT);
+        if (!name.isEmpty() && !"identity".equals(name)) {
+          codings.add(name);
+        }
+      }
+    }
+
+    /*
+     * Codings are listed in the order in which they were applied, so they
+     * are removed in reverse.
+     */
+
+    var decoded = stream;
+    for (int index = codings.size() - 1; index >= 0; --index) {
+      final var coding = codings.get(index);
+      switch (coding) {
+        case "gzip":
+        case "x-gzip": {
+          decoded = new GZIPInputStream(decoded, BUFFER_SIZE);
+          break;
+        }
+        case "deflate": {
+          decoded = inflate(decoded);
+          break;
+        }
+        default: {
+          throw new IOException("Unsupported content coding '" + coding + "'");
+        }
+      }
+    }
+    return decoded;
+  }
+
+  /**
+   * The {@code deflate} coding is defined as a zlib stream, but some servers
+   * send a raw deflate stream instead. The two are told apart by the zlib
+   * header.
+   */
+
+  private static InputStream inflate(
+    final InputStream stream)
+    throws IOException
+  {
+    final var pushback = new PushbackInputStream(stream, 2);
+    final var header = pushback.readNBytes(2);
+    pushback.unread(header);
+
+    final var zlib =
+      header.length == 2
+        && (header[0] & 0x0f) == 8
+        && (((header[0] & 0xff) << 8) | (header[1] & 0xff)) % 31 == 0;
+
+    final var inflater = new Inflater(!zlib);
+    return new InflaterInputStream(pushback, inflater, BUFFER_SIZE)
+    {
+      @Override
+      public void close()
+        throws IOException
+      {
+        try {
+          super.close();
+        } finally {
+          inflater.end();
+        }
+      }
+    };
+  }
+}
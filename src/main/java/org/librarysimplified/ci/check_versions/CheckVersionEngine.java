@@ -0,0 +1,569 @@
+package org.librarysimplified.ci.check_versions;
+
+import org.librarysimplified.ci.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+/**
+ * An engine that checks libraries concurrently. At most {@code threads}
+ * libraries are checked at any given time. Results are always returned in
+ * the order that the libraries were submitted, regardless of the order in
+ * which the individual checks complete.
+ */
+
+public final class CheckVersionEngine implements AutoCloseable
+{
+  private static final Logger LOG = Logger.getLogger("CheckVersionEngine");
+
+  private final ExecutorService executor;
+  private final Optional<CheckVersionMetadataCache> cache;
+  private final Optional<CheckVersionNegativeCache> misses;
+  private final CheckVersionMetadataFetcher fetcher;
+  private final Optional<CheckVersionLookupMemo> memo;
+  private final Optional<CheckVersionSnapshot> snapshot;
+  private final Optional<CheckVersionTransitiveChecker> transitive;
+  private final CheckVersionMetrics metrics;
+  private final boolean failFast;
+  private final Set<CompletableFuture<CheckVersionLookup>> outstanding;
+
+  /**
+   * Create a new engine.
+   *
+   * @param parameters The command-line parameters
+   *
+   * @throws IOException On errors opening the metadata caches
+   */
+
+  public CheckVersionEngine(
+    final CheckVersionsParameters parameters)
+    throws IOException
+  {
+    this(parameters, CheckVersionsContext.create());
+  }
+
+  /**
+   * Create a new engine that uses the transport and remembered lookups
+   * of the given context.
+   *
+   * @param parameters The command-line parameters
+   * @param context    The context
+   *
+   * @throws IOException On errors opening the metadata caches
+   */
+
+  public CheckVersionEngine(
+    final CheckVersionsParameters parameters,
+    final CheckVersionsContext context)
+    throws IOException
+  {
+    this(
+      parameters,
+      context,
+      new CheckVersionMetrics(MetricsRegistry.create())
+    );
+  }
+
+  /**
+   * Create a new engine that uses the transport and remembered lookups
+   * of the given context, and records metrics as it runs.
+   *
+   * @param parameters The command-line parameters
+   * @param context    The context
+   * @param inMetrics  The metrics
+   *
+   * @throws IOException On errors opening the metadata caches
+   */
+
+  public CheckVersionEngine(
+    final CheckVersionsParameters parameters,
+    final CheckVersionsContext context,
+    final CheckVersionMetrics inMetrics)
+    throws IOException
+  {
+    Objects.requireNonNull(parameters, "parameters");
+    Objects.requireNonNull(context, "context");
+
+    this.metrics =
+      Objects.requireNonNull(inMetrics, "metrics");
+    this.failFast =
+      parameters.failFast;
+    this.outstanding =
+      ConcurrentHashMap.newKeySet();
+
+    final var threads = parameters.threads;
+    if (threads < 1) {
+      throw new IllegalArgumentException(
+        String.format("Thread count %d must be positive", threads));
+    }
+
+    final var threadIndex = new AtomicInteger(0);
+    this.executor =
+      Executors.newFixedThreadPool(threads, runnable -> {
+        final var thread = new Thread(runnable);
+        thread.setName(
+          String.format("CheckVersionEngine-%d", threadIndex.incrementAndGet()));
+        thread.setDaemon(true);
+        return thread;
+      });
+
+    /*
+     * The transport's client deliberately does not share the engine's
+     * executor: Checks block waiting for exchanges, and the client needs
+     * threads of its own to complete the exchanges that those checks are
+     * waiting on.
+     */
+
+    final var transport = context.transport(parameters);
+    this.memo =
+      context.lookups();
+
+    final var retryPolicy =
+      new CheckVersionRetryPolicy(
+        parameters.retryAttempts,
+        Duration.ofMillis(parameters.retryBaseDelayMilliseconds),
+        Duration.ofMillis(parameters.retryMaximumDelayMilliseconds)
+      );
+
+    if (parameters.cacheDirectory != null) {
+      this.cache = Optional.of(
+        new CheckVersionMetadataCache(
+          parameters.cacheDirectory,
+          Duration.ofSeconds(parameters.cacheExpirySeconds),
+          parameters.cacheMaximumSize,
+          Clock.systemUTC()
+        ));
+      this.misses = Optional.of(
+        new CheckVersionNegativeCache(
+          this.cache.get(),
+          parameters.cacheDirectory.resolve("misses.tsv"),
+          Duration.ofSeconds(parameters.negativeCacheExpirySeconds),
+          Clock.systemUTC()
+        ));
+    } else {
+      this.cache = Optional.empty();
+      this.misses = Optional.empty();
+    }
+
+    if (parameters.snapshotFile != null) {
+      this.snapshot = Optional.of(
+        CheckVersionSnapshot.open(parameters.snapshotFile));
+    } else {
+      this.snapshot = Optional.empty();
+    }
+
+    this.fetcher =
+      new CheckVersionMetadataFetcher(
+        transport,
+        parameters.raceRepositories,
+        this.cache,
+        this.misses,
+        Duration.ofSeconds(parameters.requestTimeoutSeconds),
+        retryPolicy,
+        parameters.circuitBreakerThreshold,
+        parameters.requestsPerSecond,
+        parameters.requestBurst,
+        this.metrics
+      );
+
+    if (parameters.transitive) {
+      this.transitive = Optional.of(
+        new CheckVersionTransitiveChecker(
+          this.fetcher,
+          this.metrics,
+          parameters.transitiveThreads
+        ));
+    } else {
+      this.transitive = Optional.empty();
+    }
+  }
+
+  /**
+   * Check all of the given libraries. Libraries that refer to the same
+   * artifact (such as multiple catalog aliases for the same module) share a
+   * single lookup, so each artifact is fetched at most once.
+   *
+   * @param libraries The libraries
+   *
+   * @return The results, in the same order as the given libraries
+   *
+   * @throws InterruptedException If the calling thread is interrupted
+   */
+
+  public CheckVersionResults checkAll(
+    final List<CheckVersionLibrary> libraries)
+    throws InterruptedException
+  {
+    return this.checkAll(libraries, library -> true);
+  }
+
+  /**
+   * Check the given libraries that match the given predicate. Libraries
+   * that are not ignored, but that do not match the predicate, are reported
+   * as skipped.
+   *
+   * @param libraries   The libraries
+   * @param shouldCheck A predicate that selects the libraries to check
+   *
+   * @return The results, in the same order as the given libraries
+   *
+   * @throws InterruptedException If the calling thread is interrupted
+   */
+
+  public CheckVersionResults checkAll(
+    final List<CheckVersionLibrary> libraries,
+    final Predicate<CheckVersionLibrary> shouldCheck)
+    throws InterruptedException
+  {
+    return this.checkProjects(
+      List.of(new CheckVersionProject("", libraries, shouldCheck))
+    ).get(0);
+  }
+
+  /**
+   * Check the libraries of all of the given projects. The lookups for all
+   * projects are started before any results are collected, and libraries
+   * that refer to the same artifact share a single lookup regardless of
+   * the project that declares them.
+   *
+   * @param projects The projects
+   *
+   * @return The results for each project, in the same order as the given
+   * projects
+   *
+   * @throws InterruptedException If the calling thread is interrupted
+   */
+
+  public List<CheckVersionResults> checkProjects(
+    final List<CheckVersionProject> projects)
+    throws InterruptedException
+  {
+    return this.checkProjects(projects, (project, status) -> { });
+  }
+
+  /**
+   * Check the libraries of all of the given projects, passing each status
+   * to the given receiver as soon as it is determined. Statuses are
+   * delivered in the order in which checks complete, which is generally
+   * not the order of the libraries, and the receiver may be called from
+   * several threads at once. All statuses have been delivered by the time
+   * this method returns.
+   *
+   * If the engine was created with {@code --failFast}, the first library
+   * that is out-of-date or fails the check cancels all lookups that have
+   * not yet completed, and the libraries that depended on them are
+   * reported as cancelled.
+   *
+   * If the engine was created with {@code --transitive}, the out-of-date
+   * transitive dependencies of each project's checked libraries are
+   * included in the project's results.
+   *
+   * @param projects The projects
+   * @param receiver The receiver of statuses
+   *
+   * @return The results for each project, in the same order as the given
+   * projects
+   *
+   * @throws InterruptedException If the calling thread is interrupted
+   */
+
+  public List<CheckVersionResults> checkProjects(
+    final List<CheckVersionProject> projects,
+    final BiConsumer<CheckVersionProject, CheckVersionLibraryStatusType> receiver)
+    throws InterruptedException
+  {
+    Objects.requireNonNull(projects, "projects");
+    Objects.requireNonNull(receiver, "receiver");
+
+    /*
+     * Lookups are keyed by the group, the artifact, and the repositories
+     * that will be searched.
+     */
+
+    final var lookups =
+      new HashMap<List<Object>, CompletableFuture<CheckVersionLookup>>();
+
+    for (final var project : projects) {
+      for (final var library : project.libraries()) {
+        if (library.isIgnored() || !project.shouldCheck(library)) {
+          continue;
+        }
+
+        lookups.computeIfAbsent(
+          lookupKeyOf(library),
+          k -> this.lookupLater(k, library));
+      }
+    }
+
+    /*
+     * Each library's status is derived, and delivered, by the thread that
+     * completes its lookup. Statuses that need no lookup are delivered
+     * immediately.
+     */
+
+    final var pending =
+      new ArrayList<List<CompletableFuture<CheckVersionLibraryStatusType>>>(
+        projects.size());
+
+    for (final var project : projects) {
+      final var libraries = project.libraries();
+      final var statuses =
+        new ArrayList<CompletableFuture<CheckVersionLibraryStatusType>>(
+          libraries.size());
+
+      for (final var library : libraries) {
+        final CompletableFuture<CheckVersionLibraryStatusType> status;
+        if (library.isIgnored()) {
+          status = delivered(
+            project, new CheckVersionLibraryStatusIgnored(library), receiver);
+        } else if (!project.shouldCheck(library)) {
+          status = delivered(
+            project, new CheckVersionLibraryStatusSkipped(library), receiver);
+        } else {
+          status = lookups.get(lookupKeyOf(library))
+            .handle((lookup, failure) -> {
+              final CheckVersionLibraryStatusType s;
+              if (failure instanceof CancellationException) {
+                s = new CheckVersionLibraryStatusCancelled(library);
+              } else {
+                s = library.statusFor(lookupOf(lookup, failure));
+              }
+              receiver.accept(project, s);
+              if (this.failFast && !s.isOk()) {
+                this.cancelOutstanding();
+              }
+              return s;
+            });
+        }
+        statuses.add(status);
+      }
+      pending.add(statuses);
+    }
+
+    final var completedProjects =
+      new ArrayList<List<CheckVersionLibraryStatusType>>(projects.size());
+    var cancelled = false;
+
+    for (final var statuses : pending) {
+      final var completed =
+        new ArrayList<CheckVersionLibraryStatusType>(statuses.size());
+      for (final var status : statuses) {
+        final var s = waitFor(status);
+        cancelled |= s instanceof CheckVersionLibraryStatusCancelled;
+        completed.add(s);
+      }
+      completedProjects.add(completed);
+    }
+
+    /*
+     * Transitive dependencies are only examined once every library has
+     * been checked, and not at all if the check was cancelled.
+     */
+
+    final var results =
+      new ArrayList<CheckVersionResults>(projects.size());
+
+    for (int index = 0; index < projects.size(); ++index) {
+      final var completed = completedProjects.get(index);
+      if (this.transitive.isPresent() && !cancelled) {
+        results.add(new CheckVersionResults(
+          completed, this.transitive.get().check(projects.get(index))));
+      } else {
+        results.add(new CheckVersionResults(completed));
+      }
+    }
+
+    return results;
+  }
+
+  private static CompletableFuture<CheckVersionLibraryStatusType> delivered(
+    final CheckVersionProject project,
+    final CheckVersionLibraryStatusType status,
+    final BiConsumer<CheckVersionProject, CheckVersionLibraryStatusType> receiver)
+  {
+    receiver.accept(project, status);
+    return CompletableFuture.completedFuture(status);
+  }
+
+  private CompletableFuture<CheckVersionLookup> lookupLater(
+    final List<Object> key,
+    final CheckVersionLibrary library)
+  {
+    if (this.snapshot.isPresent()) {
+      return CompletableFuture.completedFuture(
+        this.lookupInSnapshot(this.snapshot.get(), library));
+    }
+
+    if (this.memo.isPresent()) {
+      final var remembered = this.memo.get().find(key);
+      if (remembered.isPresent()) {
+        this.metrics.cacheHit("memo");
+        return CompletableFuture.completedFuture(remembered.get());
+      }
+      this.metrics.cacheMiss("memo");
+    }
+
+    /*
+     * The lookup is run as an ordinary task, rather than with
+     * supplyAsync(), so that cancelling the result can interrupt the
+     * thread running the lookup. An interrupted lookup cancels any requests
+     * it has in flight, and its (failed) result is discarded.
+     */
+
+    final var result = new CompletableFuture<CheckVersionLookup>();
+    this.outstanding.add(result);
+
+    final var task = this.executor.submit(() -> {
+      try {
+        final var timeStarted = System.nanoTime();
+        final var found =
+          this.fetcher.lookup(
+            library.group(),
+            library.artifact(),
+            library.repositories());
+        final var duration =
+          Duration.ofNanos(System.nanoTime() - timeStarted);
+        final var lookup =
+          found.withDuration(duration);
+
+        /*
+         * A lookup that was cancelled was interrupted, and so its result
+         * is not worth recording.
+         */
+
+        if (!result.isCancelled()) {
+          this.metrics.lookupCompleted(library, duration);
+          this.memo.ifPresent(m -> m.store(key, lookup));
+        }
+        result.complete(lookup);
+      } catch (final Throwable e) {
+        result.completeExceptionally(e);
+      }
+    });
+
+    result.whenComplete((lookup, failure) -> {
+      this.outstanding.remove(result);
+      if (result.isCancelled()) {
+        task.cancel(true);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Look up a library in a snapshot. A snapshot replaces the repositories
+   * entirely, so a library that is not in the snapshot is unavailable.
+   */
+
+  private CheckVersionLookup lookupInSnapshot(
+    final CheckVersionSnapshot source,
+    final CheckVersionLibrary library)
+  {
+    final var name = source.file().toString();
+    try {
+      final var entry = source.find(library.group(), library.artifact());
+      if (entry.isEmpty()) {
+        this.metrics.cacheMiss("snapshot");
+        return CheckVersionLookup.notFound();
+      }
+      this.metrics.cacheHit("snapshot");
+      return CheckVersionLookup.found(
+        name, CheckVersionMetadataFetcher.releaseOf(entry.get().release()));
+    } catch (final IOException e) {
+      return CheckVersionLookup.failed(e.getMessage());
+    }
+  }
+
+  private void cancelOutstanding()
+  {
+    for (final var lookup : this.outstanding) {
+      lookup.cancel(false);
+    }
+  }
+
+  private static List<Object> lookupKeyOf(
+    final CheckVersionLibrary library)
+  {
+    return List.of(
+      library.group(),
+      library.artifact(),
+      List.copyOf(library.repositories())
+    );
+  }
+
+  private static CheckVersionLookup lookupOf(
+    final CheckVersionLookup lookup,
+    final Throwable failure)
+  {
+    if (failure == null) {
+      return lookup;
+    }
+
+    var cause = failure;
+    if (cause instanceof CompletionException && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    var message = cause.getMessage();
+    if (message == null) {
+      message = cause.getClass().getSimpleName();
+    }
+    return CheckVersionLookup.failed(message);
+  }
+
+  private static CheckVersionLibraryStatusType waitFor(
+    final Future<CheckVersionLibraryStatusType> future)
+    throws InterruptedException
+  {
+    try {
+      return future.get();
+    } catch (final ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  @Override
+  public void close()
+  {
+    this.executor.shutdownNow();
+    this.transitive.ifPresent(CheckVersionTransitiveChecker::close);
+    this.fetcher.reportRateLimits();
+
+    if (this.cache.isPresent()) {
+      try {
+        this.cache.get().evict();
+      } catch (final IOException e) {
+        LOG.warning("Failed to evict cache entries: " + e);
+      }
+    }
+
+    if (this.misses.isPresent()) {
+      try {
+        this.misses.get().save();
+      } catch (final IOException e) {
+        LOG.warning("Failed to save repository misses: " + e);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        LOG.warning("Interrupted while saving repository misses");
+      }
+    }
+  }
+}
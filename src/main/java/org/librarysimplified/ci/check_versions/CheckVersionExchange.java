@@ -0,0 +1,422 @@
+package org.librarysimplified.ci.check_versions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single logical request to a repository. The request is sent
+ * asynchronously once the host's rate limiter allows it, and is retried
+ * according to a retry policy. The exchange
+ * can be cancelled at any point, in which case any request in flight is
+ * cancelled and any retries that have not yet started are abandoned.
+ * Any exception raised while handling a response or starting a retry
+ * completes the exchange with that exception as its failure, so that
+ * {@link #await()} always returns.
+ */
+
+final class CheckVersionExchange
+{
+  private final CheckVersionTransport transport;
+  private final HttpRequest request;
+  private final CheckVersionRetryPolicy retryPolicy;
+  private final CheckVersionMetrics metrics;
+  private final String repository;
+  private final CheckVersionRateLimiter rateLimiter;
+  private final CompletableFuture<Outcome> result;
+  private volatile CompletableFuture<HttpResponse<InputStream>> inFlight;
+  private volatile boolean cancelled;
+  private volatile int attempts;
+
+  private CheckVersionExchange(
+    final CheckVersionTransport inTransport,
+    final HttpRequest inRequest,
+    final CheckVersionRetryPolicy inRetryPolicy,
+    final CheckVersionMetrics inMetrics,
+    final String inRepository,
+    final CheckVersionRateLimiter inRateLimiter)
+  {
+    this.transport =
+      Objects.requireNonNull(inTransport, "transport");
+    this.request =
+      Objects.requireNonNull(inRequest, "request");
+    this.retryPolicy =
+      Objects.requireNonNull(inRetryPolicy, "retryPolicy");
+    this.metrics =
+      Objects.requireNonNull(inMetrics, "metrics");
+    this.repository =
+      Objects.requireNonNull(inRepository, "repository");
+    this.rateLimiter =
+      Objects.requireNonNull(inRateLimiter, "rateLimiter");
+    this.result =
+      new CompletableFuture<>();
+  }
+
+  /**
+   * Start a new exchange.
+   *
+   * @param transport   The transport
+   * @param request     The request
+   * @param retryPolicy The retry policy
+   * @param metrics     The metrics to which each attempt is recorded
+   * @param repository  The repository to which the request is sent
+   * @param rateLimiter The rate limiter for the repository's host
+   *
+   * @return The exchange
+   */
+
+  static CheckVersionExchange start(
+    final CheckVersionTransport transport,
+    final HttpRequest request,
+    final CheckVersionRetryPolicy retryPolicy,
+    final CheckVersionMetrics metrics,
+    final String repository,
+    final CheckVersionRateLimiter rateLimiter)
+  {
+    final var exchange =
+      new CheckVersionExchange(
+        transport, request, retryPolicy, metrics, repository, rateLimiter);
+    exchange.guarded(1, () -> exchange.attempt(1));
+    return exchange;
+  }
+
+  private void attempt(
+    final int attempt)
+  {
+    if (this.cancelled) {
+      return;
+    }
+
+    final var delay = this.rateLimiter.reserve();
+    if (delay.isZero()) {
+      this.send(attempt);
+      return;
+    }
+
+    this.metrics.rateLimitWaited(this.request.uri().getAuthority(), delay);
+    final var executor =
+      CompletableFuture.delayedExecutor(delay.toNanos(), TimeUnit.NANOSECONDS);
+    CompletableFuture.runAsync(
+      () -> this.guarded(attempt, () -> this.send(attempt)), executor);
+  }
+
+  /**
+   * Run part of an exchange, completing the exchange with any exception
+   * raised.
+   */
+
+  private void guarded(
+    final int attempt,
+    final Runnable action)
+  {
+    try {
+      action.run();
+    } catch (final Throwable e) {
+      this.attempts = attempt;
+      this.result.completeExceptionally(e);
+    }
+  }
+
+  private void send(
+    final int attempt)
+  {
+    if (this.cancelled) {
+      return;
+    }
+
+    this.attempts = attempt;
+    this.metrics.requestSent(this.repository, sizeOf(this.request));
+
+    final var timeStarted = System.nanoTime();
+    final var sent =
+      this.transport.send(this.request);
+    this.inFlight = sent;
+
+    sent.whenComplete((response, failure) -> {
+      try {
+        this.handle(attempt, timeStarted, response, failure);
+      } catch (final Throwable e) {
+        if (this.result.completeExceptionally(e) && response != null) {
+          closeQuietly(response.body());
+        }
+      }
+    });
+  }
+
+  private void handle(
+    final int attempt,
+    final long timeStarted,
+    final HttpResponse<InputStream> response,
+    final Throwable failure)
+  {
+    if (this.cancelled) {
+      if (response != null) {
+        closeQuietly(response.body());
+      }
+      return;
+    }
+
+    this.metrics.requestCompleted(
+      this.repository,
+      response != null ? Integer.toString(response.statusCode()) : "error",
+      Duration.ofNanos(System.nanoTime() - timeStarted)
+    );
+
+    if (response != null) {
+      final var statusCode = response.statusCode();
+      if (statusCode == 429 || statusCode == 503) {
+        this.rateLimiter.throttled(retryAfterOf(response));
+        this.metrics.rateLimitThrottled(this.request.uri().getAuthority());
+      } else {
+        this.rateLimiter.accepted();
+      }
+    }
+
+    final var canRetry =
+      attempt < this.retryPolicy.maximumAttempts();
+
+    if (failure != null) {
+      final var cause = unwrap(failure);
+      if (canRetry && cause instanceof IOException) {
+        this.retryAfter(attempt, Duration.ZERO);
+        return;
+      }
+      this.finish(new Outcome(Optional.empty(), Optional.of(cause), attempt));
+      return;
+    }
+
+    if (canRetry && CheckVersionRetryPolicy.isRetryable(response.statusCode())) {
+      final var serverRequested = retryAfterOf(response);
+      if (this.retryPolicy.permits(serverRequested)) {
+        closeQuietly(response.body());
+        this.retryAfter(attempt, serverRequested);
+        return;
+      }
+    }
+
+    this.finish(new Outcome(Optional.of(response), Optional.empty(), attempt));
+  }
+
+  private void finish(
+    final Outcome outcome)
+  {
+    if (!this.result.complete(outcome)) {
+      outcome.response.ifPresent(r -> closeQuietly(r.body()));
+    }
+  }
+
+  private void retryAfter(
+    final int attempt,
+    final Duration serverRequested)
+  {
+    final var delay =
+      this.retryPolicy.delayBefore(attempt, serverRequested);
+    final var executor =
+      CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS);
+
+    CompletableFuture.runAsync(
+      () -> this.guarded(attempt + 1, () -> this.attempt(attempt + 1)), executor);
+  }
+
+  /**
+   * Estimate the size of a request as an HTTP/1.1 request line and headers.
+   * Headers that the HTTP client adds by itself (such as
+   * {@code User-Agent}) are not counted.
+   */
+
+  private static long sizeOf(
+    final HttpRequest request)
+  {
+    final var uri = request.uri();
+    final var target =
+      Objects.requireNonNullElse(uri.getRawPath(), "/")
+        + (uri.getRawQuery() != null ? "?" + uri.getRawQuery() : "");
+
+    var size = 0L;
+    size += request.method().length() + 1 + target.length() + " HTTP/1.1\r\n".length();
+    size += "Host: \r\n".length() + uri.getRawAuthority().length();
+    for (final var header : request.headers().map().entrySet()) {
+      for (final var value : header.getValue()) {
+        size += header.getKey().length() + ": \r\n".length() + value.length();
+      }
+    }
+    size += "\r\n".length();
+    return size;
+  }
+
+  private static Duration retryAfterOf(
+    final HttpResponse<InputStream> response)
+  {
+    return response.headers()
+      .firstValue("Retry-After")
+      .map(value -> retryAfterOf(value, Instant.now()))
+      .orElse(Duration.ZERO);
+  }
+
+  /**
+   * Parse a {@code Retry-After} value, which is either a number of seconds
+   * or an HTTP date. A date is converted to the delay from {@code now}.
+   * Unparseable values, and dates in the past, yield zero, so that the
+   * retry policy's own delay is used.
+   *
+   * @param value The header value
+   * @param now   The current time
+   *
+   * @return The delay that the server asked for
+   */
+
+  static Duration retryAfterOf(
+    final String value,
+    final Instant now)
+  {
+    final var text = value.trim();
+    try {
+      return Duration.ofSeconds(Long.parseUnsignedLong(text));
+    } catch (final NumberFormatException e) {
+      // Not a number of seconds; try a date.
+    }
+
+    try {
+      final var date =
+        ZonedDateTime.parse(text, DateTimeFormatter.RFC_1123_DATE_TIME);
+      final var delay = Duration.between(now, date.toInstant());
+      return delay.isNegative() ? Duration.ZERO : delay;
+    } catch (final DateTimeException e) {
+      return Duration.ZERO;
+    }
+  }
+
+  private static Throwable unwrap(
+    final Throwable failure)
+  {
+    if (failure instanceof CompletionException || failure instanceof ExecutionException) {
+      final var cause = failure.getCause();
+      if (cause != null) {
+        return cause;
+      }
+    }
+    return failure;
+  }
+
+  static void closeQuietly(
+    final InputStream stream)
+  {
+    try {
+      stream.close();
+    } catch (final IOException e) {
+      // Nothing can usefully be done about this.
+    }
+  }
+
+  /**
+   * Wait for the exchange to complete.
+   *
+   * @return The outcome of the exchange, whose failure is the exception
+   * raised if the exchange could not be carried out
+   *
+   * @throws InterruptedException If the calling thread is interrupted; the
+   *                              exchange is cancelled
+   */
+
+  Outcome await()
+    throws InterruptedException
+  {
+    try {
+      return this.result.get();
+    } catch (final InterruptedException e) {
+      this.cancel();
+      throw e;
+    } catch (final ExecutionException e) {
+      return new Outcome(
+        Optional.empty(), Optional.of(unwrap(e)), Math.max(1, this.attempts));
+    } catch (final CancellationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Cancel the exchange. If the exchange has already completed, the
+   * response body (if any) is released.
+   */
+
+  void cancel()
+  {
+    this.cancelled = true;
+
+    final var current = this.inFlight;
+    if (current != null) {
+      current.cancel(true);
+    }
+
+    if (!this.result.cancel(false)) {
+      this.result.thenAccept(outcome -> {
+        outcome.response.ifPresent(r -> closeQuietly(r.body()));
+      });
+    }
+  }
+
+  /**
+   * The outcome of an exchange: Either the final response, or the failure
+   * that ended the last attempt.
+   */
+
+  static final class Outcome
+  {
+    private final Optional<HttpResponse<InputStream>> response;
+    private final Optional<Throwable> failure;
+    private final int attempts;
+
+    private Outcome(
+      final Optional<HttpResponse<InputStream>> inResponse,
+      final Optional<Throwable> inFailure,
+      final int inAttempts)
+    {
+      this.response =
+        Objects.requireNonNull(inResponse, "response");
+      this.failure =
+        Objects.requireNonNull(inFailure, "failure");
+      this.attempts = inAttempts;
+    }
+
+    /**
+     * @return The final response, if one was received
+     */
+
+    Optional<HttpResponse<InputStream>> response()
+    {
+      return this.response;
+    }
+
+    /**
+     * @return The failure that ended the last attempt, if no response was
+     * received
+     */
+
+    Optional<Throwable> failure()
+    {
+      return this.failure;
+    }
+
+    /**
+     * @return The number of attempts made
+     */
+
+    int attempts()
+    {
+      return this.attempts;
+    }
+  }
+}
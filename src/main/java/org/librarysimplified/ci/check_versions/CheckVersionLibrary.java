@@ -1,25 +1,11 @@
 package org.librarysimplified.ci.check_versions;
 
 import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
+
 import java.util.Comparator;
 import java.util.Objects;
 import java.util.Set;
 
-import static java.net.http.HttpResponse.BodyHandlers.ofInputStream;
-
 /**
  * A library that can be checked against a repository.
  */
@@ -70,105 +56,52 @@ public final class CheckVersionLibrary implements Comparable<CheckVersionLibrary
     return this.version;
   }
 
-  CheckVersionLibraryStatusType check(
-    final HttpClient httpClient)
+  /**
+   * @return The repositories in which the library is expected to exist, in
+   * order of precedence
+   */
+
+  public Set<String> repositories()
+  {
+    return this.checkRepositories;
+  }
+
+  /**
+   * Determine the status of this library given the result of looking up
+   * the latest release of its artifact.
+   *
+   * @param lookup The lookup result
+   *
+   * @return The library status
+   */
+
+  CheckVersionLibraryStatusType statusFor(
+    final CheckVersionLookup lookup)
   {
     if (this.ignore) {
       return new CheckVersionLibraryStatusIgnored(this);
     }
 
-    final var groupSlashes =
-      this.group.replace('.', '/');
-
-    for (final var baseServer : this.checkRepositories) {
-      final var serverWithoutSlash =
-        baseServer.replace("/+$", "");
-      final var targetURI =
-        URI.create(
-          new StringBuilder(64)
-            .append(serverWithoutSlash)
-            .append(groupSlashes)
-            .append("/")
-            .append(this.artifact)
-            .append("/maven-metadata.xml")
-            .toString()
-        );
-
-      final var request =
-        HttpRequest.newBuilder(targetURI)
-          .GET()
-          .build();
-
-      try {
-        final var response =
-          httpClient.send(request, ofInputStream());
-
-        final var statusCode = response.statusCode();
-        if (statusCode == 404) {
-          continue;
-        }
-
-        if (statusCode >= 500) {
-          return new CheckVersionLibraryStatusError(
-            this, targetURI + ": " + statusCode);
-        }
-
-        try (var stream = response.body()) {
-          return this.findLatestVersion(stream);
-        }
-      } catch (final IOException | InterruptedException e) {
-        var message = e.getMessage();
-        if (message == null) {
-          message = e.getClass().getSimpleName();
+    switch (lookup.kind()) {
+      case FOUND: {
+        final var availableVersion = lookup.release().orElseThrow();
+        if (availableVersion.compareTo(this.version) > 0) {
+          return new CheckVersionLibraryStatusOutOfDate(this, lookup, availableVersion);
         }
-        message = String.format("%s %s", baseServer, message);
-        return new CheckVersionLibraryStatusError(this, message);
+        return new CheckVersionLibraryStatusUpToDate(this, lookup);
       }
-    }
-
-    return new CheckVersionLibraryStatusUnavailable(this);
-  }
-
-  private CheckVersionLibraryStatusType findLatestVersion(
-    final InputStream stream)
-    throws IOException
-  {
-    try {
-      final XPath xpath =
-        XPathFactory.newInstance()
-          .newXPath();
-      final XPathExpression expression =
-        xpath.compile("/metadata/versioning/release");
-
-      final var documentBuilders =
-        DocumentBuilderFactory.newDefaultInstance();
-      final var documentBuilder =
-        documentBuilders.newDocumentBuilder();
-      final var document =
-        documentBuilder.parse(stream);
-
-      final var availableVersionText =
-        expression.evaluate(document);
-
-      if (availableVersionText == null || availableVersionText.isBlank()) {
-        throw new IOException(
-          String.format(
-            "Received unparseable version number '%s' from server",
-            availableVersionText)
-        );
+      case NOT_FOUND: {
+        return new CheckVersionLibraryStatusUnavailable(this, lookup);
       }
-
-      final var availableVersion =
-        new DefaultArtifactVersion(availableVersionText);
-
-      if (availableVersion.compareTo(this.version) > 0) {
-        return new CheckVersionLibraryStatusOutOfDate(this, availableVersion);
+      case FAILED: {
+        return new CheckVersionLibraryStatusError(this, lookup, lookup.message());
+      }
+      case REPOSITORY_SKIPPED: {
+        return new CheckVersionLibraryStatusRepositorySkipped(this, lookup);
       }
-
-      return new CheckVersionLibraryStatusUpToDate(this);
-    } catch (ParserConfigurationException | SAXException | XPathExpressionException e) {
-      throw new IOException(e);
     }
+
+    throw new IllegalStateException("Unreachable code");
   }
 
   @Override
@@ -0,0 +1,41 @@
+package org.librarysimplified.ci.check_versions;
+
+import java.util.Objects;
+import java.util.Optional;
+
+public final class CheckVersionLibraryStatusCancelled
+  implements CheckVersionLibraryStatusType
+{
+  private final CheckVersionLibrary library;
+
+  public CheckVersionLibraryStatusCancelled(
+    final CheckVersionLibrary library)
+  {
+    this.library =
+      Objects.requireNonNull(library, "library");
+  }
+
+  @Override
+  public CheckVersionLibrary library()
+  {
+    return this.library;
+  }
+
+  @Override
+  public Optional<CheckVersionLookup> lookup()
+  {
+    return Optional.empty();
+  }
+
+  @Override
+  public boolean isOk()
+  {
+    return true;
+  }
+
+  @Override
+  public String message()
+  {
+    return "Cancelled (another library failed the check)";
+  }
+}
@@ -1,19 +1,24 @@
 package org.librarysimplified.ci.check_versions;
 
 import java.util.Objects;
+import java.util.Optional;
 
 public final class CheckVersionLibraryStatusError
   implements CheckVersionLibraryStatusType
 {
   private final CheckVersionLibrary library;
+  private final CheckVersionLookup lookup;
   private final String message;
 
   public CheckVersionLibraryStatusError(
     final CheckVersionLibrary library,
+    final CheckVersionLookup lookup,
     final String message)
   {
     this.library =
       Objects.requireNonNull(library, "library");
+    this.lookup =
+      Objects.requireNonNull(lookup, "lookup");
     this.message =
       Objects.requireNonNull(message, "message");
   }
@@ -24,6 +29,12 @@ public final class CheckVersionLibraryStatusError
     return this.library;
   }
 
+  @Override
+  public Optional<CheckVersionLookup> lookup()
+  {
+    return Optional.of(this.lookup);
+  }
+
   @Override
   public boolean isOk()
   {
@@ -33,6 +44,10 @@ public final class CheckVersionLibraryStatusError
   @Override
   public String message()
   {
+    final var attempts = this.attempts();
+    if (attempts > 1) {
+      return String.format("ERROR: %s (after %d attempts)", this.message, attempts);
+    }
     return "ERROR: " + this.message;
   }
 }
@@ -1,6 +1,7 @@
 package org.librarysimplified.ci.check_versions;
 
 import java.util.Objects;
+import java.util.Optional;
 
 public final class CheckVersionLibraryStatusIgnored
   implements CheckVersionLibraryStatusType
@@ -20,6 +21,12 @@ public final class CheckVersionLibraryStatusIgnored
     return this.library;
   }
 
+  @Override
+  public Optional<CheckVersionLookup> lookup()
+  {
+    return Optional.empty();
+  }
+
   @Override
   public boolean isOk()
   {
@@ -3,19 +3,24 @@ package org.librarysimplified.ci.check_versions;
 import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
 
 import java.util.Objects;
+import java.util.Optional;
 
 public final class CheckVersionLibraryStatusOutOfDate
   implements CheckVersionLibraryStatusType
 {
   private final CheckVersionLibrary library;
+  private final CheckVersionLookup lookup;
   private final DefaultArtifactVersion availableVersion;
 
   public CheckVersionLibraryStatusOutOfDate(
     final CheckVersionLibrary library,
+    final CheckVersionLookup lookup,
     final DefaultArtifactVersion availableVersion)
   {
     this.library =
       Objects.requireNonNull(library, "library");
+    this.lookup =
+      Objects.requireNonNull(lookup, "lookup");
     this.availableVersion =
       Objects.requireNonNull(availableVersion, "availableVersion");
   }
@@ -26,6 +31,12 @@ public final class CheckVersionLibraryStatusOutOfDate
     return this.library;
   }
 
+  @Override
+  public Optional<CheckVersionLookup> lookup()
+  {
+    return Optional.of(this.lookup);
+  }
+
   @Override
   public boolean isOk()
   {
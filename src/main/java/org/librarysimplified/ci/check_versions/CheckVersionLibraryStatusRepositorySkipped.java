@@ -0,0 +1,47 @@
+package org.librarysimplified.ci.check_versions;
+
+import java.util.Objects;
+import java.util.Optional;
+
+public final class CheckVersionLibraryStatusRepositorySkipped
+  implements CheckVersionLibraryStatusType
+{
+  private final CheckVersionLibrary library;
+  private final CheckVersionLookup lookup;
+
+  public CheckVersionLibraryStatusRepositorySkipped(
+    final CheckVersionLibrary library,
+    final CheckVersionLookup lookup)
+  {
+    this.library =
+      Objects.requireNonNull(library, "library");
+    this.lookup =
+      Objects.requireNonNull(lookup, "lookup");
+  }
+
+  @Override
+  public CheckVersionLibrary library()
+  {
+    return this.library;
+  }
+
+  @Override
+  public Optional<CheckVersionLookup> lookup()
+  {
+    return Optional.of(this.lookup);
+  }
+
+  @Override
+  public boolean isOk()
+  {
+    return false;
+  }
+
+  @Override
+  public String message()
+  {
+    return String.format(
+      "ERROR: Repository %s was skipped after repeated failures",
+      this.lookup.repository().orElse("?"));
+  }
+}
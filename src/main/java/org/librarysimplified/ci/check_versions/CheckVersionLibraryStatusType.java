@@ -1,5 +1,7 @@
 package org.librarysimplified.ci.check_versions;
 
+import java.util.Optional;
+
 /**
  * The status of a check for a given library.
  */
@@ -13,6 +15,23 @@ public interface CheckVersionLibraryStatusType
 
   String message();
 
+  /**
+   * @return The lookup that produced this status, if the library was looked
+   * up at all
+   */
+
+  Optional<CheckVersionLookup> lookup();
+
+  /**
+   * @return The number of requests made to determine this status, including
+   * retries
+   */
+
+  default int attempts()
+  {
+    return this.lookup().map(CheckVersionLookup::attempts).orElse(0);
+  }
+
   @Override
   default int compareTo(
     final CheckVersionLibraryStatusType other)
@@ -1,17 +1,22 @@
 package org.librarysimplified.ci.check_versions;
 
 import java.util.Objects;
+import java.util.Optional;
 
 public final class CheckVersionLibraryStatusUnavailable
   implements CheckVersionLibraryStatusType
 {
   private final CheckVersionLibrary library;
+  private final CheckVersionLookup lookup;
 
   public CheckVersionLibraryStatusUnavailable(
-    final CheckVersionLibrary library)
+    final CheckVersionLibrary library,
+    final CheckVersionLookup lookup)
   {
     this.library =
       Objects.requireNonNull(library, "library");
+    this.lookup =
+      Objects.requireNonNull(lookup, "lookup");
   }
 
   @Override
@@ -20,6 +25,12 @@ public final class CheckVersionLibraryStatusUnavailable
     return this.library;
   }
 
+  @Override
+  public Optional<CheckVersionLookup> lookup()
+  {
+    return Optional.of(this.lookup);
+  }
+
   @Override
   public boolean isOk()
   {
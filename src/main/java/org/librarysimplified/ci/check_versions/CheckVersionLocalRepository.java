@@ -0,0 +1,275 @@
+package org.librarysimplified.ci.check_versions;
+
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Reads metadata from repositories on the local file system, given as
+ * {@code file:} URIs. Both repositories with the layout of a remote
+ * repository (such as a mirror synced onto the machine) and local
+ * repositories maintained by Maven (such as {@code ~/.m2/repository}) are
+ * supported: Maven keeps a separate {@code maven-metadata-<id>.xml} file
+ * for each repository from which an artifact was downloaded, so every
+ * {@code maven-metadata*.xml} file for an artifact is read, and the
+ * greatest release among them is taken. Files that give no release are
+ * ignored.
+ *
+ * Metadata files are memory-mapped and passed to the same parser as
+ * metadata received over HTTP.
+ */
+
+final class CheckVersionLocalRepository
+{
+  private final CheckVersionMetrics metrics;
+
+  CheckVersionLocalRepository(
+    final CheckVersionMetrics inMetrics)
+  {
+    this.metrics =
+      Objects.requireNonNull(inMetrics, "metrics");
+  }
+
+  /**
+   * @param baseServer The repository
+   *
+   * @return {@code true} if the given repository is on the local file system
+   */
+
+  static boolean isLocal(
+    final String baseServer)
+  {
+    return baseServer.regionMatches(true, 0, "file:", 0, 5);
+  }
+
+  /**
+   * @param baseServer The repository
+   *
+   * @return The directory of the given local repository
+   *
+   * @throws IllegalArgumentException If the repository is not an absolute
+   *                                  {@code file:} URI
+   */
+
+  static Path directoryOf(
+    final String baseServer)
+  {
+    return Paths.get(URI.create(baseServer));
+  }
+
+  /**
+   * Look up the latest release of the given artifact.
+   *
+   * @param baseServer The repository
+   * @param group      The artifact group
+   * @param artifact   The artifact name
+   *
+   * @return A result, or nothing if the repository does not have the artifact
+   */
+
+  Optional<CheckVersionLookup> lookup(
+    final String baseServer,
+    final String group,
+    final String artifact)
+  {
+    try {
+      var directory = directoryOf(baseServer);
+      for (final var segment : group.split("\\.")) {
+        directory = directory.resolve(segment);
+      }
+      directory = directory.resolve(artifact);
+
+      /*
+       * Metadata files without a release (such as the
+       * maven-metadata-local.xml file that Maven writes for snapshots
+       * installed locally) are skipped, and a file that cannot be read only
+       * fails the lookup if no other file gives a release.
+       */
+
+      DefaultArtifactVersion greatest = null;
+      IOException failure = null;
+      try (var files = Files.newDirectoryStream(directory, "maven-metadata*.xml")) {
+        for (final var file : files) {
+          final String releaseText;
+          try {
+            releaseText = this.parseRelease(baseServer, file);
+          } catch (final IOException e) {
+            if (failure == null) {
+              failure = e;
+            }
+            continue;
+          }
+
+          if (releaseText.isBlank()) {
+            continue;
+          }
+
+          final var release = new DefaultArtifactVersion(releaseText);
+          if (greatest == null || release.compareTo(greatest) > 0) {
+            greatest = release;
+          }
+        }
+      } catch (final NoSuchFileException | NotDirectoryException e) {
+        return Optional.empty();
+      }
+
+      if (greatest != null) {
+        return Optional.of(CheckVersionLookup.found(baseServer, greatest));
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      return Optional.empty();
+    } catch (final IOException | IllegalArgumentException e) {
+      return Optional.of(
+        CheckVersionLookup.failed(String.format("%s %s", baseServer, e.getMessage())));
+    }
+  }
+
+  /**
+   * Read the POM of the given version of an artifact.
+   *
+   * @param baseServer The repository
+   * @param group      The artifact group
+   * @param artifact   The artifact name
+   * @param version    The artifact version
+   *
+   * @return The POM, or nothing if the repository does not have it
+   *
+   * @throws IOException On I/O or parse errors
+   */
+
+  Optional<CheckVersionPom> pom(
+    final String baseServer,
+    final String group,
+    final String artifact,
+    final String version)
+    throws IOException
+  {
+    Path file;
+    try {
+      file = directoryOf(baseServer);
+    } catch (final IllegalArgumentException e) {
+      throw new IOException(String.format("%s %s", baseServer, e.getMessage()), e);
+    }
+    for (final var segment : group.split("\\.")) {
+      file = file.resolve(segment);
+    }
+    file = file.resolve(artifact)
+      .resolve(version)
+      .resolve(artifact + "-" + version + ".pom");
+
+    try (var channel = FileChannel.open(file, READ)) {
+      final var size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException(
+          String.format("POM file %s is too large (%d bytes)", file, size));
+      }
+
+      final var buffer = channel.map(READ_ONLY, 0L, size);
+      this.metrics.responseBytesReceived(baseServer, size);
+
+      final var timeStarted = System.nanoTime();
+      try {
+        return Optional.of(CheckVersionPom.parse(new BufferStream(buffer)));
+      } catch (final IOException e) {
+        throw new IOException(file + ": " + e.getMessage(), e);
+      } finally {
+        this.metrics.parsed(
+          "pom", Duration.ofNanos(System.nanoTime() - timeStarted));
+      }
+    } catch (final NoSuchFileException e) {
+      return Optional.empty();
+    }
+  }
+
+  private String parseRelease(
+    final String baseServer,
+    final Path file)
+    throws IOException
+  {
+    try (var channel = FileChannel.open(file, READ)) {
+      final var size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException(
+          String.format("Metadata file %s is too large (%d bytes)", file, size));
+      }
+
+      final var buffer = channel.map(READ_ONLY, 0L, size);
+      this.metrics.responseBytesReceived(baseServer, size);
+
+      final var timeStarted = System.nanoTime();
+      try {
+        return CheckVersionMetadataParser.parseRelease(new BufferStream(buffer));
+      } catch (final IOException e) {
+        throw new IOException(file + ": " + e.getMessage(), e);
+      } finally {
+        this.metrics.parsed(
+          "metadata", Duration.ofNanos(System.nanoTime() - timeStarted));
+      }
+    }
+  }
+
+  /**
+   * A stream that reads from a (mapped) buffer.
+   */
+
+  private static final class BufferStream extends InputStream
+  {
+    private final ByteBuffer buffer;
+
+    BufferStream(
+      final ByteBuffer inBuffer)
+    {
+      this.buffer =
+        Objects.requireNonNull(inBuffer, "buffer");
+    }
+
+    @Override
+    public int read()
+    {
+      if (!this.buffer.hasRemaining()) {
+        return -1;
+      }
+      return this.buffer.get() & 0xff;
+    }
+
+    @Override
+    public int read(
+      final byte[] bytes,
+      final int offset,
+      final int length)
+    {
+      if (length == 0) {
+        return 0;
+      }
+      if (!this.buffer.hasRemaining()) {
+        return -1;
+      }
+      final var count = Math.min(length, this.buffer.remaining());
+      this.buffer.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public int available()
+    {
+      return this.buffer.remaining();
+    }
+  }
+}
@@ -0,0 +1,246 @@
+package org.librarysimplified.ci.check_versions;
+
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The result of looking up the latest release of an artifact in a set of
+ * repositories. A single lookup may be shared by any number of libraries
+ * that refer to the same artifact.
+ */
+
+public final class CheckVersionLookup
+{
+  private final Kind kind;
+  private final Optional<String> repository;
+  private final Optional<DefaultArtifactVersion> release;
+  private final String message;
+  private final int attempts;
+  private final Duration duration;
+
+  private CheckVersionLookup(
+    final Kind inKind,
+    final Optional<String> inRepository,
+    final Optional<DefaultArtifactVersion> inRelease,
+    final String inMessage,
+    final int inAttempts,
+    final Duration inDuration)
+  {
+    this.kind =
+      Objects.requireNonNull(inKind, "kind");
+    this.repository =
+      Objects.requireNonNull(inRepository, "repository");
+    this.release =
+      Objects.requireNonNull(inRelease, "release");
+    this.message =
+      Objects.requireNonNull(inMessage, "message");
+    this.attempts = inAttempts;
+    this.duration =
+      Objects.requireNonNull(inDuration, "duration");
+  }
+
+  /**
+   * @param repository The repository that holds the artifact
+   * @param release    The latest release
+   *
+   * @return A lookup that found the latest release of an artifact
+   */
+
+  public static CheckVersionLookup found(
+    final String repository,
+    final DefaultArtifactVersion release)
+  {
+    return new CheckVersionLookup(
+      Kind.FOUND,
+      Optional.of(repository),
+      Optional.of(release),
+      "",
+      0,
+      Duration.ZERO
+    );
+  }
+
+  /**
+   * @return A lookup that determined that no repository holds an artifact
+   */
+
+  public static CheckVersionLookup notFound()
+  {
+    return new CheckVersionLookup(
+      Kind.NOT_FOUND,
+      Optional.empty(),
+      Optional.empty(),
+      "",
+      0,
+      Duration.ZERO
+    );
+  }
+
+  /**
+   * @param message The error message
+   *
+   * @return A lookup that failed
+   */
+
+  public static CheckVersionLookup failed(
+    final String message)
+  {
+    return new CheckVersionLookup(
+      Kind.FAILED,
+      Optional.empty(),
+      Optional.empty(),
+      message,
+      0,
+      Duration.ZERO
+    );
+  }
+
+  /**
+   * @param repository The repository that was skipped
+   *
+   * @return A lookup that could not be completed because a repository that
+   * it depends on was skipped after repeated failures
+   */
+
+  public static CheckVersionLookup repositorySkipped(
+    final String repository)
+  {
+    return new CheckVersionLookup(
+      Kind.REPOSITORY_SKIPPED,
+      Optional.of(repository),
+      Optional.empty(),
+      "",
+      0,
+      Duration.ZERO
+    );
+  }
+
+  /**
+   * @param newAttempts The number of requests made
+   *
+   * @return This lookup, recording the given number of requests
+   */
+
+  public CheckVersionLookup withAttempts(
+    final int newAttempts)
+  {
+    return new CheckVersionLookup(
+      this.kind,
+      this.repository,
+      this.release,
+      this.message,
+      newAttempts,
+      this.duration
+    );
+  }
+
+  /**
+   * @param newDuration The time taken
+   *
+   * @return This lookup, recording the given time taken
+   */
+
+  public CheckVersionLookup withDuration(
+    final Duration newDuration)
+  {
+    return new CheckVersionLookup(
+      this.kind,
+      this.repository,
+      this.release,
+      this.message,
+      this.attempts,
+      newDuration
+    );
+  }
+
+  /**
+   * @return The time taken to complete the lookup, including retries
+   */
+
+  public Duration duration()
+  {
+    return this.duration;
+  }
+
+  /**
+   * @return The number of requests made during the lookup, including
+   * retries
+   */
+
+  public int attempts()
+  {
+    return this.attempts;
+  }
+
+  /**
+   * @return The kind of result
+   */
+
+  public Kind kind()
+  {
+    return this.kind;
+  }
+
+  /**
+   * @return The repository that holds the artifact if it was found, or the
+   * repository that was skipped
+   */
+
+  public Optional<String> repository()
+  {
+    return this.repository;
+  }
+
+  /**
+   * @return The latest release, if the artifact was found
+   */
+
+  public Optional<DefaultArtifactVersion> release()
+  {
+    return this.release;
+  }
+
+  /**
+   * @return The error message, if the lookup failed
+   */
+
+  public String message()
+  {
+    return this.message;
+  }
+
+  /**
+   * The kind of lookup result.
+   */
+
+  public enum Kind
+  {
+    /**
+     * The artifact was found.
+     */
+
+    FOUND,
+
+    /**
+     * None of the repositories hold the artifact.
+     */
+
+    NOT_FOUND,
+
+    /**
+     * The lookup failed.
+     */
+
+    FAILED,
+
+    /**
+     * The lookup was abandoned because a repository was skipped after
+     * repeated failures.
+     */
+
+    REPOSITORY_SKIPPED
+  }
+}
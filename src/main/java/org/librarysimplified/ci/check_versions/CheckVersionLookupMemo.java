@@ -0,0 +1,75 @@
+package org.librarysimplified.ci.check_versions;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-memory record of recent lookups, used by long-running processes to
+ * answer repeated checks of the same artifacts without contacting the
+ * repositories again. Only lookups that produced a definite answer (the
+ * artifact was found, or no repository holds it) are remembered; failures
+ * are always retried.
+ */
+
+public final class CheckVersionLookupMemo
+{
+  private final Duration timeToLive;
+  private final Clock clock;
+  private final ConcurrentHashMap<List<Object>, Map.Entry<Instant, CheckVersionLookup>> lookups;
+
+  /**
+   * Create a memo.
+   *
+   * @param inTimeToLive The time for which a lookup is remembered
+   * @param inClock      The clock used to timestamp lookups
+   */
+
+  public CheckVersionLookupMemo(
+    final Duration inTimeToLive,
+    final Clock inClock)
+  {
+    this.timeToLive =
+      Objects.requireNonNull(inTimeToLive, "timeToLive");
+    this.clock =
+      Objects.requireNonNull(inClock, "clock");
+    this.lookups =
+      new ConcurrentHashMap<>();
+  }
+
+  Optional<CheckVersionLookup> find(
+    final List<Object> key)
+  {
+    final var entry = this.lookups.get(key);
+    if (entry == null) {
+      return Optional.empty();
+    }
+    if (entry.getKey().plus(this.timeToLive).isBefore(this.clock.instant())) {
+      this.lookups.remove(key, entry);
+      return Optional.empty();
+    }
+    return Optional.of(entry.getValue().withAttempts(0));
+  }
+
+  void store(
+    final List<Object> key,
+    final CheckVersionLookup lookup)
+  {
+    switch (lookup.kind()) {
+      case FOUND:
+      case NOT_FOUND: {
+        this.lookups.put(key, Map.entry(this.clock.instant(), lookup));
+        break;
+      }
+      case FAILED:
+      case REPOSITORY_SKIPPED: {
+        break;
+      }
+    }
+  }
+}
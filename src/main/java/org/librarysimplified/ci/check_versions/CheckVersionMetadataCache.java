@@ -0,0 +1,753 @@
+package org.librarysimplified.ci.check_versions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A persistent on-disk cache of repository metadata.
+ *
+ * Each entry is keyed by repository, group, and artifact, and consists of
+ * a single file ({@code .properties}) holding the response validators and
+ * the release version parsed from the response. Response bodies are not
+ * kept: a {@code 304} response only ever needs the release, and keeping
+ * the body would mean reading all of it, when the parser otherwise stops
+ * at the release. Files are written to temporary files and atomically
+ * renamed into place, so readers never observe partially written entries.
+ *
+ * The cache can be shared by several processes at once. Before fetching an
+ * artifact, a process takes a {@link Flight} for it, which is held until
+ * the response has been stored; a process that wants the same artifact in
+ * the meantime waits for the flight, and then uses the entry that the
+ * first process stored rather than sending a request of its own. Flights
+ * are held using {@link FileChannel} locks on a lock file next to the cache
+ * directory. Locks are taken on one of a fixed number of regions of the
+ * file, chosen by the entry's key, so the lock file never needs to be
+ * cleaned up. Files shared by every entry are updated while holding a
+ * region of their own (see {@link #updateShared(SharedUpdateType)}).
+ *
+ * Entries that have not been validated against their repository within
+ * the configured time-to-live are evicted, and the least recently
+ * validated entries are evicted until the cache is within its configured
+ * size.
+ */
+
+public final class CheckVersionMetadataCache
+{
+  private static final Logger LOG =
+    Logger.getLogger("CheckVersionMetadataCache");
+
+  private static final int STRIPES = 4096;
+
+  /**
+   * The stripe that guards the files in the cache directory that are shared
+   * by every entry, such as the record of known misses. It lies beyond the
+   * stripes used by entries, so it never contends with a flight.
+   */
+
+  private static final int SHARED_STRIPE = STRIPES;
+  private static final long POLL_MAXIMUM_MILLISECONDS = 100L;
+
+  /**
+   * The lock files in use by this process. POSIX releases every lock that a
+   * process holds on a file when any channel to the file is closed, so each
+   * lock file is opened once and kept open for the life of the process.
+   */
+
+  private static final ConcurrentHashMap<Path, LockFile> LOCK_FILES =
+    new ConcurrentHashMap<>();
+
+  private final Path directory;
+  private final Duration timeToLive;
+  private final long maximumSize;
+  private final Clock clock;
+  private final LockFile lockFile;
+
+  /**
+   * Create a cache.
+   *
+   * @param inDirectory   The cache directory
+   * @param inTimeToLive  The maximum time an entry is kept without being
+   *                      validated
+   * @param inMaximumSize The maximum total size in bytes of all entries
+   * @param inClock       The clock used to timestamp entries
+   *
+   * @throws IOException On errors creating the cache directory
+   */
+
+  public CheckVersionMetadataCache(
+    final Path inDirectory,
+    final Duration inTimeToLive,
+    final long inMaximumSize,
+    final Clock inClock)
+    throws IOException
+  {
+    this.directory =
+      Objects.requireNonNull(inDirectory, "directory").toAbsolutePath();
+    this.timeToLive =
+      Objects.requireNonNull(inTimeToLive, "timeToLive");
+    this.maximumSize = inMaximumSize;
+    this.clock =
+      Objects.requireNonNull(inClock, "clock");
+
+    Files.createDirectories(this.directory);
+    this.lockFile = lockFileFor(this.directory);
+  }
+
+  private static LockFile lockFileFor(
+    final Path directory)
+    throws IOException
+  {
+    final var name = directory.getFileName();
+    final var path =
+      name != null
+        ? directory.resolveSibling(name + ".lock")
+        : directory.resolve(".lock");
+
+    try {
+      return LOCK_FILES.computeIfAbsent(path, p -> {
+        try {
+          return new LockFile(FileChannel.open(p, CREATE, READ, WRITE));
+        } catch (final IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (final UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static int stripeOf(
+    final String key)
+  {
+    return Integer.parseInt(key.substring(0, 3), 16) % STRIPES;
+  }
+
+  /**
+   * Take a flight for the given artifact in each of the given repositories,
+   * waiting for any other thread or process that holds one of the flights.
+   *
+   * @param group        The artifact group
+   * @param artifact     The artifact name
+   * @param repositories The repositories
+   *
+   * @return The flight, which must be closed by the calling thread
+   *
+   * @throws IOException          On I/O errors
+   * @throws InterruptedException If the calling thread is interrupted
+   */
+
+  public Flight acquire(
+    final String group,
+    final String artifact,
+    final Collection<String> repositories)
+    throws IOException, InterruptedException
+  {
+    final var requested = this.clock.instant();
+
+    /*
+     * Stripes are always taken in ascending order, so that two flights
+     * that need the same stripes cannot each hold one the other needs.
+     */
+
+    final var stripes = new TreeSet<Integer>();
+    for (final var repository : repositories) {
+      stripes.add(Integer.valueOf(stripeOf(keyOf(repository, group, artifact))));
+    }
+
+    final var flight = new Flight(this, group, artifact, requested);
+    try {
+      for (final var stripe : stripes) {
+        flight.waited |= this.lockFile.lock(stripe.intValue());
+        flight.stripes.add(stripe);
+      }
+    } catch (final IOException | InterruptedException | RuntimeException e) {
+      flight.close();
+      throw e;
+    }
+    return flight;
+  }
+
+  /**
+   * Update a file in the cache directory that is shared by every entry,
+   * waiting for any other thread or process that is updating one. The
+   * update should read the file afresh, as another process may have
+   * replaced it since it was last read.
+   *
+   * @param update The update
+   *
+   * @throws IOException          On I/O errors
+   * @throws InterruptedException If the calling thread is interrupted
+   */
+
+  public void updateShared(
+    final SharedUpdateType update)
+    throws IOException, InterruptedException
+  {
+    Objects.requireNonNull(update, "update");
+
+    this.lockFile.lock(SHARED_STRIPE);
+    try {
+      update.run();
+    } finally {
+      this.lockFile.unlock(SHARED_STRIPE);
+    }
+  }
+
+  /**
+   * An update to a file shared by every entry.
+   */
+
+  public interface SharedUpdateType
+  {
+    /**
+     * Perform the update.
+     *
+     * @throws IOException On I/O errors
+     */
+
+    void run()
+      throws IOException;
+  }
+
+  private static String keyOf(
+    final String repository,
+    final String group,
+    final String artifact)
+  {
+    final var digest = sha256();
+    digest.update(repository.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+    digest.update(group.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+    digest.update(artifact.getBytes(StandardCharsets.UTF_8));
+    return hexOf(digest.digest());
+  }
+
+  private static MessageDigest sha256()
+  {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String hexOf(
+    final byte[] bytes)
+  {
+    final var text = new StringBuilder(bytes.length * 2);
+    for (final var b : bytes) {
+      text.append(String.format("%02x", Integer.valueOf(b & 0xff)));
+    }
+    return text.toString();
+  }
+
+  /**
+   * Find the cache entry for the given artifact in the given repository.
+   *
+   * @param repository The repository
+   * @param group      The artifact group
+   * @param artifact   The artifact name
+   *
+   * @return The cache entry, if one exists and has not expired
+   */
+
+  public Optional<Entry> find(
+    final String repository,
+    final String group,
+    final String artifact)
+  {
+    final var key = keyOf(repository, group, artifact);
+    final var metaFile = this.directory.resolve(key + ".properties");
+
+    final var properties = new Properties();
+    try (var stream = Files.newInputStream(metaFile)) {
+      properties.load(stream);
+    } catch (final NoSuchFileException e) {
+      return Optional.empty();
+    } catch (final IOException e) {
+      LOG.warning(String.format("Unreadable cache entry %s: %s", metaFile, e));
+      return Optional.empty();
+    }
+
+    final Entry entry;
+    try {
+      entry = new Entry(
+        key,
+        Optional.ofNullable(properties.getProperty("etag")),
+        Optional.ofNullable(properties.getProperty("lastModified")),
+        Objects.requireNonNull(properties.getProperty("release"), "release"),
+        Instant.parse(properties.getProperty("validated"))
+      );
+    } catch (final RuntimeException e) {
+      LOG.warning(String.format("Malformed cache entry %s: %s", metaFile, e));
+      return Optional.empty();
+    }
+
+    if (this.isExpired(entry.validated())) {
+      return Optional.empty();
+    }
+    return Optional.of(entry);
+  }
+
+  private boolean isExpired(
+    final Instant validated)
+  {
+    return validated.plus(this.timeToLive).isBefore(this.clock.instant());
+  }
+
+  /**
+   * Store a freshly fetched entry.
+   *
+   * @param repository   The repository
+   * @param group        The artifact group
+   * @param artifact     The artifact name
+   * @param etag         The response ETag, if any
+   * @param lastModified The response Last-Modified value, if any
+   * @param release      The release version parsed from the response
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public void store(
+    final String repository,
+    final String group,
+    final String artifact,
+    final Optional<String> etag,
+    final Optional<String> lastModified,
+    final String release)
+    throws IOException
+  {
+    final var key = keyOf(repository, group, artifact);
+    final var entry =
+      new Entry(
+        key,
+        etag,
+        lastModified,
+        release,
+        this.clock.instant());
+    this.writeEntry(repository, group, artifact, entry);
+  }
+
+  /**
+   * Record that the given entry was confirmed to be current by its
+   * repository.
+   *
+   * @param repository The repository
+   * @param group      The artifact group
+   * @param artifact   The artifact name
+   * @param entry      The entry
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public void revalidated(
+    final String repository,
+    final String group,
+    final String artifact,
+    final Entry entry)
+    throws IOException
+  {
+    this.writeEntry(
+      repository,
+      group,
+      artifact,
+      new Entry(
+        entry.key,
+        entry.etag,
+        entry.lastModified,
+        entry.release,
+        this.clock.instant())
+    );
+  }
+
+  /**
+   * Remove any entry for the given artifact in the given repository.
+   *
+   * @param repository The repository
+   * @param group      The artifact group
+   * @param artifact   The artifact name
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public void remove(
+    final String repository,
+    final String group,
+    final String artifact)
+    throws IOException
+  {
+    this.removeKey(keyOf(repository, group, artifact));
+  }
+
+  private void removeKey(
+    final String key)
+    throws IOException
+  {
+    Files.deleteIfExists(this.directory.resolve(key + ".properties"));
+  }
+
+  private void writeEntry(
+    final String repository,
+    final String group,
+    final String artifact,
+    final Entry entry)
+    throws IOException
+  {
+    final var properties = new Properties();
+    properties.setProperty("repository", repository);
+    properties.setProperty("group", group);
+    properties.setProperty("artifact", artifact);
+    properties.setProperty("release", entry.release);
+    properties.setProperty("validated", entry.validated.toString());
+    entry.etag.ifPresent(v -> properties.setProperty("etag", v));
+    entry.lastModified.ifPresent(v -> properties.setProperty("lastModified", v));
+
+    final var temporary =
+      Files.createTempFile(this.directory, entry.key, ".tmp");
+    try {
+      try (var stream = Files.newOutputStream(temporary)) {
+        properties.store(stream, "");
+      }
+      Files.move(
+        temporary,
+        this.directory.resolve(entry.key + ".properties"),
+        ATOMIC_MOVE,
+        REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * Evict expired entries, and then evict the least recently validated
+   * entries until the cache is within its maximum size.
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public void evict()
+    throws IOException
+  {
+    final List<Path> metaFiles;
+    try (var stream = Files.list(this.directory)) {
+      metaFiles =
+        stream.filter(p -> p.getFileName().toString().endsWith(".properties"))
+          .collect(Collectors.toList());
+    }
+
+    final var live = new ArrayList<Sized>(metaFiles.size());
+    long totalSize = 0L;
+
+    for (final var metaFile : metaFiles) {
+      final var name = metaFile.getFileName().toString();
+      final var key = name.substring(0, name.length() - ".properties".length());
+
+      final var properties = new Properties();
+      Instant validated;
+      try (var stream = Files.newInputStream(metaFile)) {
+        properties.load(stream);
+        validated = Instant.parse(properties.getProperty("validated"));
+      } catch (final NoSuchFileException e) {
+        continue;
+      } catch (final IOException | RuntimeException e) {
+        validated = Instant.EPOCH;
+      }
+
+      if (this.isExpired(validated)) {
+        this.removeKey(key);
+        continue;
+      }
+
+      final long size;
+      try {
+        size = Files.size(metaFile);
+      } catch (final NoSuchFileException e) {
+        continue;
+      }
+
+      live.add(new Sized(key, validated, size));
+      totalSize += size;
+    }
+
+    live.sort(Comparator.comparing(s -> s.validated));
+    for (final var entry : live) {
+      if (totalSize <= this.maximumSize) {
+        break;
+      }
+      this.removeKey(entry.key);
+      totalSize -= entry.size;
+    }
+  }
+
+  private static final class Sized
+  {
+    private final String key;
+    private final Instant validated;
+    private final long size;
+
+    private Sized(
+      final String inKey,
+      final Instant inValidated,
+      final long inSize)
+    {
+      this.key = inKey;
+      this.validated = inValidated;
+      this.size = inSize;
+    }
+  }
+
+  /**
+   * The right to fetch a set of entries. While a flight is held, no other
+   * thread or process can hold a flight for any of the same entries.
+   */
+
+  public static final class Flight implements AutoCloseable
+  {
+    private final CheckVersionMetadataCache cache;
+    private final String group;
+    private final String artifact;
+    private final Instant requested;
+    private final ArrayList<Integer> stripes;
+    private boolean waited;
+
+    private Flight(
+      final CheckVersionMetadataCache inCache,
+      final String inGroup,
+      final String inArtifact,
+      final Instant inRequested)
+    {
+      this.cache =
+        Objects.requireNonNull(inCache, "cache");
+      this.group =
+        Objects.requireNonNull(inGroup, "group");
+      this.artifact =
+        Objects.requireNonNull(inArtifact, "artifact");
+      this.requested =
+        Objects.requireNonNull(inRequested, "requested");
+      this.stripes =
+        new ArrayList<>();
+    }
+
+    /**
+     * @return {@code true} if another thread or process held the flight
+     * when it was requested
+     */
+
+    public boolean waited()
+    {
+      return this.waited;
+    }
+
+    /**
+     * Find an entry for the given repository that was stored or validated
+     * by another thread or process after this flight was requested. Such an
+     * entry is as fresh as any response that this flight could fetch.
+     *
+     * @param repository The repository
+     *
+     * @return The entry, if there is one
+     */
+
+    public Optional<Entry> published(
+      final String repository)
+    {
+      return this.cache.find(repository, this.group, this.artifact)
+        .filter(e -> !e.validated().isBefore(this.requested));
+    }
+
+    @Override
+    public void close()
+    {
+      for (int index = this.stripes.size() - 1; index >= 0; --index) {
+        this.cache.lockFile.unlock(this.stripes.get(index).intValue());
+      }
+      this.stripes.clear();
+    }
+  }
+
+  /**
+   * A lock file, and the locks on it held by this process. The locks held
+   * by threads in this process are tracked separately, as file locks only
+   * exclude other processes.
+   */
+
+  private static final class LockFile
+  {
+    private final FileChannel channel;
+    private final ReentrantLock[] threads;
+    private final FileLock[] locks;
+
+    LockFile(
+      final FileChannel inChannel)
+    {
+      this.channel =
+        Objects.requireNonNull(inChannel, "channel");
+      this.threads = new ReentrantLock[STRIPES + 1];
+      this.locks = new FileLock[STRIPES + 1];
+      for (int index = 0; index < this.threads.length; ++index) {
+        this.threads[index] = new ReentrantLock();
+      }
+    }
+
+    /**
+     * Lock a stripe.
+     *
+     * @return {@code true} if the lock was held by another thread or process
+     */
+
+    boolean lock(
+      final int stripe)
+      throws IOException, InterruptedException
+    {
+      final var thread = this.threads[stripe];
+      var waited = false;
+      if (!thread.tryLock()) {
+        waited = true;
+        thread.lockInterruptibly();
+      }
+      if (thread.getHoldCount() > 1) {
+        return waited;
+      }
+
+      /*
+       * Waiting for a file lock is done by polling, as a thread interrupted
+       * while blocked in FileChannel.lock() closes the channel, and with it
+       * every lock that this process holds.
+       */
+
+      try {
+        var delay = 1L;
+        while (true) {
+          final var lock = this.channel.tryLock(stripe, 1L, false);
+          if (lock != null) {
+            this.locks[stripe] = lock;
+            return waited;
+          }
+          waited = true;
+          Thread.sleep(delay);
+          delay = Math.min(delay * 2L, POLL_MAXIMUM_MILLISECONDS);
+        }
+      } catch (final IOException | InterruptedException | RuntimeException e) {
+        thread.unlock();
+        throw e;
+      }
+    }
+
+    void unlock(
+      final int stripe)
+    {
+      final var thread = this.threads[stripe];
+      try {
+        if (thread.getHoldCount() == 1) {
+          final var lock = this.locks[stripe];
+          this.locks[stripe] = null;
+          if (lock != null) {
+            lock.release();
+          }
+        }
+      } catch (final IOException e) {
+        LOG.warning("Failed to release cache lock: " + e);
+      } finally {
+        thread.unlock();
+      }
+    }
+  }
+
+  /**
+   * A cache entry.
+   */
+
+  public static final class Entry
+  {
+    private final String key;
+    private final Optional<String> etag;
+    private final Optional<String> lastModified;
+    private final String release;
+    private final Instant validated;
+
+    private Entry(
+      final String inKey,
+      final Optional<String> inEtag,
+      final Optional<String> inLastModified,
+      final String inRelease,
+      final Instant inValidated)
+    {
+      this.key =
+        Objects.requireNonNull(inKey, "key");
+      this.etag =
+        Objects.requireNonNull(inEtag, "etag");
+      this.lastModified =
+        Objects.requireNonNull(inLastModified, "lastModified");
+      this.release =
+        Objects.requireNonNull(inRelease, "release");
+      this.validated =
+        Objects.requireNonNull(inValidated, "validated");
+    }
+
+    /**
+     * @return The ETag of the cached response, if any
+     */
+
+    public Optional<String> etag()
+    {
+      return this.etag;
+    }
+
+    /**
+     * @return The Last-Modified value of the cached response, if any
+     */
+
+    public Optional<String> lastModified()
+    {
+      return this.lastModified;
+    }
+
+    /**
+     * @return The release version parsed from the cached response
+     */
+
+    public String release()
+    {
+      return this.release;
+    }
+
+    /**
+     * @return The time the entry was last validated against its repository
+     */
+
+    public Instant validated()
+    {
+      return this.validated;
+    }
+  }
+}
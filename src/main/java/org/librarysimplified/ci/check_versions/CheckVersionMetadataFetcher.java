@@ -0,0 +1,852 @@
+package org.librarysimplified.ci.check_versions;
+
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Fetches and parses {@code maven-metadata.xml} files to determine the
+ * latest release of artifacts. Repositories given as {@code file:} URIs are
+ * read directly from the file system.
+ */
+
+final class CheckVersionMetadataFetcher
+{
+  private static final Logger LOG =
+    Logger.getLogger("CheckVersionMetadataFetcher");
+
+  private final CheckVersionTransport transport;
+  private final boolean raceRepositories;
+  private final Optional<CheckVersionMetadataCache> cache;
+  private final Optional<CheckVersionNegativeCache> misses;
+  private final Duration requestTimeout;
+  private final CheckVersionRetryPolicy retryPolicy;
+  private final int circuitBreakerThreshold;
+  private final double requestsPerSecond;
+  private final int requestBurst;
+  private final CheckVersionMetrics metrics;
+  private final CheckVersionLocalRepository local;
+  private final ConcurrentHashMap<String, CheckVersionCircuitBreaker> breakers;
+  private final ConcurrentHashMap<String, CheckVersionRateLimiter> rateLimiters;
+
+  CheckVersionMetadataFetcher(
+    final CheckVersionTransport inTransport,
+    final boolean inRaceRepositories,
+    final Optional<CheckVersionMetadataCache> inCache,
+    final Optional<CheckVersionNegativeCache> inMisses,
+    final Duration inRequestTimeout,
+    final CheckVersionRetryPolicy inRetryPolicy,
+    final int inCircuitBreakerThreshold,
+    final double inRequestsPerSecond,
+    final int inRequestBurst,
+    final CheckVersionMetrics inMetrics)
+  {
+    this.transport =
+      Objects.requireNonNull(inTransport, "transport");
+    this.raceRepositories = inRaceRepositories;
+    this.cache =
+      Objects.requireNonNull(inCache, "cache");
+    this.misses =
+      Objects.requireNonNull(inMisses, "misses");
+    this.requestTimeout =
+      Objects.requireNonNull(inRequestTimeout, "requestTimeout");
+    this.retryPolicy =
+      Objects.requireNonNull(inRetryPolicy, "retryPolicy");
+    this.circuitBreakerThreshold = inCircuitBreakerThreshold;
+    this.requestsPerSecond = inRequestsPerSecond;
+    this.requestBurst = inRequestBurst;
+    this.metrics =
+      Objects.requireNonNull(inMetrics, "metrics");
+    this.local =
+      new CheckVersionLocalRepository(this.metrics);
+    this.breakers = new ConcurrentHashMap<>();
+    this.rateLimiters = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Look up the latest release of the given artifact.
+   *
+   * @param group        The artifact group
+   * @param artifact     The artifact name
+   * @param repositories The repositories, in order of precedence
+   *
+   * @return The result of the lookup
+   */
+
+  CheckVersionLookup lookup(
+    final String group,
+    final String artifact,
+    final Set<String> repositories)
+  {
+    final var request = new Request(group, artifact);
+    final var candidates = this.withoutKnownMisses(request, repositories);
+    if (this.raceRepositories) {
+      return this.lookupRacing(request, candidates);
+    }
+    return this.lookupSequentially(request, candidates);
+  }
+
+  /**
+   * Remove the repositories that are known not to contain the artifact.
+   * Those repositories would answer with a 404 and the lookup would move on
+   * to the next repository, so skipping them does not change the result.
+   */
+
+  private Set<String> withoutKnownMisses(
+    final Request request,
+    final Set<String> repositories)
+  {
+    if (this.misses.isEmpty()) {
+      return repositories;
+    }
+
+    final var negative = this.misses.get();
+    final var candidates = new LinkedHashSet<String>(repositories.size());
+    for (final var baseServer : repositories) {
+      if (negative.isKnownMiss(baseServer, request.group, request.artifact)) {
+        this.metrics.cacheHit("negative");
+      } else {
+        this.metrics.cacheMiss("negative");
+        candidates.add(baseServer);
+      }
+    }
+    return candidates;
+  }
+
+  /**
+   * Check each repository in turn, moving on to the next repository only
+   * when the current one does not have the artifact. A repository whose
+   * circuit breaker is open cannot say whether or not it has the artifact,
+   * so the lookup stops there.
+   */
+
+  private CheckVersionLookup lookupSequentially(
+    final Request request,
+    final Set<String> repositories)
+  {
+    int attempts = 0;
+
+    for (final var baseServer : repositories) {
+      if (CheckVersionLocalRepository.isLocal(baseServer)) {
+        final var result =
+          this.local.lookup(baseServer, request.group, request.artifact);
+        if (result.isPresent()) {
+          return result.get().withAttempts(attempts);
+        }
+        continue;
+      }
+
+      if (this.breakerFor(baseServer).isOpen()) {
+        return CheckVersionLookup.repositorySkipped(baseServer)
+          .withAttempts(attempts);
+      }
+
+      final var targetURI = request.metadataURI(baseServer);
+
+      Optional<CheckVersionMetadataCache.Flight> flight = Optional.empty();
+      try {
+        flight = this.flightFor(request, Set.of(baseServer));
+        final var published = this.publishedBy(flight, baseServer);
+        if (published.isPresent()) {
+          return published.get().withAttempts(attempts);
+        }
+
+        final var cached = this.cachedEntry(request, baseServer);
+        final var outcome =
+          this.exchange(baseServer, targetURI, cached).await();
+        attempts += outcome.attempts();
+
+        final var result =
+          this.evaluateOutcome(request, baseServer, targetURI, outcome, cached);
+
+        if (result.isPresent()) {
+          return result.get().withAttempts(attempts);
+        }
+      } catch (final IOException | InterruptedException e) {
+        return errorFor(baseServer, e).withAttempts(attempts);
+      } finally {
+        flight.ifPresent(CheckVersionMetadataCache.Flight::close);
+      }
+    }
+
+    return CheckVersionLookup.notFound().withAttempts(attempts);
+  }
+
+  /**
+   * Send requests to all repositories at once. Responses are still examined
+   * in repository order, so a hit from an earlier repository always takes
+   * precedence over a hit from a later one. Any requests that are still
+   * outstanding when a result is determined are cancelled. No requests are
+   * sent to repositories whose circuit breakers are open. Local repositories
+   * are read when their turn comes, as reading them is cheap.
+   */
+
+  private CheckVersionLookup lookupRacing(
+    final Request request,
+    final Set<String> repositories)
+  {
+    final var servers =
+      List.copyOf(repositories);
+    final var remote =
+      servers.stream()
+        .filter(s -> !CheckVersionLocalRepository.isLocal(s))
+        .filter(s -> !this.breakerFor(s).isOpen())
+        .collect(Collectors.toList());
+
+    final Optional<CheckVersionMetadataCache.Flight> flight;
+    try {
+      flight = this.flightFor(request, remote);
+    } catch (final IOException | InterruptedException e) {
+      return errorFor(servers.get(0), e);
+    }
+
+    final var targetURIs =
+      new ArrayList<URI>(servers.size());
+    final var cachedEntries =
+      new ArrayList<Optional<CheckVersionMetadataCache.Entry>>(servers.size());
+    final var published =
+      new ArrayList<Optional<CheckVersionLookup>>(servers.size());
+    final var exchanges =
+      new ArrayList<Optional<CheckVersionExchange>>(servers.size());
+
+    for (final var baseServer : servers) {
+      final var targetURI = request.metadataURI(baseServer);
+      final var cached = this.cachedEntry(request, baseServer);
+      targetURIs.add(targetURI);
+      cachedEntries.add(cached);
+
+      if (!remote.contains(baseServer)) {
+        published.add(Optional.empty());
+        exchanges.add(Optional.empty());
+        continue;
+      }
+
+      final var result = this.publishedBy(flight, baseServer);
+      published.add(result);
+      if (result.isPresent()) {
+        exchanges.add(Optional.empty());
+      } else {
+        exchanges.add(Optional.of(this.exchange(baseServer, targetURI, cached)));
+      }
+    }
+
+    int attempts = 0;
+
+    try {
+      for (int index = 0; index < servers.size(); ++index) {
+        final var baseServer = servers.get(index);
+        final var exchange = exchanges.get(index);
+        if (CheckVersionLocalRepository.isLocal(baseServer)) {
+          final var result =
+            this.local.lookup(baseServer, request.group, request.artifact);
+          if (result.isPresent()) {
+            return result.get().withAttempts(attempts);
+          }
+          continue;
+        }
+        if (published.get(index).isPresent()) {
+          return published.get(index).get().withAttempts(attempts);
+        }
+        if (exchange.isEmpty()) {
+          return CheckVersionLookup.repositorySkipped(baseServer)
+            .withAttempts(attempts);
+        }
+
+        try {
+          final var outcome = exchange.get().await();
+          attempts += outcome.attempts();
+
+          final var result =
+            this.evaluateOutcome(
+              request,
+              baseServer,
+              targetURIs.get(index),
+              outcome,
+              cachedEntries.get(index));
+
+          if (result.isPresent()) {
+            return result.get().withAttempts(attempts);
+          }
+        } catch (final InterruptedException e) {
+          return errorFor(baseServer, e).withAttempts(attempts);
+        }
+      }
+
+      return CheckVersionLookup.notFound().withAttempts(attempts);
+    } finally {
+      for (final var exchange : exchanges) {
+        exchange.ifPresent(CheckVersionExchange::cancel);
+      }
+      flight.ifPresent(CheckVersionMetadataCache.Flight::close);
+    }
+  }
+
+  /**
+   * Take the cache's flight for the artifact in the given repositories, so
+   * that no other thread or process fetches the artifact from the same
+   * repositories at the same time.
+   */
+
+  private Optional<CheckVersionMetadataCache.Flight> flightFor(
+    final Request request,
+    final Collection<String> repositories)
+    throws IOException, InterruptedException
+  {
+    if (this.cache.isEmpty() || repositories.isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(
+      this.cache.get().acquire(request.group, request.artifact, repositories));
+  }
+
+  /**
+   * Find a result stored in the cache by whoever held the flight before
+   * this lookup took it.
+   */
+
+  private Optional<CheckVersionLookup> publishedBy(
+    final Optional<CheckVersionMetadataCache.Flight> flight,
+    final String baseServer)
+  {
+    if (flight.isEmpty()) {
+      return Optional.empty();
+    }
+
+    final var entry = flight.get().published(baseServer);
+    if (entry.isPresent()) {
+      try {
+        final var release = releaseOf(entry.get().release());
+        this.metrics.cacheHit("shared");
+        return Optional.of(CheckVersionLookup.found(baseServer, release));
+      } catch (final IOException e) {
+        // Fetch the metadata again.
+      }
+    }
+    if (flight.get().waited()) {
+      this.metrics.cacheMiss("shared");
+    }
+    return Optional.empty();
+  }
+
+  private CheckVersionExchange exchange(
+    final String baseServer,
+    final URI targetURI,
+    final Optional<CheckVersionMetadataCache.Entry> cached)
+  {
+    return CheckVersionExchange.start(
+      this.transport,
+      this.metadataRequest(targetURI, cached),
+      this.retryPolicy,
+      this.metrics,
+      baseServer,
+      this.rateLimiterFor(targetURI)
+    );
+  }
+
+  /**
+   * Rate limits apply to hosts rather than repositories, as several
+   * repositories may be served by the same host.
+   */
+
+  private CheckVersionRateLimiter rateLimiterFor(
+    final URI targetURI)
+  {
+    return this.rateLimiters.computeIfAbsent(
+      targetURI.getAuthority(),
+      host -> new CheckVersionRateLimiter(
+        host, this.requestsPerSecond, this.requestBurst));
+  }
+
+  /**
+   * Report the state of the rate limiter of each host that was contacted.
+   */
+
+  void reportRateLimits()
+  {
+    for (final var entry : new TreeMap<>(this.rateLimiters).entrySet()) {
+      final var limiter = entry.getValue();
+      if (limiter.wasThrottled()) {
+        LOG.warning("Rate limit for " + limiter.describe());
+      } else {
+        LOG.info("Rate limit for " + limiter.describe());
+      }
+      this.metrics.rateLimitRate(entry.getKey(), limiter.rate());
+    }
+  }
+
+  /**
+   * Fetch the POM of the given version of an artifact. Each repository is
+   * tried in turn until one of them returns the POM. POMs are never modified
+   * once published, so any repository that has the POM can be used, and a
+   * repository that cannot be asked is recorded and passed over. For the
+   * same reason, POMs are neither revalidated nor stored in the metadata
+   * cache.
+   *
+   * @param group        The artifact group
+   * @param artifact     The artifact name
+   * @param version      The artifact version
+   * @param repositories The repositories, in order of precedence
+   *
+   * @return The POM, or nothing if every repository answered that it does
+   * not have it
+   *
+   * @throws IOException          If no repository returned the POM, and at
+   *                              least one repository could not be asked
+   * @throws InterruptedException If the calling thread is interrupted
+   */
+
+  Optional<CheckVersionPom> fetchPom(
+    final String group,
+    final String artifact,
+    final String version,
+    final Collection<String> repositories)
+    throws IOException, InterruptedException
+  {
+    final var request = new Request(group, artifact);
+    IOException failures = null;
+
+    for (final var baseServer : repositories) {
+      try {
+        final var result =
+          this.fetchPomFrom(request, version, baseServer);
+        if (result.isPresent()) {
+          return result;
+        }
+      } catch (final IOException e) {
+        if (failures == null) {
+          failures = e;
+        } else {
+          failures.addSuppressed(e);
+        }
+      }
+    }
+
+    if (failures != null) {
+      throw failures;
+    }
+    return Optional.empty();
+  }
+
+  private Optional<CheckVersionPom> fetchPomFrom(
+    final Request request,
+    final String version,
+    final String baseServer)
+    throws IOException, InterruptedException
+  {
+    if (CheckVersionLocalRepository.isLocal(baseServer)) {
+      return this.local.pom(
+        baseServer, request.group, request.artifact, version);
+    }
+
+    if (this.breakerFor(baseServer).isOpen()) {
+      throw new IOException(
+        String.format("%s was skipped, as it failed repeatedly", baseServer));
+    }
+
+    final var targetURI = request.pomURI(baseServer, version);
+    final var outcome =
+      this.exchange(baseServer, targetURI, Optional.empty()).await();
+
+    final var failure = outcome.failure();
+    if (failure.isPresent()) {
+      if (failure.get() instanceof IOException) {
+        this.breakerFor(baseServer).recordFailure();
+      }
+      throw new IOException(
+        errorFor(baseServer, failure.get()).message(), failure.get());
+    }
+
+    final var response = outcome.response().orElseThrow();
+    final var received = new CountingStream(response.body());
+    CountingStream stream = null;
+    try (received) {
+      final var statusCode = response.statusCode();
+      if (statusCode == 404) {
+        return Optional.empty();
+      }
+      if (statusCode != 200) {
+        if (statusCode >= 500) {
+          this.breakerFor(baseServer).recordFailure();
+        }
+        throw new IOException(targetURI + ": " + statusCode);
+      }
+
+      stream = new CountingStream(
+        CheckVersionContentEncoding.decode(response.headers(), received));
+
+      final var timeStarted = System.nanoTime();
+      try {
+        return Optional.of(CheckVersionPom.parse(stream));
+      } catch (final IOException e) {
+        throw new IOException(targetURI + ": " + e.getMessage(), e);
+      } finally {
+        this.metrics.parsed(
+          "pom", Duration.ofNanos(System.nanoTime() - timeStarted));
+      }
+    } finally {
+      if (stream == null) {
+        this.metrics.responseReceived(baseServer, received.count, received.count);
+      } else {
+        CheckVersionExchange.closeQuietly(stream);
+        this.metrics.responseReceived(baseServer, received.count, stream.count);
+      }
+    }
+  }
+
+  private Optional<CheckVersionLookup> evaluateOutcome(
+    final Request request,
+    final String baseServer,
+    final URI targetURI,
+    final CheckVersionExchange.Outcome outcome,
+    final Optional<CheckVersionMetadataCache.Entry> cached)
+  {
+    final var failure = outcome.failure();
+    final var serverError =
+      outcome.response().map(r -> r.statusCode() >= 500).orElse(Boolean.FALSE);
+
+    if (serverError.booleanValue()
+      || failure.map(f -> f instanceof IOException).orElse(Boolean.FALSE)) {
+      this.breakerFor(baseServer).recordFailure();
+    }
+
+    if (failure.isPresent()) {
+      return Optional.of(errorFor(baseServer, failure.get()));
+    }
+
+    try {
+      return this.evaluateResponse(
+        request,
+        baseServer,
+        targetURI,
+        outcome.response().orElseThrow(),
+        cached);
+    } catch (final IOException e) {
+      return Optional.of(errorFor(baseServer, e));
+    }
+  }
+
+  /**
+   * Determine a result from the given response. If a cache is in use, the
+   * cache is updated to reflect the response.
+   *
+   * @return A result, or nothing if the repository does not have the artifact
+   */
+
+  private Optional<CheckVersionLookup> evaluateResponse(
+    final Request request,
+    final String baseServer,
+    final URI targetURI,
+    final HttpResponse<InputStream> response,
+    final Optional<CheckVersionMetadataCache.Entry> cached)
+    throws IOException
+  {
+    final var received = new CountingStream(response.body());
+    CountingStream stream = null;
+    try (received) {
+      final var statusCode = response.statusCode();
+      if (statusCode == 404) {
+        this.misses.ifPresent(
+          m -> m.recordMiss(baseServer, request.group, request.artifact));
+        if (this.cache.isPresent()) {
+          updateCache(request, () -> {
+            this.cache.get().remove(baseServer, request.group, request.artifact);
+          });
+        }
+        return Optional.empty();
+      }
+
+      if (statusCode == 200 || statusCode == 304) {
+        this.misses.ifPresent(
+          m -> m.recordHit(baseServer, request.group, request.artifact));
+      }
+
+      if (statusCode == 304 && cached.isPresent()) {
+        this.metrics.cacheHit("metadata");
+        final var entry = cached.get();
+        updateCache(request, () -> {
+          this.cache.get().revalidated(
+            baseServer, request.group, request.artifact, entry);
+        });
+        return Optional.of(
+          CheckVersionLookup.found(baseServer, releaseOf(entry.release())));
+      }
+
+      if (CheckVersionRetryPolicy.isRetryable(statusCode)) {
+        return Optional.of(
+          CheckVersionLookup.failed(targetURI + ": " + statusCode));
+      }
+
+      stream = new CountingStream(
+        CheckVersionContentEncoding.decode(response.headers(), received));
+
+      final var releaseText =
+        this.parseRelease(stream);
+      final var release =
+        releaseOf(releaseText);
+
+      if (this.cache.isPresent()) {
+        this.metrics.cacheMiss("metadata");
+        final var headers = response.headers();
+        updateCache(request, () -> {
+          this.cache.get().store(
+            baseServer,
+            request.group,
+            request.artifact,
+            headers.firstValue("ETag"),
+            headers.firstValue("Last-Modified"),
+            releaseText
+          );
+        });
+      }
+
+      return Optional.of(CheckVersionLookup.found(baseServer, release));
+    } finally {
+      if (stream == null) {
+        this.metrics.responseReceived(baseServer, received.count, received.count);
+      } else {
+        CheckVersionExchange.closeQuietly(stream);
+
+        /*
+         * The parser stops reading as soon as it has found the release, so
+         * the length of the body (if known) is a better measure of what was
+         * transferred than the number of bytes read.
+         */
+
+        final var length =
+          response.headers().firstValueAsLong("Content-Length").orElse(0L);
+        this.metrics.responseReceived(
+          baseServer, Math.max(received.count, length), stream.count);
+      }
+    }
+  }
+
+  private String parseRelease(
+    final InputStream stream)
+    throws IOException
+  {
+    final var timeStarted = System.nanoTime();
+    try {
+      return CheckVersionMetadataParser.parseRelease(stream);
+    } finally {
+      this.metrics.parsed(
+        "metadata", Duration.ofNanos(System.nanoTime() - timeStarted));
+    }
+  }
+
+  private CheckVersionCircuitBreaker breakerFor(
+    final String baseServer)
+  {
+    return this.breakers.computeIfAbsent(
+      baseServer,
+      server -> new CheckVersionCircuitBreaker(
+        server, this.circuitBreakerThreshold));
+  }
+
+  private Optional<CheckVersionMetadataCache.Entry> cachedEntry(
+    final Request request,
+    final String baseServer)
+  {
+    return this.cache.flatMap(
+      c -> c.find(baseServer, request.group, request.artifact));
+  }
+
+  /**
+   * Apply an update to the cache. Failing to update the cache is not a
+   * reason to fail the check, so errors are merely logged.
+   */
+
+  private static void updateCache(
+    final Request request,
+    final CacheUpdateType update)
+  {
+    try {
+      update.execute();
+    } catch (final IOException e) {
+      LOG.warning(
+        String.format(
+          "Failed to update cache for %s:%s: %s",
+          request.group,
+          request.artifact,
+          e));
+    }
+  }
+
+  private interface CacheUpdateType
+  {
+    void execute()
+      throws IOException;
+  }
+
+  private static CheckVersionLookup errorFor(
+    final String baseServer,
+    final Throwable e)
+  {
+    var message = e.getMessage();
+    if (message == null) {
+      message = e.getClass().getSimpleName();
+    }
+    return CheckVersionLookup.failed(
+      String.format("%s %s", baseServer, message));
+  }
+
+  private HttpRequest metadataRequest(
+    final URI targetURI,
+    final Optional<CheckVersionMetadataCache.Entry> cached)
+  {
+    final var builder =
+      this.transport.newRequest(targetURI)
+        .timeout(this.requestTimeout)
+        .header("Accept-Encoding", CheckVersionContentEncoding.ACCEPTED);
+
+    if (cached.isPresent()) {
+      final var entry = cached.get();
+      entry.etag().ifPresent(v -> builder.header("If-None-Match", v));
+      entry.lastModified().ifPresent(v -> builder.header("If-Modified-Since", v));
+    }
+    return builder.GET().build();
+  }
+
+  static DefaultArtifactVersion releaseOf(
+    final String availableVersionText)
+    throws IOException
+  {
+    if (availableVersionText == null || availableVersionText.isBlank()) {
+      throw new IOException(
+        String.format(
+          "Received unparseable version number '%s' from server",
+          availableVersionText)
+      );
+    }
+    return new DefaultArtifactVersion(availableVersionText);
+  }
+
+  /**
+   * A response body that counts the bytes read from it.
+   */
+
+  private static final class CountingStream extends FilterInputStream
+  {
+    private long count;
+
+    CountingStream(
+      final InputStream inStream)
+    {
+      super(inStream);
+    }
+
+    @Override
+    public int read()
+      throws IOException
+    {
+      final var r = super.read();
+      if (r != -1) {
+        ++this.count;
+      }
+      return r;
+    }
+
+    @Override
+    public int read(
+      final byte[] buffer,
+      final int offset,
+      final int length)
+      throws IOException
+    {
+      final var r = super.read(buffer, offset, length);
+      if (r > 0) {
+        this.count += r;
+      }
+      return r;
+    }
+
+    @Override
+    public long skip(
+      final long n)
+      throws IOException
+    {
+      final var r = super.skip(n);
+      this.count += r;
+      return r;
+    }
+  }
+
+  /**
+   * The artifact being looked up.
+   */
+
+  private static final class Request
+  {
+    private final String group;
+    private final String artifact;
+
+    private Request(
+      final String inGroup,
+      final String inArtifact)
+    {
+      this.group =
+        Objects.requireNonNull(inGroup, "group");
+      this.artifact =
+        Objects.requireNonNull(inArtifact, "artifact");
+    }
+
+    private URI metadataURI(
+      final String baseServer)
+    {
+      final var groupSlashes =
+        this.group.replace('.', '/');
+      final var serverWithoutSlash =
+        baseServer.replace("/+$", "");
+
+      return URI.create(
+        new StringBuilder(64)
+          .append(serverWithoutSlash)
+          .append(groupSlashes)
+          .append("/")
+          .append(this.artifact)
+          .append("/maven-metadata.xml")
+          .toString()
+      );
+    }
+
+    private URI pomURI(
+      final String baseServer,
+      final String version)
+    {
+      final var groupSlashes =
+        this.group.replace('.', '/');
+
+      return URI.create(
+        new StringBuilder(96)
+          .append(baseServer)
+          .append(groupSlashes)
+          .append("/")
+          .append(this.artifact)
+          .append("/")
+          .append(version)
+          .append("/")
+          .append(this.artifact)
+          .append("-")
+          .append(version)
+          .append(".pom")
+          .toString()
+      );
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package org.librarysimplified.ci.check_versions;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+/**
+ * A streaming parser for {@code maven-metadata.xml} files.
+ *
+ * The parser reads only as far as the {@code /metadata/versioning/release}
+ * element and then stops, so the cost of parsing does not grow with the
+ * (often very long) list of versions that follows it in the metadata of
+ * long-lived artifacts. The underlying factories are not guaranteed to be
+ * thread-safe, so each thread configures and reuses its own.
+ */
+
+public final class CheckVersionMetadataParser
+{
+  private static final String[] RELEASE_PATH = {
+    "metadata",
+    "versioning",
+    "release",
+  };
+
+  private static final ThreadLocal<XMLInputFactory> FACTORIES =
+    ThreadLocal.withInitial(CheckVersionMetadataParser::createFactory);
+
+  private CheckVersionMetadataParser()
+  {
+
+  }
+
+  private static XMLInputFactory createFactory()
+  {
+    final var factory = XMLInputFactory.newFactory();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    factory.setProperty(
+      XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    return factory;
+  }
+
+  /**
+   * Parse the release version from the given metadata.
+   *
+   * @param stream The metadata stream
+   *
+   * @return The text of the release element, or the empty string if there is
+   * no such element
+   *
+   * @throws IOException On I/O or parse errors
+   */
+
+  public static String parseRelease(
+    final InputStream stream)
+    throws IOException
+  {
+    Objects.requireNonNull(stream, "stream");
+
+    try {
+      final var reader = FACTORIES.get().createXMLStreamReader(stream);
+      try {
+        return findRelease(reader);
+      } finally {
+        reader.close();
+      }
+    } catch (final XMLStreamException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private static String findRelease(
+    final XMLStreamReader reader)
+    throws XMLStreamException
+  {
+    /*
+     * Track the depth of the current element, and the number of leading
+     * elements of the current path that match the release path.
+     */
+
+    int depth = 0;
+    int matched = 0;
+
+    while (reader.hasNext()) {
+      switch (reader.next()) {
+        case XMLStreamConstants.START_ELEMENT: {
+          if (depth == matched
+            && matched < RELEASE_PATH.length
+            && RELEASE_PATH[matched].equals(reader.getLocalName())) {
+            ++matched;
+            if (matched == RELEASE_PATH.length) {
+              return reader.getElementText();
+            }
+          }
+          ++depth;
+          break;
+        }
+        case XMLStreamConstants.END_ELEMENT: {
+          --depth;
+          if (matched > depth) {
+            matched = depth;
+          }
+          if (depth == 0) {
+            return "";
+          }
+          break;
+        }
+        default: {
+          break;
+        }
+      }
+    }
+    return "";
+  }
+}
@@ -0,0 +1,266 @@
+package org.librarysimplified.ci.check_versions;
+
+import org.librarysimplified.ci.metrics.MetricsRegistry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics recorded by version checks.
+ *
+ * <ul>
+ *   <li>{@code ci_check_versions_requests_total}: HTTP requests (including
+ *   retries) by repository and response status, or {@code error} if no
+ *   response was received</li>
+ *   <li>{@code ci_check_versions_request_duration_seconds}: The time from
+ *   sending a request to receiving the response headers, by repository</li>
+ *   <li>{@code ci_check_versions_lookup_duration_seconds}: The time taken to
+ *   find the latest release of a library, across all repositories</li>
+ *   <li>{@code ci_check_versions_parse_duration_seconds}: The time taken to
+ *   parse metadata files and version catalogs</li>
+ *   <li>{@code ci_check_versions_request_bytes_total}: The size of the
+ *   requests sent, by repository</li>
+ *   <li>{@code ci_check_versions_response_bytes_total} and
+ *   {@code ci_check_versions_response_decoded_bytes_total}: The size of the
+ *   response bodies received, as transferred and after decompression, by
+ *   repository</li>
+ *   <li>{@code ci_check_versions_cache_hits_total} and
+ *   {@code ci_check_versions_cache_misses_total}: Cache hits and misses, by
+ *   cache</li>
+ *   <li>{@code ci_check_versions_rate_limit_wait_seconds_total},
+ *   {@code ci_check_versions_rate_limit_throttled_total}, and
+ *   {@code ci_check_versions_rate_limit_requests_per_second}: The time that
+ *   requests were held back by rate limiting, the number of responses that
+ *   asked the client to slow down, and the final rate, by host</li>
+ *   <li>{@code ci_check_versions_run_duration_seconds} and
+ *   {@code ci_check_versions_run_timestamp_seconds}: The duration of the
+ *   run, and the time at which it finished</li>
+ * </ul>
+ */
+
+public final class CheckVersionMetrics
+{
+  private final MetricsRegistry registry;
+  private final LongAdder requestsSent;
+  private final LongAdder bytesSent;
+  private final LongAdder bytesReceived;
+  private final LongAdder bytesDecoded;
+
+  /**
+   * Create a set of version check metrics.
+   *
+   * @param inRegistry The registry to which metrics are recorded
+   */
+
+  public CheckVersionMetrics(
+    final MetricsRegistry inRegistry)
+  {
+    this.registry =
+      Objects.requireNonNull(inRegistry, "registry");
+    this.requestsSent = new LongAdder();
+    this.bytesSent = new LongAdder();
+    this.bytesReceived = new LongAdder();
+    this.bytesDecoded = new LongAdder();
+  }
+
+  /**
+   * @return The registry to which metrics are recorded
+   */
+
+  public MetricsRegistry registry()
+  {
+    return this.registry;
+  }
+
+  void requestCompleted(
+    final String repository,
+    final String status,
+    final Duration time)
+  {
+    this.registry.counterAdd(
+      "ci_check_versions_requests_total",
+      "HTTP requests sent to repositories, by response status.",
+      Map.of("repository", repository, "status", status),
+      1.0
+    );
+    this.registry.observe(
+      "ci_check_versions_request_duration_seconds",
+      "The time taken to receive the response headers from repositories.",
+      Map.of("repository", repository),
+      secondsOf(time)
+    );
+  }
+
+  void responseBytesReceived(
+    final String repository,
+    final long bytes)
+  {
+    this.registry.counterAdd(
+      "ci_check_versions_response_bytes_total",
+      "The size of the response bodies received from repositories.",
+      Map.of("repository", repository),
+      (double) bytes
+    );
+  }
+
+  void requestSent(
+    final String repository,
+    final long bytes)
+  {
+    this.requestsSent.increment();
+    this.bytesSent.add(bytes);
+    this.registry.counterAdd(
+      "ci_check_versions_request_bytes_total",
+      "The size of the requests sent to repositories.",
+      Map.of("repository", repository),
+      (double) bytes
+    );
+  }
+
+  void responseReceived(
+    final String repository,
+    final long bytes,
+    final long decodedBytes)
+  {
+    this.bytesReceived.add(bytes);
+    this.bytesDecoded.add(decodedBytes);
+    this.responseBytesReceived(repository, bytes);
+    this.registry.counterAdd(
+      "ci_check_versions_response_decoded_bytes_total",
+      "The size of the response bodies received from repositories, after decompression.",
+      Map.of("repository", repository),
+      (double) decodedBytes
+    );
+  }
+
+  /**
+   * @return A summary of the data transferred to and from repositories
+   */
+
+  String transferSummary()
+  {
+    final var received = this.bytesReceived.sum();
+    final var decoded = this.bytesDecoded.sum();
+
+    final var text = new StringBuilder(128);
+    text.append(this.requestsSent.sum());
+    text.append(" requests sent (");
+    text.append(this.bytesSent.sum());
+    text.append(" bytes), ");
+    text.append(received);
+    text.append(" bytes received");
+    if (decoded > received) {
+      text.append(String.format(
+        " (%d bytes decompressed, %d bytes saved by compression)",
+        Long.valueOf(decoded),
+        Long.valueOf(decoded - received)));
+    }
+    return text.toString();
+  }
+
+  void lookupCompleted(
+    final CheckVersionLibrary library,
+    final Duration time)
+  {
+    this.registry.observe(
+      "ci_check_versions_lookup_duration_seconds",
+      "The time taken to find the latest release of each library.",
+      Map.of("library", library.group() + ":" + library.artifact()),
+      secondsOf(time)
+    );
+  }
+
+  void parsed(
+    final String document,
+    final Duration time)
+  {
+    this.registry.observe(
+      "ci_check_versions_parse_duration_seconds",
+      "The time taken to parse metadata files and version catalogs.",
+      Map.of("document", document),
+      secondsOf(time)
+    );
+  }
+
+  void cacheHit(
+    final String cache)
+  {
+    this.registry.counterAdd(
+      "ci_check_versions_cache_hits_total",
+      "Lookups answered by a cache.",
+      Map.of("cache", cache),
+      1.0
+    );
+  }
+
+  void cacheMiss(
+    final String cache)
+  {
+    this.registry.counterAdd(
+      "ci_check_versions_cache_misses_total",
+      "Lookups that a cache could not answer.",
+      Map.of("cache", cache),
+      1.0
+    );
+  }
+
+  void rateLimitWaited(
+    final String host,
+    final Duration time)
+  {
+    this.registry.counterAdd(
+      "ci_check_versions_rate_limit_wait_seconds_total",
+      "The time that requests were held back by rate limiting.",
+      Map.of("host", host),
+      secondsOf(time)
+    );
+  }
+
+  void rateLimitThrottled(
+    final String host)
+  {
+    this.registry.counterAdd(
+      "ci_check_versions_rate_limit_throttled_total",
+      "Responses that asked the client to slow down.",
+      Map.of("host", host),
+      1.0
+    );
+  }
+
+  void rateLimitRate(
+    final String host,
+    final double rate)
+  {
+    this.registry.gaugeSet(
+      "ci_check_versions_rate_limit_requests_per_second",
+      "The rate to which requests were limited at the end of the run (0 if unlimited).",
+      Map.of("host", host),
+      rate
+    );
+  }
+
+  void runCompleted(
+    final Duration time)
+  {
+    this.registry.gaugeSet(
+      "ci_check_versions_run_duration_seconds",
+      "The duration of the most recent run.",
+      Map.of(),
+      secondsOf(time)
+    );
+    this.registry.gaugeSet(
+      "ci_check_versions_run_timestamp_seconds",
+      "The time at which the most recent run finished.",
+      Map.of(),
+      (double) System.currentTimeMillis() / 1000.0
+    );
+  }
+
+  private static double secondsOf(
+    final Duration time)
+  {
+    return (double) time.toNanos() / 1_000_000_000.0;
+  }
+}
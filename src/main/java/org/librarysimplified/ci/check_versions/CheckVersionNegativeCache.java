@@ -0,0 +1,272 @@
+package org.librarysimplified.ci.check_versions;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * A persistent record of the repositories known not to contain artifacts.
+ *
+ * Most artifacts live in exactly one repository, so without this record
+ * each run asks every other repository for every artifact and receives a
+ * 404 for its trouble. A recorded miss allows the repository to be skipped
+ * without a request until the miss is older than the configured
+ * time-to-live, at which point the repository is asked again.
+ *
+ * The record is held in memory during a run, and is written to a single
+ * text file (one tab-separated line per miss, in sorted order) when saved.
+ * The file lives in the metadata cache directory, which may be shared by
+ * several processes at once, so saving re-reads the file and applies only
+ * the misses and hits recorded by this process, while holding the cache's
+ * lock for shared files.
+ */
+
+public final class CheckVersionNegativeCache
+{
+  private static final Logger LOG =
+    Logger.getLogger("CheckVersionNegativeCache");
+
+  private final CheckVersionMetadataCache cache;
+  private final Path file;
+  private final Duration timeToLive;
+  private final Clock clock;
+  private final ConcurrentHashMap<List<String>, Instant> misses;
+  private final ConcurrentHashMap<List<String>, Change> changes;
+
+  /**
+   * Open a negative cache, loading any misses previously saved to the given
+   * file.
+   *
+   * @param inCache      The metadata cache whose directory holds the file
+   * @param inFile       The file
+   * @param inTimeToLive The time after which a miss is no longer trusted
+   * @param inClock      The clock used to timestamp misses
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public CheckVersionNegativeCache(
+    final CheckVersionMetadataCache inCache,
+    final Path inFile,
+    final Duration inTimeToLive,
+    final Clock inClock)
+    throws IOException
+  {
+    this.cache =
+      Objects.requireNonNull(inCache, "cache");
+    this.file =
+      Objects.requireNonNull(inFile, "file").toAbsolutePath();
+    this.timeToLive =
+      Objects.requireNonNull(inTimeToLive, "timeToLive");
+    this.clock =
+      Objects.requireNonNull(inClock, "clock");
+    this.misses =
+      new ConcurrentHashMap<>();
+    this.changes =
+      new ConcurrentHashMap<>();
+
+    this.misses.putAll(this.load());
+  }
+
+  private Map<List<String>, Instant> load()
+    throws IOException
+  {
+    final var loaded = new HashMap<List<String>, Instant>();
+
+    final List<String> lines;
+    try {
+      lines = Files.readAllLines(this.file, StandardCharsets.UTF_8);
+    } catch (final NoSuchFileException e) {
+      return loaded;
+    }
+
+    for (final var line : lines) {
+      final var segments = line.split("\t");
+      if (segments.length != 4) {
+        LOG.warning(String.format("Ignoring malformed line in %s: %s", this.file, line));
+        continue;
+      }
+
+      try {
+        final var recorded = Instant.parse(segments[3]);
+        if (!this.isExpired(recorded)) {
+          loaded.put(
+            List.of(segments[0], segments[1], segments[2]), recorded);
+        }
+      } catch (final RuntimeException e) {
+        LOG.warning(String.format("Ignoring malformed line in %s: %s", this.file, line));
+      }
+    }
+    return loaded;
+  }
+
+  private boolean isExpired(
+    final Instant recorded)
+  {
+    return recorded.plus(this.timeToLive).isBefore(this.clock.instant());
+  }
+
+  /**
+   * @param repository The repository
+   * @param group      The artifact group
+   * @param artifact   The artifact name
+   *
+   * @return {@code true} if the repository is known not to contain the
+   * artifact
+   */
+
+  public boolean isKnownMiss(
+    final String repository,
+    final String group,
+    final String artifact)
+  {
+    final var recorded = this.misses.get(List.of(repository, group, artifact));
+    return recorded != null && !this.isExpired(recorded);
+  }
+
+  /**
+   * Record that the repository does not contain the artifact.
+   *
+   * @param repository The repository
+   * @param group      The artifact group
+   * @param artifact   The artifact name
+   */
+
+  public void recordMiss(
+    final String repository,
+    final String group,
+    final String artifact)
+  {
+    final var key = List.of(repository, group, artifact);
+    final var now = this.clock.instant();
+    this.misses.put(key, now);
+    this.changes.put(key, new Change(now, true));
+  }
+
+  /**
+   * Record that the repository contains the artifact.
+   *
+   * @param repository The repository
+   * @param group      The artifact group
+   * @param artifact   The artifact name
+   */
+
+  public void recordHit(
+    final String repository,
+    final String group,
+    final String artifact)
+  {
+    final var key = List.of(repository, group, artifact);
+    if (this.misses.remove(key) != null) {
+      this.changes.put(key, new Change(this.clock.instant(), false));
+    }
+  }
+
+  /**
+   * Save the misses and hits recorded since the cache was opened or last
+   * saved, if there are any. The file is re-read while holding the
+   * metadata cache's lock for shared files, so that misses and hits
+   * recorded by other processes since it was loaded are kept, and is then
+   * replaced atomically. A hit removes a miss only if the miss was
+   * recorded no later than the hit.
+   *
+   * @throws IOException          On I/O errors
+   * @throws InterruptedException If the calling thread is interrupted
+   */
+
+  public void save()
+    throws IOException, InterruptedException
+  {
+    if (this.changes.isEmpty()) {
+      return;
+    }
+
+    final var saved = new HashMap<>(this.changes);
+    this.cache.updateShared(() -> this.write(saved));
+    for (final var change : saved.entrySet()) {
+      this.changes.remove(change.getKey(), change.getValue());
+    }
+  }
+
+  private void write(
+    final Map<List<String>, Change> saved)
+    throws IOException
+  {
+    final var merged = this.load();
+    for (final var change : saved.entrySet()) {
+      final var key = change.getKey();
+      final var value = change.getValue();
+      final var existing = merged.get(key);
+      if (value.miss) {
+        if (existing == null || existing.isBefore(value.time)) {
+          merged.put(key, value.time);
+        }
+      } else if (existing != null && !existing.isAfter(value.time)) {
+        merged.remove(key);
+      }
+    }
+
+    final var lines = new ArrayList<String>(merged.size());
+    for (final var entry : merged.entrySet()) {
+      if (!this.isExpired(entry.getValue())) {
+        final var key = entry.getKey();
+        lines.add(
+          String.join("\t", key.get(0), key.get(1), key.get(2), entry.getValue().toString()));
+      }
+    }
+    Collections.sort(lines);
+
+    final var text = new StringBuilder(lines.size() * 96);
+    for (final var line : lines) {
+      text.append(line);
+      text.append('\n');
+    }
+
+    final var directory = this.file.getParent();
+    Files.createDirectories(directory);
+
+    final var temporary =
+      Files.createTempFile(directory, this.file.getFileName().toString(), ".tmp");
+    try {
+      Files.writeString(temporary, text, StandardCharsets.UTF_8);
+      Files.move(temporary, this.file, ATOMIC_MOVE, REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * A miss or hit recorded by this process, and when it was recorded.
+   */
+
+  private static final class Change
+  {
+    private final Instant time;
+    private final boolean miss;
+
+    Change(
+      final Instant inTime,
+      final boolean inMiss)
+    {
+      this.time =
+        Objects.requireNonNull(inTime, "time");
+      this.miss = inMiss;
+    }
+  }
+}
@@ -0,0 +1,447 @@
+package org.librarysimplified.ci.check_versions;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The parts of a POM file that determine a library's dependencies: its
+ * coordinates, its parent, its properties, its managed dependencies, and
+ * its dependencies. Values are kept exactly as written; properties are
+ * interpolated when the effective model is built (see
+ * {@link CheckVersionTransitiveChecker}).
+ */
+
+final class CheckVersionPom
+{
+  private static final ThreadLocal<XMLInputFactory> FACTORIES =
+    ThreadLocal.withInitial(CheckVersionPom::createFactory);
+
+  private final String groupId;
+  private final String artifactId;
+  private final String version;
+  private final Optional<Dependency> parent;
+  private final Map<String, String> properties;
+  private final List<Dependency> managed;
+  private final List<Dependency> dependencies;
+
+  private CheckVersionPom(
+    final String inGroupId,
+    final String inArtifactId,
+    final String inVersion,
+    final Optional<Dependency> inParent,
+    final Map<String, String> inProperties,
+    final List<Dependency> inManaged,
+    final List<Dependency> inDependencies)
+  {
+    this.groupId =
+      Objects.requireNonNull(inGroupId, "groupId");
+    this.artifactId =
+      Objects.requireNonNull(inArtifactId, "artifactId");
+    this.version =
+      Objects.requireNonNull(inVersion, "version");
+    this.parent =
+      Objects.requireNonNull(inParent, "parent");
+    this.properties =
+      Map.copyOf(Objects.requireNonNull(inProperties, "properties"));
+    this.managed =
+      List.copyOf(Objects.requireNonNull(inManaged, "managed"));
+    this.dependencies =
+      List.copyOf(Objects.requireNonNull(inDependencies, "dependencies"));
+  }
+
+  private static XMLInputFactory createFactory()
+  {
+    final var factory = XMLInputFactory.newFactory();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    factory.setProperty(
+      XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    return factory;
+  }
+
+  /**
+   * @return The group, which may be inherited from the parent (and so be
+   * empty)
+   */
+
+  String groupId()
+  {
+    return this.groupId;
+  }
+
+  /**
+   * @return The artifact
+   */
+
+  String artifactId()
+  {
+    return this.artifactId;
+  }
+
+  /**
+   * @return The version, which may be inherited from the parent (and so be
+   * empty)
+   */
+
+  String version()
+  {
+    return this.version;
+  }
+
+  /**
+   * @return The parent POM, if any
+   */
+
+  Optional<Dependency> parent()
+  {
+    return this.parent;
+  }
+
+  /**
+   * @return The properties declared by the POM
+   */
+
+  Map<String, String> properties()
+  {
+    return this.properties;
+  }
+
+  /**
+   * @return The entries of the POM's {@code dependencyManagement} section
+   */
+
+  List<Dependency> managed()
+  {
+    return this.managed;
+  }
+
+  /**
+   * @return The dependencies declared by the POM
+   */
+
+  List<Dependency> dependencies()
+  {
+    return this.dependencies;
+  }
+
+  /**
+   * Parse a POM.
+   *
+   * @param stream The POM stream
+   *
+   * @return The POM
+   *
+   * @throws IOException On I/O or parse errors
+   */
+
+  static CheckVersionPom parse(
+    final InputStream stream)
+    throws IOException
+  {
+    Objects.requireNonNull(stream, "stream");
+
+    try {
+      final var reader = FACTORIES.get().createXMLStreamReader(stream);
+      try {
+        return parseProject(reader);
+      } finally {
+        reader.close();
+      }
+    } catch (final XMLStreamException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private static CheckVersionPom parseProject(
+    final XMLStreamReader reader)
+    throws XMLStreamException, IOException
+  {
+    reader.nextTag();
+    if (!"project".equals(reader.getLocalName())) {
+      throw new IOException(
+        "Expected a project element, but found " + reader.getLocalName());
+    }
+
+    var groupId = "";
+    var artifactId = "";
+    var version = "";
+    Optional<Dependency> parent = Optional.empty();
+    final var properties = new HashMap<String, String>();
+    final var managed = new ArrayList<Dependency>();
+    final var dependencies = new ArrayList<Dependency>();
+
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      switch (reader.getLocalName()) {
+        case "groupId": {
+          groupId = reader.getElementText().trim();
+          break;
+        }
+        case "artifactId": {
+          artifactId = reader.getElementText().trim();
+          break;
+        }
+        case "version": {
+          version = reader.getElementText().trim();
+          break;
+        }
+        case "parent": {
+          parent = Optional.of(parseDependency(reader));
+          break;
+        }
+        case "properties": {
+          while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            properties.put(reader.getLocalName(), reader.getElementText().trim());
+          }
+          break;
+        }
+        case "dependencyManagement": {
+          while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if ("dependencies".equals(reader.getLocalName())) {
+              parseDependencies(reader, managed);
+            } else {
+              skipElement(reader);
+            }
+          }
+          break;
+        }
+        case "dependencies": {
+          parseDependencies(reader, dependencies);
+          break;
+        }
+        default: {
+          skipElement(reader);
+          break;
+        }
+      }
+    }
+
+    return new CheckVersionPom(
+      groupId,
+      artifactId,
+      version,
+      parent,
+      properties,
+      managed,
+      dependencies
+    );
+  }
+
+  private static void parseDependencies(
+    final XMLStreamReader reader,
+    final List<Dependency> into)
+    throws XMLStreamException
+  {
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if ("dependency".equals(reader.getLocalName())) {
+        into.add(parseDependency(reader));
+      } else {
+        skipElement(reader);
+      }
+    }
+  }
+
+  private static Dependency parseDependency(
+    final XMLStreamReader reader)
+    throws XMLStreamException
+  {
+    var groupId = "";
+    var artifactId = "";
+    var version = "";
+    var scope = "";
+    var type = "";
+    var optional = "";
+    final var exclusions = new ArrayList<String>();
+
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      switch (reader.getLocalName()) {
+        case "groupId": {
+          groupId = reader.getElementText().trim();
+          break;
+        }
+        case "artifactId": {
+          artifactId = reader.getElementText().trim();
+          break;
+        }
+        case "version": {
+          version = reader.getElementText().trim();
+          break;
+        }
+        case "scope": {
+          scope = reader.getElementText().trim();
+          break;
+        }
+        case "type": {
+          type = reader.getElementText().trim();
+          break;
+        }
+        case "optional": {
+          optional = reader.getElementText().trim();
+          break;
+        }
+        case "exclusions": {
+          while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if ("exclusion".equals(reader.getLocalName())) {
+              exclusions.add(parseExclusion(reader));
+            } else {
+              skipElement(reader);
+            }
+          }
+          break;
+        }
+        default: {
+          skipElement(reader);
+          break;
+        }
+      }
+    }
+
+    return new Dependency(
+      groupId,
+      artifactId,
+      version,
+      scope,
+      type,
+      optional,
+      Set.copyOf(exclusions)
+    );
+  }
+
+  private static String parseExclusion(
+    final XMLStreamReader reader)
+    throws XMLStreamException
+  {
+    var groupId = "*";
+    var artifactId = "*";
+    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      switch (reader.getLocalName()) {
+        case "groupId": {
+          groupId = reader.getElementText().trim();
+          break;
+        }
+        case "artifactId": {
+          artifactId = reader.getElementText().trim();
+          break;
+        }
+        default: {
+          skipElement(reader);
+          break;
+        }
+      }
+    }
+    return groupId + ":" + artifactId;
+  }
+
+  private static void skipElement(
+    final XMLStreamReader reader)
+    throws XMLStreamException
+  {
+    int depth = 1;
+    while (depth > 0) {
+      switch (reader.next()) {
+        case XMLStreamConstants.START_ELEMENT: {
+          ++depth;
+          break;
+        }
+        case XMLStreamConstants.END_ELEMENT: {
+          --depth;
+          break;
+        }
+        default: {
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * A dependency (or parent) declaration, exactly as written.
+   */
+
+  static final class Dependency
+  {
+    private final String groupId;
+    private final String artifactId;
+    private final String version;
+    private final String scope;
+    private final String type;
+    private final String optional;
+    private final Set<String> exclusions;
+
+    Dependency(
+      final String inGroupId,
+      final String inArtifactId,
+      final String inVersion,
+      final String inScope,
+      final String inType,
+      final String inOptional,
+      final Set<String> inExclusions)
+    {
+      this.groupId =
+        Objects.requireNonNull(inGroupId, "groupId");
+      this.artifactId =
+        Objects.requireNonNull(inArtifactId, "artifactId");
+      this.version =
+        Objects.requireNonNull(inVersion, "version");
+      this.scope =
+        Objects.requireNonNull(inScope, "scope");
+      this.type =
+        Objects.requireNonNull(inType, "type");
+      this.optional =
+        Objects.requireNonNull(inOptional, "optional");
+      this.exclusions =
+        Objects.requireNonNull(inExclusions, "exclusions");
+    }
+
+    String groupId()
+    {
+      return this.groupId;
+    }
+
+    String artifactId()
+    {
+      return this.artifactId;
+    }
+
+    String version()
+    {
+      return this.version;
+    }
+
+    String scope()
+    {
+      return this.scope;
+    }
+
+    String type()
+    {
+      return this.type;
+    }
+
+    String optional()
+    {
+      return this.optional;
+    }
+
+    /**
+     * @return The excluded artifacts, as {@code group:artifact}, either of
+     * which may be {@code *}
+     */
+
+    Set<String> exclusions()
+    {
+      return this.exclusions;
+    }
+  }
+}
@@ -0,0 +1,189 @@
+package org.librarysimplified.ci.check_versions;
+
+import com.beust.jcommander.JCommander;
+import com.io7m.jproperties.JPropertyException;
+import org.librarysimplified.ci.ExitException;
+import org.librarysimplified.ci.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * The {@code prefetch} command: look up the latest release of every library
+ * in a set of version catalogs, and write the results to a snapshot that
+ * {@code check-versions --snapshot} can read without any network access.
+ */
+
+public final class CheckVersionPrefetch
+{
+  private static final Logger LOG = Logger.getLogger("CheckVersionPrefetch");
+
+  private CheckVersionPrefetch()
+  {
+
+  }
+
+  public static void main(
+    final String[] args)
+    throws IOException, ExitException, JPropertyException, InterruptedException
+  {
+    run(
+      CheckVersionsContext.create(),
+      Paths.get("").toAbsolutePath(),
+      args,
+      System.out
+    );
+  }
+
+  /**
+   * Run a prefetch.
+   *
+   * @param context          The context shared with other checks run by the
+   *                         same process
+   * @param workingDirectory The directory against which relative paths are
+   *                         resolved
+   * @param args             The command-line arguments
+   * @param out              The stream to which a summary is written
+   *
+   * @throws IOException          On I/O errors
+   * @throws ExitException        If any lookup fails
+   * @throws JPropertyException   On configuration errors
+   * @throws InterruptedException If the calling thread is interrupted
+   */
+
+  public static void run(
+    final CheckVersionsContext context,
+    final Path workingDirectory,
+    final String[] args,
+    final PrintStream out)
+    throws IOException, ExitException, JPropertyException, InterruptedException
+  {
+    final var parameters = new CheckVersionPrefetchParameters();
+
+    try {
+      JCommander.newBuilder()
+        .addObject(parameters)
+        .build()
+        .parse(args);
+    } catch (final Exception e) {
+      LOG.severe("Error parsing arguments: " + e.getMessage());
+      throw new ExitException(1);
+    }
+
+    if (parameters.threads < 1) {
+      LOG.severe("The thread count must be positive (got " + parameters.threads + ")");
+      throw new ExitException(1);
+    }
+    if (parameters.maxStreamsPerHost < 1) {
+      LOG.severe("The stream limit must be positive (got " + parameters.maxStreamsPerHost + ")");
+      throw new ExitException(1);
+    }
+    if (parameters.requestsPerSecond < 0.0 || parameters.requestBurst < 1) {
+      LOG.severe("The request rate must be non-negative, and the request burst must be positive");
+      throw new ExitException(1);
+    }
+    if (parameters.retryAttempts < 1) {
+      LOG.severe("The retry attempt count must be positive (got " + parameters.retryAttempts + ")");
+      throw new ExitException(1);
+    }
+    if (parameters.connectTimeoutSeconds < 1 || parameters.requestTimeoutSeconds < 1) {
+      LOG.severe("Timeouts must be positive");
+      throw new ExitException(1);
+    }
+
+    final var check = parameters.toCheckParameters();
+    if (check.cacheDirectory != null) {
+      check.cacheDirectory = workingDirectory.resolve(check.cacheDirectory);
+    }
+    final var outputFile =
+      workingDirectory.resolve(parameters.outputFile);
+
+    final var metrics =
+      new CheckVersionMetrics(MetricsRegistry.create());
+    final var configurations =
+      CheckVersions.configurationFilesOf(check, workingDirectory);
+    final var projects =
+      CheckVersions.loadProjects(context, check, metrics, configurations);
+
+    /*
+     * Every library is fetched, including those that the library lists
+     * would ignore, so that the snapshot can serve any job that uses the
+     * same catalogs. An artifact declared by several projects is fetched
+     * once, from the repositories of the first project that declares it.
+     */
+
+    final var libraries = new LinkedHashMap<String, CheckVersionLibrary>();
+    for (final var project : projects) {
+      for (final var library : project.libraries()) {
+        libraries.putIfAbsent(
+          library.group() + ":" + library.artifact(),
+          new CheckVersionLibrary(
+            library.group(),
+            library.artifact(),
+            library.version(),
+            library.repositories(),
+            false
+          ));
+      }
+    }
+
+    final var fetched = new ConcurrentHashMap<String, Instant>();
+    final var clock = Clock.systemUTC();
+    final var all =
+      new CheckVersionProject("", List.copyOf(libraries.values()), l -> true);
+
+    final List<CheckVersionResults> results;
+    try (var engine = new CheckVersionEngine(check, context, metrics)) {
+      results = engine.checkProjects(List.of(all), (project, status) -> {
+        final var library = status.library();
+        fetched.put(library.group() + ":" + library.artifact(), Instant.now(clock));
+      });
+    }
+
+    final var entries = new TreeMap<String, CheckVersionSnapshot.Entry>();
+    var failed = false;
+    for (final var status : results.get(0).statuses()) {
+      final var library = status.library();
+      final var key = library.group() + ":" + library.artifact();
+      final var release =
+        status.lookup().flatMap(CheckVersionLookup::release);
+
+      if (release.isPresent()) {
+        entries.put(
+          key,
+          new CheckVersionSnapshot.Entry(
+            release.get().toString(),
+            fetched.get(key)));
+        continue;
+      }
+
+      if (status instanceof CheckVersionLibraryStatusUnavailable) {
+        LOG.warning(key + ": " + status.message());
+      } else {
+        LOG.severe(key + ": " + status.message());
+        failed = true;
+      }
+    }
+
+    LOG.info("Transferred: " + metrics.transferSummary());
+    CheckVersionSnapshot.write(outputFile, entries);
+    out.printf(
+      "Wrote %d of %d libraries to %s.%n",
+      Integer.valueOf(entries.size()),
+      Integer.valueOf(libraries.size()),
+      outputFile);
+
+    if (failed) {
+      throw new ExitException(1);
+    }
+  }
+}
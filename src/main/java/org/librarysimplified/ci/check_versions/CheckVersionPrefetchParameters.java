@@ -0,0 +1,112 @@
+package org.librarysimplified.ci.check_versions;
+
+import com.beust.jcommander.Parameter;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The structure used to hold command-line parameters.
+ */
+
+public final class CheckVersionPrefetchParameters
+{
+  @Parameter(
+    required = false,
+    names = "--configuration",
+    description = "A configuration file (may be specified multiple times)")
+  List<Path> configurationFiles = new ArrayList<>();
+
+  @Parameter(
+    required = false,
+    names = "--manifest",
+    description = "A file listing configuration files, one per line, to be prefetched in addition to any given with --configuration")
+  Path manifestFile;
+
+  @Parameter(
+    required = true,
+    names = "--output",
+    description = "The snapshot file to write")
+  Path outputFile;
+
+  @Parameter(
+    required = false,
+    names = "--threads",
+    description = "The maximum number of libraries to fetch concurrently")
+  int threads = 32;
+
+  @Parameter(
+    required = false,
+    names = "--raceRepositories",
+    description = "Query all repositories at once (earlier repositories in the list still take precedence)")
+  boolean raceRepositories;
+
+  @Parameter(
+    required = false,
+    names = "--maxStreamsPerHost",
+    description = "The maximum number of requests in flight to each repository host")
+  int maxStreamsPerHost = 16;
+
+  @Parameter(
+    required = false,
+    names = "--requestsPerSecond",
+    description = "The maximum rate of requests to each repository host (0 disables rate limiting); the rate is lowered automatically when a host asks for requests to slow down")
+  double requestsPerSecond = 50.0;
+
+  @Parameter(
+    required = false,
+    names = "--requestBurst",
+    description = "The number of requests that may be sent to a host at once before the rate limit applies")
+  int requestBurst = 16;
+
+  @Parameter(
+    required = false,
+    names = "--cacheDirectory",
+    description = "The directory used to cache repository metadata and misses between runs (caching is disabled if not specified)")
+  Path cacheDirectory;
+
+  @Parameter(
+    required = false,
+    names = "--connectTimeoutSeconds",
+    description = "The maximum time to wait for a connection to a repository to be established")
+  long connectTimeoutSeconds = 10L;
+
+  @Parameter(
+    required = false,
+    names = "--requestTimeoutSeconds",
+    description = "The maximum time to wait for a response from a repository")
+  long requestTimeoutSeconds = 30L;
+
+  @Parameter(
+    required = false,
+    names = "--retryAttempts",
+    description = "The maximum number of attempts made for each repository request (including the first)")
+  int retryAttempts = 3;
+
+  public CheckVersionPrefetchParameters()
+  {
+
+  }
+
+  /**
+   * @return The parameters of an equivalent version check
+   */
+
+  CheckVersionsParameters toCheckParameters()
+  {
+    final var check = new CheckVersionsParameters();
+    check.configurationFiles = List.copyOf(this.configurationFiles);
+    check.manifestFile = this.manifestFile;
+    check.threads = this.threads;
+    check.raceRepositories = this.raceRepositories;
+    check.cacheDirectory = this.cacheDirectory;
+    check.connectTimeoutSeconds = this.connectTimeoutSeconds;
+    check.requestTimeoutSeconds = this.requestTimeoutSeconds;
+    check.retryAttempts = this.retryAttempts;
+    check.requestsPerSecond = this.requestsPerSecond;
+    check.requestBurst = this.requestBurst;
+    check.maxStreamsPerHost = this.maxStreamsPerHost;
+    return check;
+  }
+}
@@ -0,0 +1,69 @@
+package org.librarysimplified.ci.check_versions;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * A project whose libraries are to be checked.
+ */
+
+public final class CheckVersionProject
+{
+  private final String name;
+  private final List<CheckVersionLibrary> libraries;
+  private final Predicate<CheckVersionLibrary> shouldCheck;
+
+  /**
+   * Create a project.
+   *
+   * @param inName        The project name
+   * @param inLibraries   The libraries declared by the project
+   * @param inShouldCheck A predicate that selects the libraries to check;
+   *                      libraries that are not ignored, but that do not
+   *                      match the predicate, are reported as skipped
+   */
+
+  public CheckVersionProject(
+    final String inName,
+    final List<CheckVersionLibrary> inLibraries,
+    final Predicate<CheckVersionLibrary> inShouldCheck)
+  {
+    this.name =
+      Objects.requireNonNull(inName, "name");
+    this.libraries =
+      List.copyOf(Objects.requireNonNull(inLibraries, "libraries"));
+    this.shouldCheck =
+      Objects.requireNonNull(inShouldCheck, "shouldCheck");
+  }
+
+  /**
+   * @return The project name
+   */
+
+  public String name()
+  {
+    return this.name;
+  }
+
+  /**
+   * @return The libraries declared by the project
+   */
+
+  public List<CheckVersionLibrary> libraries()
+  {
+    return this.libraries;
+  }
+
+  /**
+   * @param library A library
+   *
+   * @return {@code true} if the given library should be checked
+   */
+
+  public boolean shouldCheck(
+    final CheckVersionLibrary library)
+  {
+    return this.shouldCheck.test(library);
+  }
+}
@@ -0,0 +1,196 @@
+package org.librarysimplified.ci.check_versions;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * A token-bucket rate limiter for the requests sent to a single host.
+ *
+ * The bucket is implemented as a "generic cell rate" limiter: rather than
+ * counting tokens, it tracks the time at which the bucket would next be
+ * empty, so a request can reserve a token that will only become available
+ * in the future and be scheduled to go out at that time, without any thread
+ * waiting for it.
+ *
+ * The rate adapts to the host. A response that tells the client to slow
+ * down ({@code 429} or {@code 503}) halves the rate, and any delay the host
+ * asks for with {@code Retry-After} holds back all further requests to the
+ * host until it has passed. The rate is halved at most once a second: the
+ * requests of a burst tend to be throttled together, and their responses
+ * say no more about the host than the first of them did. Each other
+ * response raises the rate again by a small step, up to the configured
+ * rate.
+ */
+
+final class CheckVersionRateLimiter
+{
+  private static final double MINIMUM_FRACTION = 1.0 / 64.0;
+  private static final double RECOVERY_FRACTION = 1.0 / 32.0;
+  private static final long DECREASE_INTERVAL_NANOS = 1_000_000_000L;
+
+  private final String host;
+  private final double maximumRate;
+  private final int burst;
+  private double rate;
+  private long nextEmpty;
+  private long lastDecrease;
+  private long requests;
+  private long delayed;
+  private long throttled;
+  private long waited;
+
+  /**
+   * Create a rate limiter.
+   *
+   * @param inHost        The host
+   * @param inMaximumRate The maximum number of requests per second, or
+   *                      {@code 0} if requests are not limited
+   * @param inBurst       The number of requests that may be sent at once
+   *                      before the rate applies
+   */
+
+  CheckVersionRateLimiter(
+    final String inHost,
+    final double inMaximumRate,
+    final int inBurst)
+  {
+    this.host =
+      Objects.requireNonNull(inHost, "host");
+    this.maximumRate = inMaximumRate;
+    this.burst = Math.max(inBurst, 1);
+    this.rate = inMaximumRate;
+    this.nextEmpty = System.nanoTime();
+    this.lastDecrease = this.nextEmpty - DECREASE_INTERVAL_NANOS;
+  }
+
+  private boolean isUnlimited()
+  {
+    return this.maximumRate <= 0.0;
+  }
+
+  private long intervalNanos()
+  {
+    return (long) (1_000_000_000.0 / this.rate);
+  }
+
+  /**
+   * Reserve a token for a request.
+   *
+   * @return The time to wait before sending the request
+   */
+
+  synchronized Duration reserve()
+  {
+    ++this.requests;
+    if (this.isUnlimited()) {
+      return Duration.ZERO;
+    }
+
+    final var now = System.nanoTime();
+    final var interval = this.intervalNanos();
+    final var tolerance = (this.burst - 1) * interval;
+
+    final var arrival = Math.max(this.nextEmpty, now);
+    final var wait = Math.max(0L, arrival - tolerance - now);
+    this.nextEmpty = arrival + interval;
+
+    if (wait > 0L) {
+      ++this.delayed;
+      this.waited += wait;
+    }
+    return Duration.ofNanos(wait);
+  }
+
+  /**
+   * Record that the host accepted a request.
+   */
+
+  synchronized void accepted()
+  {
+    if (this.isUnlimited()) {
+      return;
+    }
+    this.rate =
+      Math.min(
+        this.maximumRate,
+        this.rate + this.maximumRate * RECOVERY_FRACTION);
+  }
+
+  /**
+   * Record that the host asked the client to slow down.
+   *
+   * @param retryAfter The delay that the host asked for, or zero
+   */
+
+  synchronized void throttled(
+    final Duration retryAfter)
+  {
+    Objects.requireNonNull(retryAfter, "retryAfter");
+
+    ++this.throttled;
+    if (this.isUnlimited()) {
+      return;
+    }
+
+    final var now = System.nanoTime();
+    if (now - this.lastDecrease >= DECREASE_INTERVAL_NANOS) {
+      this.lastDecrease = now;
+      this.rate =
+        Math.max(this.maximumRate * MINIMUM_FRACTION, this.rate / 2.0);
+    }
+
+    final var interval = this.intervalNanos();
+    final var tolerance = (this.burst - 1) * interval;
+    final var resume = now + retryAfter.toNanos();
+    this.nextEmpty = Math.max(this.nextEmpty, resume + tolerance);
+  }
+
+  /**
+   * @return The current rate, in requests per second, or {@code 0} if
+   * requests are not limited
+   */
+
+  synchronized double rate()
+  {
+    return this.isUnlimited() ? 0.0 : this.rate;
+  }
+
+  /**
+   * @return {@code true} if the host has asked the client to slow down
+   */
+
+  synchronized boolean wasThrottled()
+  {
+    return this.throttled > 0L;
+  }
+
+  /**
+   * @return A description of the state of the limiter
+   */
+
+  synchronized String describe()
+  {
+    final var text = new StringBuilder(128);
+    text.append(this.host);
+    text.append(": ");
+    text.append(this.requests);
+    text.append(" requests");
+
+    if (this.isUnlimited()) {
+      text.append(" (not limited)");
+    } else {
+      text.append(String.format(
+        ", %d delayed for %d ms in total, rate %.1f of %.1f requests/s",
+        Long.valueOf(this.delayed),
+        Long.valueOf(Duration.ofNanos(this.waited).toMillis()),
+        Double.valueOf(this.rate),
+        Double.valueOf(this.maximumRate)));
+    }
+    if (this.throttled > 0L) {
+      text.append(String.format(
+        ", throttled %d times by the host",
+        Long.valueOf(this.throttled)));
+    }
+    return text.toString();
+  }
+}
@@ -0,0 +1,210 @@
+package org.librarysimplified.ci.check_versions;
+
+import org.librarysimplified.ci.ExitException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Rules that determine which repositories are checked for a given group,
+ * and in which order.
+ *
+ * The rules are read from the library repository file. Each non-blank line
+ * that does not start with {@code #} is either a repository URI or a
+ * section header of the form {@code [prefix]}. Repositories that appear
+ * before the first section header form the default list. Repositories that
+ * appear after a section header are used (in the order given) for groups
+ * that start with the section's prefix. When several prefixes match a
+ * group, the longest one wins. Prefixes are held in a trie so that the
+ * matching prefix is found in a single pass over the group name.
+ *
+ * Repositories on the local file system may be given as absolute
+ * {@code file:} URIs.
+ *
+ * For example, the following file routes {@code androidx.*} artifacts to
+ * Google's repository, and all other artifacts to Maven Central:
+ *
+ * <pre>
+ * https://repo1.maven.org/maven2/
+ *
+ * [androidx.]
+ * https://dl.google.com/dl/android/maven2/
+ * </pre>
+ */
+
+public final class CheckVersionRepositoryRoutes
+{
+  private static final Logger LOG =
+    Logger.getLogger("CheckVersionRepositoryRoutes");
+
+  private final Set<String> defaults;
+  private final Node root;
+  private final Set<String> repositories;
+
+  private CheckVersionRepositoryRoutes(
+    final Set<String> inDefaults,
+    final Node inRoot,
+    final Set<String> inRepositories)
+  {
+    this.defaults =
+      Objects.requireNonNull(inDefaults, "defaults");
+    this.root =
+      Objects.requireNonNull(inRoot, "root");
+    this.repositories =
+      Objects.requireNonNull(inRepositories, "repositories");
+  }
+
+  /**
+   * @param repositories The repositories, in order of precedence
+   *
+   * @return Rules that use the given repositories for every group
+   */
+
+  public static CheckVersionRepositoryRoutes of(
+    final Set<String> repositories)
+  {
+    final var all =
+      Collections.unmodifiableSet(new LinkedHashSet<>(repositories));
+    return new CheckVersionRepositoryRoutes(all, new Node(), all);
+  }
+
+  /**
+   * Parse routing rules from the lines of a library repository file.
+   *
+   * @param lines The lines
+   *
+   * @return The rules
+   *
+   * @throws ExitException If the rules are malformed or empty
+   */
+
+  public static CheckVersionRepositoryRoutes parse(
+    final List<String> lines)
+    throws ExitException
+  {
+    Objects.requireNonNull(lines, "lines");
+
+    final var defaults = new LinkedHashSet<String>();
+    final var sections = new HashMap<String, LinkedHashSet<String>>();
+    var current = defaults;
+
+    for (final var rawLine : lines) {
+      if (rawLine.startsWith("#") || rawLine.isBlank()) {
+        continue;
+      }
+
+      final var line = rawLine.trim();
+      if (line.startsWith("[")) {
+        if (!line.endsWith("]") || line.length() < 3) {
+          LOG.severe("Malformed repository section header: " + line);
+          throw new ExitException(1);
+        }
+        final var prefix = line.substring(1, line.length() - 1).trim();
+        current = sections.computeIfAbsent(prefix, p -> new LinkedHashSet<>());
+        continue;
+      }
+
+      if (CheckVersionLocalRepository.isLocal(line)) {
+        try {
+          CheckVersionLocalRepository.directoryOf(line);
+        } catch (final IllegalArgumentException e) {
+          LOG.severe(
+            "Local repositories must be given as absolute file: URIs: " + line);
+          throw new ExitException(1);
+        }
+      }
+      current.add(line);
+    }
+
+    if (defaults.isEmpty() && sections.values().stream().allMatch(Set::isEmpty)) {
+      LOG.severe("No repositories were provided. This seems like a mistake.");
+      throw new ExitException(1);
+    }
+
+    final var all = new LinkedHashSet<>(defaults);
+    final var root = new Node();
+    for (final var entry : sections.entrySet()) {
+      all.addAll(entry.getValue());
+      if (entry.getValue().isEmpty()) {
+        LOG.severe("No repositories were provided for the prefix " + entry.getKey());
+        throw new ExitException(1);
+      }
+      root.insert(
+        entry.getKey(),
+        Collections.unmodifiableSet(entry.getValue()));
+    }
+
+    return new CheckVersionRepositoryRoutes(
+      Collections.unmodifiableSet(defaults),
+      root,
+      Collections.unmodifiableSet(all));
+  }
+
+  /**
+   * @return Every repository named by the rules
+   */
+
+  public Set<String> repositories()
+  {
+    return this.repositories;
+  }
+
+  /**
+   * @param group The artifact group
+   *
+   * @return The repositories that should be checked for artifacts in the
+   * given group, in order of precedence
+   */
+
+  public Set<String> repositoriesFor(
+    final String group)
+  {
+    Objects.requireNonNull(group, "group");
+
+    var node = this.root;
+    var best = node.repositories;
+
+    for (int index = 0; index < group.length(); ++index) {
+      node = node.children.get(Character.valueOf(group.charAt(index)));
+      if (node == null) {
+        break;
+      }
+      if (node.repositories.isPresent()) {
+        best = node.repositories;
+      }
+    }
+
+    return best.orElse(this.defaults);
+  }
+
+  private static final class Node
+  {
+    private final Map<Character, Node> children;
+    private Optional<Set<String>> repositories;
+
+    Node()
+    {
+      this.children = new HashMap<>();
+      this.repositories = Optional.empty();
+    }
+
+    void insert(
+      final String prefix,
+      final Set<String> inRepositories)
+    {
+      var node = this;
+      for (int index = 0; index < prefix.length(); ++index) {
+        node = node.children.computeIfAbsent(
+          Character.valueOf(prefix.charAt(index)), c -> new Node());
+      }
+      node.repositories = Optional.of(inRepositories);
+    }
+  }
+}
@@ -9,12 +9,32 @@ public final class CheckVersionResults
   private final List<CheckVersionLibraryStatusType> statuses;
   private final List<CheckVersionLibraryStatusType> failed;
   private final List<CheckVersionLibraryStatusType> ignored;
+  private final List<CheckVersionLibraryStatusType> skipped;
+  private final List<CheckVersionLibraryStatusType> cancelled;
+  private final List<CheckVersionTransitiveOutOfDate> transitive;
 
   public CheckVersionResults(
     final List<CheckVersionLibraryStatusType> inStatuses)
+  {
+    this(inStatuses, List.of());
+  }
+
+  /**
+   * Create results that include the out-of-date transitive dependencies
+   * of the checked libraries.
+   *
+   * @param inStatuses   The statuses of the libraries
+   * @param inTransitive The out-of-date transitive dependencies
+   */
+
+  public CheckVersionResults(
+    final List<CheckVersionLibraryStatusType> inStatuses,
+    final List<CheckVersionTransitiveOutOfDate> inTransitive)
   {
     this.statuses =
       List.copyOf(Objects.requireNonNull(inStatuses, "statuses"));
+    this.transitive =
+      List.copyOf(Objects.requireNonNull(inTransitive, "transitive"));
 
     this.failed =
       this.statuses.stream()
@@ -26,6 +46,16 @@ public final class CheckVersionResults
       this.statuses.stream()
         .filter(s -> s.library().isIgnored())
         .collect(Collectors.toUnmodifiableList());
+
+    this.skipped =
+      this.statuses.stream()
+        .filter(s -> s instanceof CheckVersionLibraryStatusSkipped)
+        .collect(Collectors.toUnmodifiableList());
+
+    this.cancelled =
+      this.statuses.stream()
+        .filter(s -> s instanceof CheckVersionLibraryStatusCancelled)
+        .collect(Collectors.toUnmodifiableList());
   }
 
   public List<CheckVersionLibraryStatusType> statuses()
@@ -42,4 +72,25 @@ public final class CheckVersionResults
   {
     return this.ignored;
   }
+
+  public List<CheckVersionLibraryStatusType> skipped()
+  {
+    return this.skipped;
+  }
+
+  public List<CheckVersionLibraryStatusType> cancelled()
+  {
+    return this.cancelled;
+  }
+
+  /**
+   * @return The out-of-date transitive dependencies of the checked
+   * libraries, if they were examined. These are reported, but do not fail
+   * the check.
+   */
+
+  public List<CheckVersionTransitiveOutOfDate> transitive()
+  {
+    return this.transitive;
+  }
 }
@@ -0,0 +1,119 @@
+package org.librarysimplified.ci.check_versions;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A policy describing how failed repository requests are retried.
+ *
+ * Requests are retried after I/O errors (including timeouts), server errors,
+ * and "too many requests" responses. The delay before each retry grows
+ * exponentially with the number of attempts made so far, and a random
+ * amount of jitter is applied so that concurrent checks that failed at the
+ * same moment do not all retry at the same moment. A request is not retried
+ * if the server asks for a longer delay than the maximum delay.
+ */
+
+public final class CheckVersionRetryPolicy
+{
+  private final int maximumAttempts;
+  private final Duration baseDelay;
+  private final Duration maximumDelay;
+
+  /**
+   * Create a retry policy.
+   *
+   * @param inMaximumAttempts The maximum number of attempts made for each
+   *                          request (including the first)
+   * @param inBaseDelay       The delay before the first retry
+   * @param inMaximumDelay    The maximum delay before any retry; a request
+   *                          is not retried if the server asks for a
+   *                          longer delay
+   */
+
+  public CheckVersionRetryPolicy(
+    final int inMaximumAttempts,
+    final Duration inBaseDelay,
+    final Duration inMaximumDelay)
+  {
+    if (inMaximumAttempts < 1) {
+      throw new IllegalArgumentException(
+        String.format("Attempt count %d must be positive", inMaximumAttempts));
+    }
+
+    this.maximumAttempts = inMaximumAttempts;
+    this.baseDelay =
+      Objects.requireNonNull(inBaseDelay, "baseDelay");
+    this.maximumDelay =
+      Objects.requireNonNull(inMaximumDelay, "maximumDelay");
+  }
+
+  /**
+   * @return The maximum number of attempts made for each request
+   */
+
+  public int maximumAttempts()
+  {
+    return this.maximumAttempts;
+  }
+
+  /**
+   * @param statusCode An HTTP status code
+   *
+   * @return {@code true} if a response with the given status code is worth
+   * retrying
+   */
+
+  public static boolean isRetryable(
+    final int statusCode)
+  {
+    return statusCode == 429 || statusCode >= 500;
+  }
+
+  /**
+   * @param serverRequested The delay requested by the server, if any
+   *
+   * @return {@code true} if the server asked for no longer than the maximum
+   * delay, and so a retry may be made
+   */
+
+  public boolean permits(
+    final Duration serverRequested)
+  {
+    Objects.requireNonNull(serverRequested, "serverRequested");
+    return serverRequested.compareTo(this.maximumDelay) <= 0;
+  }
+
+  /**
+   * Determine the delay before the next attempt. The delay is chosen
+   * uniformly at random between zero and an exponentially growing ceiling
+   * (the "full jitter" approach), but is never shorter than any delay the
+   * server asked for. The delay is never longer than the maximum delay,
+   * provided that the server asked for a delay that the policy
+   * {@link #permits(Duration)}.
+   *
+   * @param attempt         The number of attempts made so far
+   * @param serverRequested The delay requested by the server, if any
+   *
+   * @return The delay before the next attempt
+   */
+
+  public Duration delayBefore(
+    final int attempt,
+    final Duration serverRequested)
+  {
+    Objects.requireNonNull(serverRequested, "serverRequested");
+
+    final var shift = Math.min(Math.max(attempt - 1, 0), 30);
+    final var ceiling =
+      Math.min(
+        this.maximumDelay.toMillis(),
+        this.baseDelay.toMillis() << shift);
+
+    final var jittered =
+      ThreadLocalRandom.current().nextLong(Math.max(ceiling, 0L) + 1L);
+
+    return Duration.ofMillis(Math.max(jittered, serverRequested.toMillis()));
+  }
+}
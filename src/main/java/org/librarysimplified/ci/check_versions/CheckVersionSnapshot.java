@@ -0,0 +1,324 @@
+package org.librarysimplified.ci.check_versions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * A snapshot of the latest releases of a set of artifacts, produced by the
+ * {@code prefetch} command and read by {@code check-versions --snapshot}.
+ *
+ * The snapshot is a single file that is memory-mapped and searched in
+ * place, so opening it costs the same regardless of its size. All integers
+ * are big-endian.
+ *
+ * <pre>
+ * header:  magic "CIVS" | u32 version (1) | u32 count | u32 reserved (0)
+ * index:   count records, sorted by key, of
+ *          u32 string offset | u16 key length | u16 release length | i64 fetched
+ * strings: the UTF-8 key ("group:artifact") of each record, immediately
+ *          followed by the UTF-8 release
+ * </pre>
+ *
+ * Keys are sorted by comparing their bytes as unsigned values, so the
+ * index can be binary searched without decoding any strings. The fetch time
+ * is in seconds since the epoch.
+ */
+
+final class CheckVersionSnapshot
+{
+  private static final int MAGIC = 0x43495653;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 16;
+  private static final int RECORD_SIZE = 16;
+
+  private final Path file;
+  private final ByteBuffer buffer;
+  private final int count;
+
+  private CheckVersionSnapshot(
+    final Path inFile,
+    final ByteBuffer inBuffer,
+    final int inCount)
+  {
+    this.file =
+      Objects.requireNonNull(inFile, "file");
+    this.buffer =
+      Objects.requireNonNull(inBuffer, "buffer");
+    this.count = inCount;
+  }
+
+  /**
+   * Open a snapshot.
+   *
+   * @param file The snapshot file
+   *
+   * @return The snapshot
+   *
+   * @throws IOException On I/O errors, or if the file is not a snapshot
+   */
+
+  static CheckVersionSnapshot open(
+    final Path file)
+    throws IOException
+  {
+    try (var channel = FileChannel.open(file, READ)) {
+      final var size = channel.size();
+      if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+        throw new IOException(file + ": Not a snapshot file");
+      }
+
+      final var buffer = channel.map(READ_ONLY, 0L, size);
+      buffer.order(ByteOrder.BIG_ENDIAN);
+
+      if (buffer.getInt(0) != MAGIC) {
+        throw new IOException(file + ": Not a snapshot file");
+      }
+      final var version = buffer.getInt(4);
+      if (version != VERSION) {
+        throw new IOException(
+          String.format("%s: Unsupported snapshot version %d", file, version));
+      }
+      final var count = buffer.getInt(8);
+      if (count < 0 || (long) HEADER_SIZE + (long) count * RECORD_SIZE > size) {
+        throw new IOException(file + ": Truncated snapshot file");
+      }
+      return new CheckVersionSnapshot(file, buffer, count);
+    }
+  }
+
+  /**
+   * @return The snapshot file
+   */
+
+  Path file()
+  {
+    return this.file;
+  }
+
+  /**
+   * @return The number of artifacts in the snapshot
+   */
+
+  int size()
+  {
+    return this.count;
+  }
+
+  /**
+   * Find the latest release of the given artifact.
+   *
+   * @param group    The artifact group
+   * @param artifact The artifact name
+   *
+   * @return The release, if the artifact is in the snapshot
+   *
+   * @throws IOException If the snapshot is corrupt
+   */
+
+  Optional<Entry> find(
+    final String group,
+    final String artifact)
+    throws IOException
+  {
+    final var key =
+      keyOf(group, artifact).getBytes(StandardCharsets.UTF_8);
+
+    var low = 0;
+    var high = this.count - 1;
+    while (low <= high) {
+      final var middle = (low + high) >>> 1;
+      final var record = HEADER_SIZE + middle * RECORD_SIZE;
+      final var offset = this.buffer.getInt(record);
+      final var keyLength = Short.toUnsignedInt(this.buffer.getShort(record + 4));
+      final var releaseLength = Short.toUnsignedInt(this.buffer.getShort(record + 6));
+      this.checkBounds(offset, keyLength + releaseLength);
+
+      final var comparison = this.compareKey(offset, keyLength, key);
+      if (comparison < 0) {
+        low = middle + 1;
+      } else if (comparison > 0) {
+        high = middle - 1;
+      } else {
+        final var release = new byte[releaseLength];
+        this.buffer.slice()
+          .position(offset + keyLength)
+          .get(release);
+        return Optional.of(
+          new Entry(
+            new String(release, StandardCharsets.UTF_8),
+            Instant.ofEpochSecond(this.buffer.getLong(record + 8))));
+      }
+    }
+    return Optional.empty();
+  }
+
+  private void checkBounds(
+    final int offset,
+    final int length)
+    throws IOException
+  {
+    if (offset < 0 || (long) offset + (long) length > this.buffer.capacity()) {
+      throw new IOException(this.file + ": Corrupt snapshot file");
+    }
+  }
+
+  private int compareKey(
+    final int offset,
+    final int length,
+    final byte[] key)
+  {
+    final var common = Math.min(length, key.length);
+    for (int index = 0; index < common; ++index) {
+      final var comparison =
+        Byte.toUnsignedInt(this.buffer.get(offset + index))
+          - Byte.toUnsignedInt(key[index]);
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+    return Integer.compare(length, key.length);
+  }
+
+  private static String keyOf(
+    final String group,
+    final String artifact)
+  {
+    return group + ":" + artifact;
+  }
+
+  /**
+   * Write a snapshot. The file is replaced atomically, so that jobs reading
+   * the snapshot never see a partially written file.
+   *
+   * @param file    The snapshot file
+   * @param entries The releases, keyed by {@code group:artifact}
+   *
+   * @throws IOException On I/O errors
+   */
+
+  static void write(
+    final Path file,
+    final Map<String, Entry> entries)
+    throws IOException
+  {
+    final var keys = new ArrayList<byte[]>(entries.size());
+    final var releases = new ArrayList<byte[]>(entries.size());
+    final var fetched = new ArrayList<Instant>(entries.size());
+
+    final var sorted =
+      entries.keySet()
+        .stream()
+        .map(k -> k.getBytes(StandardCharsets.UTF_8))
+        .sorted(Arrays::compareUnsigned)
+        .toArray(byte[][]::new);
+
+    var stringsSize = 0L;
+    for (final var key : sorted) {
+      final var entry = entries.get(new String(key, StandardCharsets.UTF_8));
+      final var release = entry.release().getBytes(StandardCharsets.UTF_8);
+      if (key.length > 0xffff || release.length > 0xffff) {
+        throw new IOException("Snapshot keys and releases must be shorter than 65536 bytes");
+      }
+      keys.add(key);
+      releases.add(release);
+      fetched.add(entry.fetched());
+      stringsSize += key.length + release.length;
+    }
+
+    final var stringsStart =
+      (long) HEADER_SIZE + (long) sorted.length * RECORD_SIZE;
+    final var size = stringsStart + stringsSize;
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Snapshot would be too large");
+    }
+
+    final var buffer = ByteBuffer.allocate((int) size);
+    buffer.order(ByteOrder.BIG_ENDIAN);
+    buffer.putInt(MAGIC);
+    buffer.putInt(VERSION);
+    buffer.putInt(sorted.length);
+    buffer.putInt(0);
+
+    var offset = (int) stringsStart;
+    for (int index = 0; index < sorted.length; ++index) {
+      final var key = keys.get(index);
+      final var release = releases.get(index);
+      buffer.putInt(offset);
+      buffer.putShort((short) key.length);
+      buffer.putShort((short) release.length);
+      buffer.putLong(fetched.get(index).getEpochSecond());
+      offset += key.length + release.length;
+    }
+    for (int index = 0; index < sorted.length; ++index) {
+      buffer.put(keys.get(index));
+      buffer.put(releases.get(index));
+    }
+
+    final var absolute = file.toAbsolutePath();
+    final var directory = absolute.getParent();
+    Files.createDirectories(directory);
+
+    final var temporary =
+      Files.createTempFile(directory, absolute.getFileName().toString(), ".tmp");
+    try {
+      Files.write(temporary, buffer.array());
+      Files.move(temporary, absolute, ATOMIC_MOVE, REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * The latest release of an artifact.
+   */
+
+  static final class Entry
+  {
+    private final String release;
+    private final Instant fetched;
+
+    Entry(
+      final String inRelease,
+      final Instant inFetched)
+    {
+      this.release =
+        Objects.requireNonNull(inRelease, "release");
+      this.fetched =
+        Objects.requireNonNull(inFetched, "fetched");
+    }
+
+    /**
+     * @return The latest release
+     */
+
+    String release()
+    {
+      return this.release;
+    }
+
+    /**
+     * @return The time at which the release was fetched
+     */
+
+    Instant fetched()
+    {
+      return this.fetched;
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package org.librarysimplified.ci.check_versions;
+
+/**
+ * The type of formatters that can produce output for each library as soon
+ * as its status is known, rather than waiting for all libraries to be
+ * checked. When an incremental formatter is selected, the output for each
+ * library is written as it is produced, and the output of
+ * {@link #format(CheckVersionResults)} is not written at all.
+ */
+
+public interface CheckVersionStatusIncrementalFormatterType
+  extends CheckVersionStatusFormatterType
+{
+  /**
+   * Format the status of a single library. This method may be called from
+   * several threads at once.
+   *
+   * @param projectName The name of the project that declares the library,
+   *                    or the empty string if only one project is checked
+   * @param status      The status
+   *
+   * @return A single line of output, without a line terminator
+   */
+
+  String formatStatus(
+    String projectName,
+    CheckVersionLibraryStatusType status);
+
+  /**
+   * Format an out-of-date transitive dependency. Transitive dependencies
+   * are formatted once all libraries have been checked.
+   *
+   * @param projectName The name of the project that declares the library
+   *                    that pulls in the dependency, or the empty string if
+   *                    only one project is checked
+   * @param dependency  The dependency
+   *
+   * @return A single line of output, without a line terminator
+   */
+
+  String formatTransitive(
+    String projectName,
+    CheckVersionTransitiveOutOfDate dependency);
+}
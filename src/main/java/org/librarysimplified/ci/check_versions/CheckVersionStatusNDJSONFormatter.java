@@ -0,0 +1,192 @@
+package org.librarysimplified.ci.check_versions;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A formatter that produces newline-delimited JSON, with one object per
+ * library. Each object has the following fields:
+ *
+ * <ul>
+ *   <li>{@code project}: The project (only present when several projects
+ *   are checked)</li>
+ *   <li>{@code group}, {@code artifact}: The library coordinates</li>
+ *   <li>{@code current}: The version declared in the catalog</li>
+ *   <li>{@code available}: The latest release, or {@code null} if it is not
+ *   known</li>
+ *   <li>{@code status}: One of {@code up-to-date}, {@code out-of-date},
+ *   {@code unavailable}, {@code error}, {@code repository-skipped},
+ *   {@code ignored}, {@code skipped}, or {@code cancelled}</li>
+ *   <li>{@code repository}: The repository in which the latest release was
+ *   found (or that was skipped), or {@code null}</li>
+ *   <li>{@code message}: A human-readable description of the status</li>
+ *   <li>{@code attempts}: The number of requests made, including retries</li>
+ *   <li>{@code timings}: {@code lookupMilliseconds}, the time taken to look
+ *   up the library, and {@code elapsedMilliseconds}, the time between the
+ *   formatter being created and the status being formatted</li>
+ * </ul>
+ *
+ * When transitive dependencies are examined, one further object is
+ * produced for each out-of-date transitive dependency, after all of the
+ * libraries. These objects have the {@code status}
+ * {@code transitive-out-of-date}, the {@code project}, {@code group},
+ * {@code artifact}, {@code current}, and {@code available} fields described
+ * above, and a {@code path} field that lists the
+ * {@code group:artifact:version} coordinates of each artifact from the
+ * checked library to the dependency.
+ */
+
+public final class CheckVersionStatusNDJSONFormatter
+  implements CheckVersionStatusIncrementalFormatterType
+{
+  /**
+   * The name of the formatter.
+   */
+
+  public static final String NAME = "ndjson";
+
+  private final ObjectMapper mapper;
+  private final long timeCreated;
+
+  public CheckVersionStatusNDJSONFormatter()
+  {
+    this.mapper = new ObjectMapper();
+    this.timeCreated = System.nanoTime();
+  }
+
+  /**
+   * @return The name of the formatter.
+   */
+
+  public static String formatterName()
+  {
+    return NAME;
+  }
+
+  @Override
+  public String formatStatus(
+    final String projectName,
+    final CheckVersionLibraryStatusType status)
+  {
+    Objects.requireNonNull(projectName, "projectName");
+    Objects.requireNonNull(status, "status");
+
+    final var library = status.library();
+    final var lookup = status.lookup();
+
+    final var record = this.mapper.createObjectNode();
+    if (!projectName.isEmpty()) {
+      record.put("project", projectName);
+    }
+    record.put("group", library.group());
+    record.put("artifact", library.artifact());
+    record.put("current", library.version().toString());
+    record.put(
+      "available",
+      lookup.flatMap(CheckVersionLookup::release)
+        .map(Object::toString)
+        .orElse(null));
+    record.put("status", statusNameOf(status));
+    record.put(
+      "repository",
+      lookup.flatMap(CheckVersionLookup::repository).orElse(null));
+    record.put("message", status.message());
+    record.put("attempts", status.attempts());
+
+    final var timings = record.putObject("timings");
+    timings.put(
+      "lookupMilliseconds",
+      lookup.map(l -> l.duration().toMillis()).orElse(0L).longValue());
+    timings.put(
+      "elapsedMilliseconds",
+      (System.nanoTime() - this.timeCreated) / 1_000_000L);
+
+    try {
+      return this.mapper.writeValueAsString(record);
+    } catch (final JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public String formatTransitive(
+    final String projectName,
+    final CheckVersionTransitiveOutOfDate dependency)
+  {
+    Objects.requireNonNull(projectName, "projectName");
+    Objects.requireNonNull(dependency, "dependency");
+
+    final var record = this.mapper.createObjectNode();
+    if (!projectName.isEmpty()) {
+      record.put("project", projectName);
+    }
+    record.put("group", dependency.group());
+    record.put("artifact", dependency.artifact());
+    record.put("current", dependency.version());
+    record.put("available", dependency.available().toString());
+    record.put("status", "transitive-out-of-date");
+
+    final var path = record.putArray("path");
+    dependency.path().forEach(path::add);
+
+    try {
+      return this.mapper.writeValueAsString(record);
+    } catch (final JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static String statusNameOf(
+    final CheckVersionLibraryStatusType status)
+  {
+    if (status instanceof CheckVersionLibraryStatusUpToDate) {
+      return "up-to-date";
+    }
+    if (status instanceof CheckVersionLibraryStatusOutOfDate) {
+      return "out-of-date";
+    }
+    if (status instanceof CheckVersionLibraryStatusUnavailable) {
+      return "unavailable";
+    }
+    if (status instanceof CheckVersionLibraryStatusRepositorySkipped) {
+      return "repository-skipped";
+    }
+    if (status instanceof CheckVersionLibraryStatusIgnored) {
+      return "ignored";
+    }
+    if (status instanceof CheckVersionLibraryStatusSkipped) {
+      return "skipped";
+    }
+    if (status instanceof CheckVersionLibraryStatusCancelled) {
+      return "cancelled";
+    }
+    return "error";
+  }
+
+  @Override
+  public String format(
+    final CheckVersionResults results)
+  {
+    Objects.requireNonNull(results, "results");
+
+    return Stream.concat(
+      results.statuses()
+        .stream()
+        .map(s -> this.formatStatus("", s)),
+      results.transitive()
+        .stream()
+        .map(d -> this.formatTransitive("", d))
+    ).collect(Collectors.joining(System.lineSeparator()));
+  }
+
+  @Override
+  public String name()
+  {
+    return formatterName();
+  }
+}
@@ -9,6 +9,12 @@ import java.util.Objects;
 public final class CheckVersionStatusPlainFormatter
   implements CheckVersionStatusFormatterType
 {
+  /**
+   * The name of the formatter.
+   */
+
+  public static final String NAME = "plain";
+
   public CheckVersionStatusPlainFormatter()
   {
 
@@ -20,7 +26,7 @@ public final class CheckVersionStatusPlainFormatter
 
   public static String formatterName()
   {
-    return "plain";
+    return NAME;
   }
 
   private static void checkedFooter(
@@ -32,6 +38,46 @@ public final class CheckVersionStatusPlainFormatter
     message.append(" libraries were checked. ");
     message.append((long) results.ignored().size());
     message.append(" libraries were ignored.");
+
+    if (!results.skipped().isEmpty()) {
+      message.append(" ");
+      message.append((long) results.skipped().size());
+      message.append(" libraries were skipped.");
+    }
+
+    if (!results.cancelled().isEmpty()) {
+      message.append(" ");
+      message.append((long) results.cancelled().size());
+      message.append(" libraries were not checked, as the check was cancelled.");
+    }
+  }
+
+  private static void transitiveTable(
+    final CheckVersionResults results,
+    final StringBuilder message)
+  {
+    final var transitive = results.transitive();
+    if (transitive.isEmpty()) {
+      return;
+    }
+
+    message.append(System.lineSeparator());
+    message.append(System.lineSeparator());
+    message.append((long) transitive.size());
+    message.append(" transitive dependencies are out-of-date:");
+    message.append(System.lineSeparator());
+    message.append(System.lineSeparator());
+    message.append(
+      AsciiTable.getTable(
+        transitive,
+        Arrays.asList(
+          new Column().header("Group").with(CheckVersionTransitiveOutOfDate::group),
+          new Column().header("Artifact").with(CheckVersionTransitiveOutOfDate::artifact),
+          new Column().header("Version").with(CheckVersionTransitiveOutOfDate::version),
+          new Column().header("Available").with(d -> d.available().toString()),
+          new Column().header("Path").with(CheckVersionTransitiveOutOfDate::pathText)
+        )
+      ));
   }
 
   @Override
@@ -41,7 +87,10 @@ public final class CheckVersionStatusPlainFormatter
     Objects.requireNonNull(results, "results");
 
     final var notIgnored =
-      results.statuses().size() - results.ignored().size();
+      results.statuses().size()
+        - results.ignored().size()
+        - results.skipped().size()
+        - results.cancelled().size();
 
     final var message = new StringBuilder(1024);
 
@@ -64,12 +113,25 @@ public final class CheckVersionStatusPlainFormatter
       message.append(System.lineSeparator());
       message.append(System.lineSeparator());
       checkedFooter(results, notIgnored, message);
+      transitiveTable(results, message);
       return message.toString();
     }
 
-    message.append("All of the checked libraries are up-to-date.");
+    /*
+     * In fail-fast mode, a failure elsewhere can cancel the check before
+     * any library here has been found to be out-of-date. The libraries that
+     * were not checked are not known to be up-to-date.
+     */
+
+    if (!results.cancelled().isEmpty()) {
+      message.append(
+        "The check was cancelled before all of the libraries were checked!");
+    } else {
+      message.append("All of the checked libraries are up-to-date.");
+    }
     message.append(System.lineSeparator());
     checkedFooter(results, notIgnored, message);
+    transitiveTable(results, message);
     return message.toString();
   }
 
@@ -12,6 +12,12 @@ import java.util.stream.Collectors;
 public final class CheckVersionStatusSlackFormatter
   implements CheckVersionStatusFormatterType
 {
+  /**
+   * The name of the formatter.
+   */
+
+  public static final String NAME = "slack";
+
   public CheckVersionStatusSlackFormatter()
   {
 
@@ -23,7 +29,7 @@ public final class CheckVersionStatusSlackFormatter
 
   public static String formatterName()
   {
-    return "slack";
+    return NAME;
   }
 
   private static ObjectNode generateOKHeader(
@@ -41,12 +47,30 @@ public final class CheckVersionStatusSlackFormatter
     return section;
   }
 
+  private static ObjectNode generateCancelledHeader(
+    final ObjectMapper mapper)
+  {
+    final var textSection = mapper.createObjectNode();
+    textSection.put("type", "mrkdwn");
+    textSection.put(
+      "text",
+      ":warning:    The check was cancelled before all of the libraries were checked!");
+
+    final var section = mapper.createObjectNode();
+    section.put("type", "section");
+    section.set("text", textSection);
+    return section;
+  }
+
   private static ObjectNode generateFooter(
     final ObjectMapper mapper,
     final CheckVersionResults results)
   {
     final var notIgnored =
-      results.statuses().size() - results.ignored().size();
+      results.statuses().size()
+        - results.ignored().size()
+        - results.skipped().size()
+        - results.cancelled().size();
 
     final var text = new StringBuilder(128);
     text.append(notIgnored);
@@ -54,6 +78,18 @@ public final class CheckVersionStatusSlackFormatter
     text.append((long) results.ignored().size());
     text.append(" libraries were ignored.");
 
+    if (!results.skipped().isEmpty()) {
+      text.append(" ");
+      text.append((long) results.skipped().size());
+      text.append(" libraries were skipped.");
+    }
+
+    if (!results.cancelled().isEmpty()) {
+      text.append(" ");
+      text.append((long) results.cancelled().size());
+      text.append(" libraries were not checked, as the check was cancelled.");
+    }
+
     final var textSection = mapper.createObjectNode();
     textSection.put("type", "mrkdwn");
     textSection.put("text", text.toString());
@@ -146,6 +182,49 @@ public final class CheckVersionStatusSlackFormatter
     return section;
   }
 
+  private static ObjectNode generateTransitiveSection(
+    final ObjectMapper mapper,
+    final List<CheckVersionTransitiveOutOfDate> transitive)
+  {
+    final var message = new StringBuilder(256);
+    message.append(":information_source:    ");
+    message.append(transitive.size());
+    message.append(" transitive dependencies are out-of-date");
+
+    /*
+     * Slack limits the text of a section to 3000 characters, so only the
+     * first few dependencies are listed.
+     */
+
+    if (transitive.size() > 4) {
+      message.append("; the first four are listed below.");
+    } else {
+      message.append(':');
+    }
+
+    for (final var dependency : transitive.subList(0, Math.min(4, transitive.size()))) {
+      message.append(System.lineSeparator());
+      message.append("- `");
+      message.append(dependency.artifact());
+      message.append(':');
+      message.append(dependency.version());
+      message.append("` (");
+      message.append(dependency.available());
+      message.append(" is available), via `");
+      message.append(dependency.pathText());
+      message.append('`');
+    }
+
+    final var textSection = mapper.createObjectNode();
+    textSection.put("type", "mrkdwn");
+    textSection.put("text", message.toString());
+
+    final var section = mapper.createObjectNode();
+    section.put("type", "section");
+    section.set("text", textSection);
+    return section;
+  }
+
   @Override
   public String format(
     final CheckVersionResults results)
@@ -160,10 +239,16 @@ public final class CheckVersionStatusSlackFormatter
       if (!failed.isEmpty()) {
         blocks.add(generateErrorHeader(mapper, failed));
         blocks.add(generateErrorTable(mapper, failed));
+      } else if (!results.cancelled().isEmpty()) {
+        blocks.add(generateCancelledHeader(mapper));
       } else {
         blocks.add(generateOKHeader(mapper));
       }
 
+      if (!results.transitive().isEmpty()) {
+        blocks.add(generateTransitiveSection(mapper, results.transitive()));
+      }
+
       blocks.add(generateFooter(mapper, results));
       final var root = mapper.createObjectNode();
       root.set("blocks", blocks);
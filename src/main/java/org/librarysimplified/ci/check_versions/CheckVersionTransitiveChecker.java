@@ -0,0 +1,783 @@
+package org.librarysimplified.ci.check_versions;
+
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Walks the dependency graphs of checked libraries, and finds the
+ * transitive dependencies that are not the latest releases of their
+ * artifacts.
+ *
+ * The graph is walked breadth-first, one level at a time, and the POMs of
+ * each level are fetched concurrently on a fixed pool of threads. Walking by
+ * level means that the nearest declaration of an artifact is the one that
+ * is followed (as it is in Maven), regardless of the order in which fetches
+ * complete, and so the reported paths are the same on every run. Each
+ * artifact is followed at most once per project, and every POM (and every
+ * latest release) is fetched at most once for the lifetime of the checker,
+ * however many libraries depend on it.
+ *
+ * Dependencies in the {@code test}, {@code provided}, and {@code system}
+ * scopes, optional dependencies, excluded dependencies, and dependencies
+ * whose versions are ranges or cannot be resolved are not followed.
+ * Artifacts declared in the version catalog are checked (or ignored)
+ * directly, and so are not reported again as transitive dependencies.
+ */
+
+final class CheckVersionTransitiveChecker implements AutoCloseable
+{
+  private static final Logger LOG =
+    Logger.getLogger("CheckVersionTransitiveChecker");
+
+  private static final int MAXIMUM_MODEL_DEPTH = 32;
+  private static final int MAXIMUM_PROPERTY_DEPTH = 8;
+
+  private final CheckVersionMetadataFetcher fetcher;
+  private final CheckVersionMetrics metrics;
+  private final ExecutorService executor;
+  private final ConcurrentHashMap<List<Object>, CompletableFuture<Optional<CheckVersionPom>>> poms;
+  private final ConcurrentHashMap<List<Object>, Optional<Model>> models;
+  private final ConcurrentHashMap<List<Object>, CompletableFuture<CheckVersionLookup>> releases;
+
+  CheckVersionTransitiveChecker(
+    final CheckVersionMetadataFetcher inFetcher,
+    final CheckVersionMetrics inMetrics,
+    final int threads)
+  {
+    this.fetcher =
+      Objects.requireNonNull(inFetcher, "fetcher");
+    this.metrics =
+      Objects.requireNonNull(inMetrics, "metrics");
+
+    if (threads < 1) {
+      throw new IllegalArgumentException(
+        String.format("Thread count %d must be positive", threads));
+    }
+
+    final var threadIndex = new AtomicInteger(0);
+    this.executor =
+      Executors.newFixedThreadPool(threads, runnable -> {
+        final var thread = new Thread(runnable);
+        thread.setName(
+          String.format(
+            "CheckVersionTransitiveChecker-%d", threadIndex.incrementAndGet()));
+        thread.setDaemon(true);
+        return thread;
+      });
+
+    this.poms = new ConcurrentHashMap<>();
+    this.models = new ConcurrentHashMap<>();
+    this.releases = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Find the out-of-date transitive dependencies of the checked libraries
+   * of the given project.
+   *
+   * @param project The project
+   *
+   * @return The out-of-date transitive dependencies, in the order in which
+   * they were found
+   *
+   * @throws InterruptedException If the calling thread is interrupted
+   */
+
+  List<CheckVersionTransitiveOutOfDate> check(
+    final CheckVersionProject project)
+    throws InterruptedException
+  {
+    Objects.requireNonNull(project, "project");
+
+    final var timeStarted = System.nanoTime();
+
+    /*
+     * The repositories from which a library's dependencies are fetched are
+     * not known, so the library's own repositories are tried first, followed
+     * by every other repository used by the project.
+     */
+
+    final var projectRepositories = new LinkedHashSet<String>();
+    final var visited = new HashSet<String>();
+    for (final var library : project.libraries()) {
+      projectRepositories.addAll(library.repositories());
+      visited.add(library.group() + ":" + library.artifact());
+    }
+
+    var level = new ArrayList<Node>();
+    int roots = 0;
+    for (final var library : project.libraries()) {
+      if (library.isIgnored() || !project.shouldCheck(library)) {
+        continue;
+      }
+
+      final var repositories = new LinkedHashSet<>(library.repositories());
+      repositories.addAll(projectRepositories);
+
+      final var version = library.version().toString();
+      level.add(new Node(
+        library.group(),
+        library.artifact(),
+        version,
+        List.of(coordinatesOf(library.group(), library.artifact(), version)),
+        Set.of(),
+        List.copyOf(repositories),
+        true
+      ));
+      ++roots;
+    }
+
+    final var found = new ArrayList<CheckVersionTransitiveOutOfDate>();
+    int walked = 0;
+
+    while (!level.isEmpty()) {
+      final var expansions = new ArrayList<Future<Expansion>>(level.size());
+      for (final var node : level) {
+        expansions.add(this.executor.submit(() -> this.expand(node)));
+      }
+
+      final var next = new ArrayList<Node>();
+      try {
+        for (int index = 0; index < level.size(); ++index) {
+          final var node = level.get(index);
+          final var expansion = waitFor(node, expansions.get(index));
+          expansion.outOfDate.ifPresent(found::add);
+
+          for (final var dependency : expansion.dependencies) {
+            if (isExcluded(node.exclusions, dependency)) {
+              continue;
+            }
+            final var key =
+              dependency.groupId() + ":" + dependency.artifactId();
+            if (!visited.add(key)) {
+              continue;
+            }
+
+            final Set<String> exclusions;
+            if (dependency.exclusions().isEmpty()) {
+              exclusions = node.exclusions;
+            } else {
+              final var combined = new HashSet<>(node.exclusions);
+              combined.addAll(dependency.exclusions());
+              exclusions = Set.copyOf(combined);
+            }
+
+            final var path = new ArrayList<String>(node.path.size() + 1);
+            path.addAll(node.path);
+            path.add(coordinatesOf(
+              dependency.groupId(),
+              dependency.artifactId(),
+              dependency.version()));
+
+            next.add(new Node(
+              dependency.groupId(),
+              dependency.artifactId(),
+              dependency.version(),
+              path,
+              exclusions,
+              node.repositories,
+              false
+            ));
+          }
+        }
+      } catch (final InterruptedException e) {
+        for (final var expansion : expansions) {
+          expansion.cancel(true);
+        }
+        throw e;
+      }
+
+      walked += next.size();
+      level = next;
+    }
+
+    LOG.info(String.format(
+      "Walked %d transitive dependencies of %d libraries in %d ms; %d are out-of-date",
+      Integer.valueOf(walked),
+      Integer.valueOf(roots),
+      Long.valueOf(Duration.ofNanos(System.nanoTime() - timeStarted).toMillis()),
+      Integer.valueOf(found.size())));
+    return found;
+  }
+
+  /**
+   * A dependency that cannot be examined is reported in the log, and is
+   * otherwise treated as having no dependencies of its own.
+   */
+
+  private static Expansion waitFor(
+    final Node node,
+    final Future<Expansion> future)
+    throws InterruptedException
+  {
+    try {
+      return future.get();
+    } catch (final ExecutionException e) {
+      LOG.warning(String.format(
+        "Could not examine the dependencies of %s: %s",
+        node.pathText(),
+        e.getCause()));
+      return new Expansion(List.of(), Optional.empty());
+    }
+  }
+
+  private Expansion expand(
+    final Node node)
+    throws IOException, InterruptedException
+  {
+    Optional<CheckVersionTransitiveOutOfDate> outOfDate = Optional.empty();
+    if (!node.root) {
+      outOfDate = this.outOfDate(node);
+    }
+
+    final var model =
+      this.model(node.group, node.artifact, node.version, node.repositories, 0);
+    if (model.isEmpty()) {
+      LOG.log(Level.FINE, "No POM was found for {0}", node.pathText());
+      return new Expansion(List.of(), outOfDate);
+    }
+
+    final var dependencies = new ArrayList<CheckVersionPom.Dependency>();
+    for (final var dependency : model.get().dependencies) {
+      if (isFollowed(dependency)) {
+        dependencies.add(dependency);
+      }
+    }
+    return new Expansion(dependencies, outOfDate);
+  }
+
+  private Optional<CheckVersionTransitiveOutOfDate> outOfDate(
+    final Node node)
+    throws IOException, InterruptedException
+  {
+    final var lookup =
+      this.memoized(
+        this.releases,
+        List.of(node.group, node.artifact, node.repositories),
+        "transitive-release",
+        () -> this.fetcher.lookup(
+          node.group, node.artifact, new LinkedHashSet<>(node.repositories)));
+
+    final var release = lookup.release();
+    if (release.isEmpty()) {
+      LOG.log(
+        Level.FINE,
+        "The latest release of {0} could not be determined: {1}",
+        new Object[]{node.pathText(), lookup.message()});
+      return Optional.empty();
+    }
+
+    if (release.get().compareTo(new DefaultArtifactVersion(node.version)) <= 0) {
+      return Optional.empty();
+    }
+
+    return Optional.of(new CheckVersionTransitiveOutOfDate(
+      node.group,
+      node.artifact,
+      node.version,
+      release.get(),
+      node.path
+    ));
+  }
+
+  /**
+   * Build the effective model of a POM: the POM merged with its parents
+   * and with the POMs that it imports into its dependency management, with
+   * all properties interpolated. As in Maven, the POM's sections are first
+   * merged with the uninterpolated sections of its parents, and only then
+   * interpolated and matched against dependency management, so that the
+   * POM's properties and managed dependencies also apply to what it
+   * inherits.
+   */
+
+  private Optional<Model> model(
+    final String group,
+    final String artifact,
+    final String version,
+    final List<String> repositories,
+    final int depth)
+    throws IOException, InterruptedException
+  {
+    final var key = List.<Object>of(group, artifact, version, repositories);
+    final var existing = this.models.get(key);
+    if (existing != null) {
+      return existing;
+    }
+
+    if (depth > MAXIMUM_MODEL_DEPTH) {
+      throw new IOException(String.format(
+        "The parents and imports of %s are nested too deeply",
+        coordinatesOf(group, artifact, version)));
+    }
+
+    final var pom =
+      this.memoized(
+        this.poms,
+        key,
+        "pom",
+        () -> this.fetcher.fetchPom(group, artifact, version, repositories));
+
+    if (pom.isEmpty()) {
+      this.models.putIfAbsent(key, Optional.empty());
+      return Optional.empty();
+    }
+
+    final var raw = pom.get();
+
+    Optional<Model> parent = Optional.empty();
+    if (raw.parent().isPresent()) {
+      final var declared = raw.parent().get();
+      parent = this.model(
+        declared.groupId(),
+        declared.artifactId(),
+        declared.version(),
+        repositories,
+        depth + 1);
+      if (parent.isEmpty()) {
+        LOG.log(
+          Level.FINE,
+          "The parent of {0} was not found",
+          coordinatesOf(group, artifact, version));
+      }
+    }
+
+    final var properties = new HashMap<String, String>();
+    parent.ifPresent(p -> properties.putAll(p.properties));
+    properties.putAll(raw.properties());
+
+    final var effectiveGroup =
+      raw.groupId().isEmpty()
+        ? parent.map(p -> p.group).orElse(group)
+        : raw.groupId();
+    final var effectiveVersion =
+      raw.version().isEmpty()
+        ? parent.map(p -> p.version).orElse(version)
+        : raw.version();
+
+    properties.put("project.groupId", effectiveGroup);
+    properties.put("project.artifactId", raw.artifactId());
+    properties.put("project.version", effectiveVersion);
+    properties.put("pom.groupId", effectiveGroup);
+    properties.put("pom.version", effectiveVersion);
+    properties.put("groupId", effectiveGroup);
+    properties.put("version", effectiveVersion);
+    if (parent.isPresent()) {
+      properties.put("project.parent.groupId", parent.get().group);
+      properties.put("project.parent.version", parent.get().version);
+    }
+
+    /*
+     * Managed dependencies declared by the POM override those inherited
+     * from its parents, and both override those imported from other POMs.
+     */
+
+    final var rawManaged = new LinkedHashMap<String, CheckVersionPom.Dependency>();
+    parent.ifPresent(p -> rawManaged.putAll(p.rawManaged));
+    for (final var declared : raw.managed()) {
+      rawManaged.put(keyOf(declared), declared);
+    }
+
+    final var managed = new LinkedHashMap<String, CheckVersionPom.Dependency>();
+    final var imports = new ArrayList<CheckVersionPom.Dependency>();
+    for (final var declared : rawManaged.values()) {
+      final var dependency = interpolated(declared, properties);
+      if ("import".equals(dependency.scope())) {
+        imports.add(dependency);
+      } else {
+        managed.put(keyOf(dependency), dependency);
+      }
+    }
+
+    for (final var imported : imports) {
+      if (!isResolved(imported.version())) {
+        continue;
+      }
+      final var bom =
+        this.model(
+          imported.groupId(),
+          imported.artifactId(),
+          imported.version(),
+          repositories,
+          depth + 1);
+      if (bom.isPresent()) {
+        for (final var entry : bom.get().managed.entrySet()) {
+          managed.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+
+    final var rawDependencies = new LinkedHashMap<String, CheckVersionPom.Dependency>();
+    parent.ifPresent(p -> rawDependencies.putAll(p.rawDependencies));
+    for (final var declared : raw.dependencies()) {
+      rawDependencies.put(keyOf(declared), declared);
+    }
+
+    final var dependencies = new LinkedHashMap<String, CheckVersionPom.Dependency>();
+    for (final var declared : rawDependencies.values()) {
+      final var dependency = managedOf(interpolated(declared, properties), managed);
+      dependencies.put(keyOf(dependency), dependency);
+    }
+
+    final var model =
+      Optional.of(new Model(
+        effectiveGroup,
+        effectiveVersion,
+        properties,
+        rawManaged,
+        managed,
+        rawDependencies,
+        List.copyOf(dependencies.values())
+      ));
+
+    final var raced = this.models.putIfAbsent(key, model);
+    return raced != null ? raced : model;
+  }
+
+  /**
+   * Fill in the parts of a dependency that were left to dependency
+   * management.
+   */
+
+  private static CheckVersionPom.Dependency managedOf(
+    final CheckVersionPom.Dependency dependency,
+    final Map<String, CheckVersionPom.Dependency> managed)
+  {
+    final var management = managed.get(keyOf(dependency));
+    if (management == null) {
+      return dependency;
+    }
+
+    final Set<String> exclusions;
+    if (management.exclusions().isEmpty()) {
+      exclusions = dependency.exclusions();
+    } else {
+      final var combined = new HashSet<>(dependency.exclusions());
+      combined.addAll(management.exclusions());
+      exclusions = Set.copyOf(combined);
+    }
+
+    return new CheckVersionPom.Dependency(
+      dependency.groupId(),
+      dependency.artifactId(),
+      dependency.version().isEmpty()
+        ? management.version() : dependency.version(),
+      dependency.scope().isEmpty()
+        ? management.scope() : dependency.scope(),
+      dependency.type(),
+      dependency.optional().isEmpty()
+        ? management.optional() : dependency.optional(),
+      exclusions
+    );
+  }
+
+  private static CheckVersionPom.Dependency interpolated(
+    final CheckVersionPom.Dependency dependency,
+    final Map<String, String> properties)
+  {
+    return new CheckVersionPom.Dependency(
+      interpolate(dependency.groupId(), properties, 0),
+      interpolate(dependency.artifactId(), properties, 0),
+      interpolate(dependency.version(), properties, 0),
+      interpolate(dependency.scope(), properties, 0),
+      interpolate(dependency.type(), properties, 0),
+      interpolate(dependency.optional(), properties, 0),
+      dependency.exclusions()
+    );
+  }
+
+  /**
+   * Replace each {@code ${name}} in the given text with the value of the
+   * named property. References to properties that do not exist are left
+   * as they are.
+   */
+
+  private static String interpolate(
+    final String text,
+    final Map<String, String> properties,
+    final int depth)
+  {
+    var start = text.indexOf("${");
+    if (start < 0) {
+      return text;
+    }
+
+    final var result = new StringBuilder(text.length() + 16);
+    var position = 0;
+    while (start >= 0) {
+      final var end = text.indexOf('}', start + 2);
+      if (end < 0) {
+        break;
+      }
+
+      result.append(text, position, start);
+      final var value = properties.get(text.substring(start + 2, end));
+      if (value != null && depth < MAXIMUM_PROPERTY_DEPTH) {
+        result.append(interpolate(value, properties, depth + 1));
+      } else {
+        result.append(text, start, end + 1);
+      }
+      position = end + 1;
+      start = text.indexOf("${", position);
+    }
+    result.append(text, position, text.length());
+    return result.toString();
+  }
+
+  private static boolean isFollowed(
+    final CheckVersionPom.Dependency dependency)
+  {
+    switch (dependency.scope()) {
+      case "":
+      case "compile":
+      case "runtime": {
+        break;
+      }
+      default: {
+        return false;
+      }
+    }
+
+    return !"true".equals(dependency.optional())
+      && !dependency.groupId().isEmpty()
+      && !dependency.artifactId().isEmpty()
+      && isResolved(dependency.groupId())
+      && isResolved(dependency.artifactId())
+      && isResolved(dependency.version());
+  }
+
+  /**
+   * @return {@code true} if the given value is a plain value, rather than
+   * an unresolved property reference or a version range
+   */
+
+  private static boolean isResolved(
+    final String value)
+  {
+    if (value.isEmpty()) {
+      return false;
+    }
+    for (int index = 0; index < value.length(); ++index) {
+      switch (value.charAt(index)) {
+        case '$':
+        case '[':
+        case '(':
+        case ',': {
+          return false;
+        }
+        default: {
+          break;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static boolean isExcluded(
+    final Set<String> exclusions,
+    final CheckVersionPom.Dependency dependency)
+  {
+    if (exclusions.isEmpty()) {
+      return false;
+    }
+
+    final var group = dependency.groupId();
+    final var artifact = dependency.artifactId();
+    return exclusions.contains(group + ":" + artifact)
+      || exclusions.contains(group + ":*")
+      || exclusions.contains("*:" + artifact)
+      || exclusions.contains("*:*");
+  }
+
+  private static String keyOf(
+    final CheckVersionPom.Dependency dependency)
+  {
+    return dependency.groupId() + ":" + dependency.artifactId();
+  }
+
+  private static String coordinatesOf(
+    final String group,
+    final String artifact,
+    final String version)
+  {
+    return group + ":" + artifact + ":" + version;
+  }
+
+  /**
+   * Load a value at most once. The first caller to ask for a key loads the
+   * value itself, and any callers that ask for the same key in the
+   * meantime wait for it. As loading a value never waits for another value,
+   * waiting cannot deadlock.
+   */
+
+  private <T> T memoized(
+    final ConcurrentHashMap<List<Object>, CompletableFuture<T>> values,
+    final List<Object> key,
+    final String cacheName,
+    final LoaderType<T> loader)
+    throws IOException, InterruptedException
+  {
+    final var created = new CompletableFuture<T>();
+    final var existing = values.putIfAbsent(key, created);
+    if (existing != null) {
+      this.metrics.cacheHit(cacheName);
+      try {
+        return existing.get();
+      } catch (final ExecutionException e) {
+        final var cause = e.getCause();
+        throw new IOException(cause.getMessage(), cause);
+      }
+    }
+
+    this.metrics.cacheMiss(cacheName);
+    try {
+      final var value = loader.load();
+      created.complete(value);
+      return value;
+    } catch (final InterruptedException e) {
+      values.remove(key, created);
+      created.completeExceptionally(e);
+      throw e;
+    } catch (final IOException | RuntimeException e) {
+      created.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  private interface LoaderType<T>
+  {
+    T load()
+      throws IOException, InterruptedException;
+  }
+
+  @Override
+  public void close()
+  {
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * An artifact in the dependency graph, and the path by which it was
+   * reached.
+   */
+
+  private static final class Node
+  {
+    private final String group;
+    private final String artifact;
+    private final String version;
+    private final List<String> path;
+    private final Set<String> exclusions;
+    private final List<String> repositories;
+    private final boolean root;
+
+    Node(
+      final String inGroup,
+      final String inArtifact,
+      final String inVersion,
+      final List<String> inPath,
+      final Set<String> inExclusions,
+      final List<String> inRepositories,
+      final boolean inRoot)
+    {
+      this.group =
+        Objects.requireNonNull(inGroup, "group");
+      this.artifact =
+        Objects.requireNonNull(inArtifact, "artifact");
+      this.version =
+        Objects.requireNonNull(inVersion, "version");
+      this.path =
+        Objects.requireNonNull(inPath, "path");
+      this.exclusions =
+        Objects.requireNonNull(inExclusions, "exclusions");
+      this.repositories =
+        Objects.requireNonNull(inRepositories, "repositories");
+      this.root = inRoot;
+    }
+
+    String pathText()
+    {
+      return String.join(" -> ", this.path);
+    }
+  }
+
+  /**
+   * The result of examining a node: its dependencies, and whether it is
+   * out-of-date.
+   */
+
+  private static final class Expansion
+  {
+    private final List<CheckVersionPom.Dependency> dependencies;
+    private final Optional<CheckVersionTransitiveOutOfDate> outOfDate;
+
+    Expansion(
+      final List<CheckVersionPom.Dependency> inDependencies,
+      final Optional<CheckVersionTransitiveOutOfDate> inOutOfDate)
+    {
+      this.dependencies =
+        Objects.requireNonNull(inDependencies, "dependencies");
+      this.outOfDate =
+        Objects.requireNonNull(inOutOfDate, "outOfDate");
+    }
+  }
+
+  /**
+   * The effective model of a POM.
+   */
+
+  private static final class Model
+  {
+    private final String group;
+    private final String version;
+    private final Map<String, String> properties;
+    private final Map<String, CheckVersionPom.Dependency> rawManaged;
+    private final Map<String, CheckVersionPom.Dependency> managed;
+    private final Map<String, CheckVersionPom.Dependency> rawDependencies;
+    private final List<CheckVersionPom.Dependency> dependencies;
+
+    Model(
+      final String inGroup,
+      final String inVersion,
+      final Map<String, String> inProperties,
+      final Map<String, CheckVersionPom.Dependency> inRawManaged,
+      final Map<String, CheckVersionPom.Dependency> inManaged,
+      final Map<String, CheckVersionPom.Dependency> inRawDependencies,
+      final List<CheckVersionPom.Dependency> inDependencies)
+    {
+      this.group =
+        Objects.requireNonNull(inGroup, "group");
+      this.version =
+        Objects.requireNonNull(inVersion, "version");
+      this.properties =
+        Objects.requireNonNull(inProperties, "properties");
+      this.rawManaged =
+        Objects.requireNonNull(inRawManaged, "rawManaged");
+      this.managed =
+        Objects.requireNonNull(inManaged, "managed");
+      this.rawDependencies =
+        Objects.requireNonNull(inRawDependencies, "rawDependencies");
+      this.dependencies =
+        Objects.requireNonNull(inDependencies, "dependencies");
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package org.librarysimplified.ci.check_versions;
+
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A transitive dependency of a checked library that is not the latest
+ * release of its artifact.
+ */
+
+public final class CheckVersionTransitiveOutOfDate
+{
+  private final String group;
+  private final String artifact;
+  private final String version;
+  private final DefaultArtifactVersion available;
+  private final List<String> path;
+
+  CheckVersionTransitiveOutOfDate(
+    final String inGroup,
+    final String inArtifact,
+    final String inVersion,
+    final DefaultArtifactVersion inAvailable,
+    final List<String> inPath)
+  {
+    this.group =
+      Objects.requireNonNull(inGroup, "group");
+    this.artifact =
+      Objects.requireNonNull(inArtifact, "artifact");
+    this.version =
+      Objects.requireNonNull(inVersion, "version");
+    this.available =
+      Objects.requireNonNull(inAvailable, "available");
+    this.path =
+      List.copyOf(Objects.requireNonNull(inPath, "path"));
+  }
+
+  public String group()
+  {
+    return this.group;
+  }
+
+  public String artifact()
+  {
+    return this.artifact;
+  }
+
+  /**
+   * @return The version that the dependency graph resolves to
+   */
+
+  public String version()
+  {
+    return this.version;
+  }
+
+  /**
+   * @return The latest release
+   */
+
+  public DefaultArtifactVersion available()
+  {
+    return this.available;
+  }
+
+  /**
+   * @return The {@code group:artifact:version} coordinates of each artifact
+   * on the path from the checked library to this dependency, starting with
+   * the checked library and ending with this dependency
+   */
+
+  public List<String> path()
+  {
+    return this.path;
+  }
+
+  /**
+   * @return The path, written as {@code a -> b -> c}
+   */
+
+  public String pathText()
+  {
+    return String.join(" -> ", this.path);
+  }
+}
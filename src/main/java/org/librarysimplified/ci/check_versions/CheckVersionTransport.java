@@ -0,0 +1,308 @@
+package org.librarysimplified.ci.check_versions;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The transport over which metadata requests are sent.
+ *
+ * The client prefers HTTP/2, so that concurrent requests to a host are
+ * multiplexed over a single connection rather than each opening a
+ * connection of its own; servers that do not offer HTTP/2 during the TLS
+ * handshake are spoken to over HTTP/1.1 as before. Plain {@code http:}
+ * repositories always use HTTP/1.1, as cleartext HTTP/2 is rarely supported
+ * by repositories and the upgrade dance costs a round trip.
+ *
+ * The number of requests in flight to each host is capped. A request holds
+ * its stream from the time it is sent until its response body is closed,
+ * and requests beyond the cap wait (without holding a thread) for a stream
+ * to be released.
+ */
+
+final class CheckVersionTransport
+{
+  private static final Logger LOG = Logger.getLogger("CheckVersionTransport");
+
+  private final HttpClient httpClient;
+  private final int maximumStreamsPerHost;
+  private final ConcurrentHashMap<String, Streams> streams;
+  private final ConcurrentHashMap<String, CompletableFuture<?>> warmUps;
+
+  private CheckVersionTransport(
+    final HttpClient inHttpClient,
+    final int inMaximumStreamsPerHost)
+  {
+    this.httpClient =
+      Objects.requireNonNull(inHttpClient, "httpClient");
+    this.maximumStreamsPerHost = inMaximumStreamsPerHost;
+    this.streams =
+      new ConcurrentHashMap<>();
+    this.warmUps =
+      new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Create a transport.
+   *
+   * @param connectTimeout        The connect timeout
+   * @param maximumStreamsPerHost The maximum number of requests in flight to
+   *                              each host
+   *
+   * @return A transport
+   */
+
+  static CheckVersionTransport create(
+    final Duration connectTimeout,
+    final int maximumStreamsPerHost)
+  {
+    return new CheckVersionTransport(
+      HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_2)
+        .connectTimeout(connectTimeout)
+        .build(),
+      Math.max(maximumStreamsPerHost, 1)
+    );
+  }
+
+  /**
+   * @param target The target of the request
+   *
+   * @return A request builder with the protocol version set for the target
+   */
+
+  HttpRequest.Builder newRequest(
+    final URI target)
+  {
+    final var builder = HttpRequest.newBuilder(target);
+    if ("http".equalsIgnoreCase(target.getScheme())) {
+      builder.version(HttpClient.Version.HTTP_1_1);
+    }
+    return builder;
+  }
+
+  /**
+   * Send a request once a stream to the request's host is available.
+   * Cancelling the returned future cancels the request, whether or not it
+   * has been sent.
+   *
+   * @param request The request
+   *
+   * @return The response, the body of which must be closed
+   */
+
+  CompletableFuture<HttpResponse<InputStream>> send(
+    final HttpRequest request)
+  {
+    final var result = new CompletableFuture<HttpResponse<InputStream>>();
+    final var hostStreams =
+      this.streams.computeIfAbsent(
+        request.uri().getAuthority(),
+        host -> new Streams(this.maximumStreamsPerHost));
+
+    hostStreams.acquire().thenAccept(permit -> {
+      if (result.isDone()) {
+        permit.release();
+        return;
+      }
+
+      final CompletableFuture<HttpResponse<InputStream>> sent;
+      try {
+        sent = this.httpClient.sendAsync(request, info -> {
+          return HttpResponse.BodySubscribers.mapping(
+            HttpResponse.BodySubscribers.ofInputStream(),
+            stream -> new PermitStream(stream, permit));
+        });
+      } catch (final RuntimeException e) {
+        permit.release();
+        result.completeExceptionally(e);
+        return;
+      }
+
+      result.whenComplete((response, failure) -> {
+        if (result.isCancelled()) {
+          sent.cancel(true);
+        }
+      });
+      sent.whenComplete((response, failure) -> {
+        if (failure != null) {
+          permit.release();
+          result.completeExceptionally(failure);
+          return;
+        }
+        if (!result.complete(response)) {
+          CheckVersionExchange.closeQuietly(response.body());
+        }
+      });
+    });
+    return result;
+  }
+
+  /**
+   * Open connections to the given repositories in the background, so that
+   * the TLS handshake (and the HTTP/2 negotiation) is out of the way by the
+   * time the first metadata request is sent. Only {@code https:}
+   * repositories are warmed up, and a host that is already being warmed up
+   * is not warmed up again.
+   *
+   * @param repositories The repositories
+   */
+
+  void warmUp(
+    final Collection<String> repositories)
+  {
+    for (final var repository : repositories) {
+      final URI uri;
+      try {
+        uri = URI.create(repository);
+      } catch (final IllegalArgumentException e) {
+        continue;
+      }
+
+      final var scheme = uri.getScheme();
+      if (scheme == null || !"https".equals(scheme.toLowerCase(Locale.ROOT))) {
+        continue;
+      }
+
+      final var host = uri.getAuthority();
+      this.warmUps.compute(host, (key, existing) -> {
+        if (existing != null && !existing.isDone()) {
+          return existing;
+        }
+
+        final var request =
+          this.newRequest(uri)
+            .method("HEAD", HttpRequest.BodyPublishers.noBody())
+            .build();
+
+        return this.send(request).handle((response, failure) -> {
+          if (failure != null) {
+            LOG.log(Level.FINE, "Warming up {0} failed: {1}", new Object[]{key, failure});
+          } else {
+            CheckVersionExchange.closeQuietly(response.body());
+          }
+          return null;
+        });
+      });
+    }
+  }
+
+  /**
+   * A permit to use one of a host's streams.
+   */
+
+  private static final class Permit
+  {
+    private final Streams streams;
+    private final AtomicBoolean released;
+
+    Permit(
+      final Streams inStreams)
+    {
+      this.streams =
+        Objects.requireNonNull(inStreams, "streams");
+      this.released =
+        new AtomicBoolean(false);
+    }
+
+    void release()
+    {
+      if (this.released.compareAndSet(false, true)) {
+        this.streams.release();
+      }
+    }
+  }
+
+  /**
+   * The streams available for a single host.
+   */
+
+  private static final class Streams
+  {
+    private final int maximum;
+    private final ArrayDeque<CompletableFuture<Permit>> waiting;
+    private int active;
+
+    Streams(
+      final int inMaximum)
+    {
+      this.maximum = inMaximum;
+      this.waiting = new ArrayDeque<>();
+    }
+
+    CompletableFuture<Permit> acquire()
+    {
+      synchronized (this) {
+        if (this.active < this.maximum) {
+          ++this.active;
+          return CompletableFuture.completedFuture(new Permit(this));
+        }
+        final var future = new CompletableFuture<Permit>();
+        this.waiting.add(future);
+        return future;
+      }
+    }
+
+    void release()
+    {
+      final CompletableFuture<Permit> next;
+      synchronized (this) {
+        next = this.waiting.poll();
+        if (next == null) {
+          --this.active;
+          return;
+        }
+      }
+
+      /*
+       * The stream passes directly to the next waiting request, which is
+       * completed outside the lock, as completing it may send the request.
+       */
+
+      next.complete(new Permit(this));
+    }
+  }
+
+  /**
+   * A response body that releases its stream when it is closed.
+   */
+
+  private static final class PermitStream extends FilterInputStream
+  {
+    private final Permit permit;
+
+    PermitStream(
+      final InputStream inStream,
+      final Permit inPermit)
+    {
+      super(inStream);
+      this.permit =
+        Objects.requireNonNull(inPermit, "permit");
+    }
+
+    @Override
+    public void close()
+      throws IOException
+    {
+      try {
+        super.close();
+      } finally {
+        this.permit.release();
+      }
+    }
+  }
+}
@@ -5,21 +5,29 @@ import com.io7m.jproperties.JProperties;
 import com.io7m.jproperties.JPropertyException;
 import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
 import org.librarysimplified.ci.ExitException;
+import org.librarysimplified.ci.metrics.MetricsRegistry;
 import org.tomlj.Toml;
 import org.tomlj.TomlTable;
 
 import java.io.IOException;
-import java.net.http.HttpClient;
+import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.function.Function;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -28,14 +36,20 @@ public final class CheckVersions
 {
   private static final Logger LOG = Logger.getLogger("CheckVersions");
 
-  private static final Map<String, CheckVersionStatusFormatterType> FORMATTERS =
-    Stream.of(
-      new CheckVersionStatusPlainFormatter(),
-      new CheckVersionStatusSlackFormatter()
-    ).collect(Collectors.toMap(
-      CheckVersionStatusFormatterType::name,
-      Function.identity())
-    );
+  /**
+   * The available formatters. Formatters are only instantiated when selected,
+   * so that the libraries used by other formatters are not loaded.
+   */
+
+  private static final Map<String, Supplier<CheckVersionStatusFormatterType>> FORMATTERS =
+    new TreeMap<>(Map.of(
+      CheckVersionStatusNDJSONFormatter.NAME,
+      () -> new CheckVersionStatusNDJSONFormatter(),
+      CheckVersionStatusPlainFormatter.NAME,
+      () -> new CheckVersionStatusPlainFormatter(),
+      CheckVersionStatusSlackFormatter.NAME,
+      () -> new CheckVersionStatusSlackFormatter()
+    ));
 
   private CheckVersions()
   {
@@ -44,7 +58,38 @@ public final class CheckVersions
 
   public static void main(
     final String[] args)
-    throws IOException, ExitException, JPropertyException
+    throws IOException, ExitException, JPropertyException, InterruptedException
+  {
+    run(
+      CheckVersionsContext.create(),
+      Paths.get("").toAbsolutePath(),
+      args,
+      System.out
+    );
+  }
+
+  /**
+   * Run a version check.
+   *
+   * @param context          The context shared with other checks run by the
+   *                         same process
+   * @param workingDirectory The directory against which relative paths are
+   *                         resolved
+   * @param args             The command-line arguments
+   * @param out              The stream to which results are written
+   *
+   * @throws IOException          On I/O errors
+   * @throws ExitException        If the check fails
+   * @throws JPropertyException   On configuration errors
+   * @throws InterruptedException If the calling thread is interrupted
+   */
+
+  public static void run(
+    final CheckVersionsContext context,
+    final Path workingDirectory,
+    final String[] args,
+    final PrintStream out)
+    throws IOException, ExitException, JPropertyException, InterruptedException
   {
     final var parameters = new CheckVersionsParameters();
 
@@ -58,15 +103,270 @@ public final class CheckVersions
       throw new ExitException(1);
     }
 
-    final var formatter = FORMATTERS.get(parameters.formatterName);
-    if (formatter == null) {
+    final var formatterSupplier = FORMATTERS.get(parameters.formatterName);
+    if (formatterSupplier == null) {
       LOG.severe("No formatter exists with the name '" + parameters.formatterName + "'");
       LOG.severe("Existing formatters include: " + FORMATTERS.keySet());
       throw new ExitException(1);
     }
+    final var formatter = formatterSupplier.get();
+
+    if (parameters.threads < 1) {
+      LOG.severe("The thread count must be positive (got " + parameters.threads + ")");
+      throw new ExitException(1);
+    }
+    if (parameters.maxStreamsPerHost < 1) {
+      LOG.severe("The stream limit must be positive (got " + parameters.maxStreamsPerHost + ")");
+      throw new ExitException(1);
+    }
+    if (parameters.requestsPerSecond < 0.0 || parameters.requestBurst < 1) {
+      LOG.severe("The request rate must be non-negative, and the request burst must be positive");
+      throw new ExitException(1);
+    }
+    if (parameters.transitiveThreads < 1) {
+      LOG.severe("The transitive thread count must be positive (got " + parameters.transitiveThreads + ")");
+      throw new ExitException(1);
+    }
+    if (parameters.retryAttempts < 1) {
+      LOG.severe("The retry attempt count must be positive (got " + parameters.retryAttempts + ")");
+      throw new ExitException(1);
+    }
+    if (parameters.circuitBreakerThreshold < 0) {
+      LOG.severe("The circuit breaker threshold must be non-negative (got " + parameters.circuitBreakerThreshold + ")");
+      throw new ExitException(1);
+    }
+    if (parameters.connectTimeoutSeconds < 1 || parameters.requestTimeoutSeconds < 1) {
+      LOG.severe("Timeouts must be positive");
+      throw new ExitException(1);
+    }
+    if (parameters.retryBaseDelayMilliseconds < 0
+      || parameters.retryMaximumDelayMilliseconds < parameters.retryBaseDelayMilliseconds) {
+      LOG.severe("Retry delays must be non-negative, and the maximum delay must not be less than the base delay");
+      throw new ExitException(1);
+    }
+
+    if (parameters.cacheDirectory != null) {
+      parameters.cacheDirectory =
+        workingDirectory.resolve(parameters.cacheDirectory);
+    }
+    if (parameters.snapshotFile != null) {
+      parameters.snapshotFile =
+        workingDirectory.resolve(parameters.snapshotFile);
+      if (!Files.isRegularFile(parameters.snapshotFile)) {
+        LOG.severe("The snapshot file " + parameters.snapshotFile + " does not exist");
+        throw new ExitException(1);
+      }
+      if (parameters.transitive) {
+        LOG.severe("Transitive dependencies cannot be examined when using a snapshot, as snapshots do not contain POMs");
+        throw new ExitException(1);
+      }
+    }
+
+    final var metrics =
+      new CheckVersionMetrics(MetricsRegistry.create());
+    final var timeStarted = System.nanoTime();
+
+    try {
+      checkAll(context, parameters, workingDirectory, formatter, metrics, out);
+    } finally {
+      metrics.runCompleted(Duration.ofNanos(System.nanoTime() - timeStarted));
+      LOG.info("Transferred: " + metrics.transferSummary());
+      if (parameters.metricsFile != null) {
+        writeMetrics(metrics, workingDirectory.resolve(parameters.metricsFile));
+      }
+    }
+  }
+
+  /**
+   * Write metrics to the given file. The metrics are informational, so
+   * failing to write them does not fail the check.
+   */
+
+  private static void writeMetrics(
+    final CheckVersionMetrics metrics,
+    final Path file)
+  {
+    try {
+      metrics.registry().writeFile(file);
+    } catch (final IOException e) {
+      LOG.warning("Failed to write metrics to " + file + ": " + e);
+    }
+  }
+
+  private static void checkAll(
+    final CheckVersionsContext context,
+    final CheckVersionsParameters parameters,
+    final Path workingDirectory,
+    final CheckVersionStatusFormatterType formatter,
+    final CheckVersionMetrics metrics,
+    final PrintStream out)
+    throws IOException, ExitException, JPropertyException, InterruptedException
+  {
+    final var configurations =
+      configurationFilesOf(parameters, workingDirectory);
+    final var projects =
+      loadProjects(context, parameters, metrics, configurations);
+
+    /*
+     * Incremental formatters write each status as soon as it is known;
+     * other formatters write the results of each project at the end.
+     */
+
+    final var incremental =
+      formatter instanceof CheckVersionStatusIncrementalFormatterType;
+
+    final List<CheckVersionResults> results;
+    try (var engine = new CheckVersionEngine(parameters, context, metrics)) {
+      if (incremental) {
+        final var incrementalFormatter =
+          (CheckVersionStatusIncrementalFormatterType) formatter;
+        results = engine.checkProjects(projects, (project, status) -> {
+          final var projectName =
+            projects.size() > 1 ? project.name() : "";
+          final var line =
+            incrementalFormatter.formatStatus(projectName, status);
+          synchronized (out) {
+            out.println(line);
+            out.flush();
+          }
+        });
+      } else {
+        results = engine.checkProjects(projects);
+      }
+    }
+
+    var failed = false;
+    for (int index = 0; index < projects.size(); ++index) {
+      final var project = projects.get(index);
+      final var projectResults = results.get(index);
+
+      if (!incremental) {
+        if (projects.size() > 1) {
+          out.println("Project: " + project.name());
+        }
+        out.println(formatter.format(projectResults));
+      } else {
+        final var incrementalFormatter =
+          (CheckVersionStatusIncrementalFormatterType) formatter;
+        final var projectName =
+          projects.size() > 1 ? project.name() : "";
+        for (final var dependency : projectResults.transitive()) {
+          out.println(incrementalFormatter.formatTransitive(projectName, dependency));
+        }
+        out.flush();
+      }
+
+      if (projectResults.ignored().size() == projectResults.statuses().size()) {
+        LOG.severe(
+          "All libraries were ignored in " + project.name() + ". This seems like a mistake!");
+        failed = true;
+      }
+      if (!projectResults.failed().isEmpty()) {
+        failed = true;
+      }
+    }
+
+    if (failed) {
+      throw new ExitException(1);
+    }
+  }
+
+  /**
+   * Determine the configuration files given directly on the command line
+   * and listed in the manifest (if any), in that order.
+   */
+
+  static List<Path> configurationFilesOf(
+    final CheckVersionsParameters parameters,
+    final Path workingDirectory)
+    throws IOException, ExitException
+  {
+    final var configurations = new ArrayList<Path>();
+    for (final var configuration : parameters.configurationFiles) {
+      configurations.add(workingDirectory.resolve(configuration));
+    }
+
+    if (parameters.manifestFile != null) {
+      final var manifestPath = workingDirectory.resolve(parameters.manifestFile);
+      try (var stream = Files.lines(manifestPath)) {
+        stream.filter(line -> !line.startsWith("#"))
+          .filter(line -> !line.isBlank())
+          .map(String::trim)
+          .map(Paths::get)
+          .map(path -> resolveAgainstConfigPath(manifestPath, path))
+          .forEach(configurations::add);
+      }
+    }
+
+    if (configurations.isEmpty()) {
+      LOG.severe("No configuration files were provided.");
+      throw new ExitException(1);
+    }
+    return configurations;
+  }
+
+  /**
+   * Load all of the given projects. When there is more than one project,
+   * the projects are loaded in parallel, as parsing large version catalogs
+   * can be expensive.
+   */
+
+  static List<CheckVersionProject> loadProjects(
+    final CheckVersionsContext context,
+    final CheckVersionsParameters parameters,
+    final CheckVersionMetrics metrics,
+    final List<Path> configurations)
+    throws IOException, ExitException, JPropertyException, InterruptedException
+  {
+    if (configurations.size() == 1) {
+      return List.of(loadProject(context, parameters, metrics, configurations.get(0)));
+    }
 
+    final var tasks =
+      new ArrayList<Callable<CheckVersionProject>>(configurations.size());
+    for (final var configuration : configurations) {
+      tasks.add(() -> loadProject(context, parameters, metrics, configuration));
+    }
+
+    final var executor =
+      Executors.newFixedThreadPool(
+        Math.min(parameters.threads, configurations.size()));
+
+    try {
+      final var projects =
+        new ArrayList<CheckVersionProject>(configurations.size());
+      for (final var future : executor.invokeAll(tasks)) {
+        try {
+          projects.add(future.get());
+        } catch (final ExecutionException e) {
+          final var cause = e.getCause();
+          if (cause instanceof ExitException) {
+            throw (ExitException) cause;
+          }
+          if (cause instanceof IOException) {
+            throw (IOException) cause;
+          }
+          if (cause instanceof JPropertyException) {
+            throw (JPropertyException) cause;
+          }
+          throw new IllegalStateException(cause);
+        }
+      }
+      return projects;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static CheckVersionProject loadProject(
+    final CheckVersionsContext context,
+    final CheckVersionsParameters parameters,
+    final CheckVersionMetrics metrics,
+    final Path configuration)
+    throws IOException, ExitException, JPropertyException
+  {
     final var config = new Properties();
-    final var configPath = parameters.configurationFile.toAbsolutePath();
+    final var configPath = configuration.toAbsolutePath();
     try (var stream = Files.newInputStream(configPath)) {
       config.load(stream);
     }
@@ -90,35 +390,73 @@ public final class CheckVersions
     try (var stream = Files.lines(libraryListFile)) {
       checkLibraries = nonCommentedLinesOf(stream);
     }
-    final Set<String> checkRepositories;
-    try (var stream = Files.lines(libraryRepositoryFile)) {
-      checkRepositories = nonCommentedLinesOf(stream);
+    final var repositoryLines =
+      Files.readAllLines(libraryRepositoryFile);
+    final var routes =
+      CheckVersionRepositoryRoutes.parse(repositoryLines);
+
+    /*
+     * Connections to the repositories are opened while the catalog is
+     * parsed, so that the first lookups do not wait for TLS handshakes.
+     */
+
+    if (parameters.snapshotFile == null) {
+      context.transport(parameters).warmUp(routes.repositories());
     }
 
-    if (checkRepositories.isEmpty()) {
-      LOG.severe("No repositories were provided. This seems like a mistake.");
-      throw new ExitException(1);
-    }
     if (checkLibraries.isEmpty()) {
       LOG.severe("No libraries were provided. This seems like a mistake.");
       throw new ExitException(1);
     }
 
-    final var librariesToCheck =
-      parseLibraries(versionCatalogPath, checkLibraries, checkRepositories);
-    final var results =
-      performAllChecks(librariesToCheck);
+    /*
+     * A catalog only needs to be parsed again if it, or any of the inputs
+     * that affect the parsed libraries, have changed since it was last
+     * parsed in this process.
+     */
+
+    final var catalogKey =
+      List.<Object>of(
+        Files.getLastModifiedTime(versionCatalogPath),
+        Long.valueOf(Files.size(versionCatalogPath)),
+        checkLibraries,
+        repositoryLines
+      );
 
-    System.out.println(formatter.format(results));
+    final var parsed =
+      context.catalog(versionCatalogPath, catalogKey);
 
-    if (results.ignored().size() == results.statuses().size()) {
-      LOG.severe("All libraries were ignored. This seems like a mistake!");
-      throw new ExitException(1);
+    final List<CheckVersionLibrary> librariesToCheck;
+    if (parsed.isPresent()) {
+      metrics.cacheHit("catalog");
+      librariesToCheck = parsed.get();
+    } else {
+      metrics.cacheMiss("catalog");
+      final var timeStarted = System.nanoTime();
+      librariesToCheck =
+        parseLibraries(versionCatalogPath, checkLibraries, routes);
+      metrics.parsed(
+        "catalog", Duration.ofNanos(System.nanoTime() - timeStarted));
+      context.catalogParsed(versionCatalogPath, catalogKey, librariesToCheck);
     }
 
-    if (!results.failed().isEmpty()) {
-      throw new ExitException(1);
+    final Predicate<CheckVersionLibrary> shouldCheck;
+    if (parameters.changedSince != null) {
+      final var changed =
+        CheckVersionCatalogDiff.changedModules(
+          versionCatalogPath, parameters.changedSince);
+      shouldCheck = library -> {
+        return changed.contains(library.group() + ":" + library.artifact());
+      };
+    } else {
+      shouldCheck = library -> true;
     }
+
+    return new CheckVersionProject(
+      configPath.toString(),
+      librariesToCheck,
+      shouldCheck
+    );
   }
 
   private static Set<String> nonCommentedLinesOf(
@@ -142,26 +480,27 @@ public final class CheckVersions
     return versionCatalogPath;
   }
 
-  private static CheckVersionResults performAllChecks(
-    final Collection<CheckVersionLibrary> librariesToCheck)
-  {
-    final var client =
-      HttpClient.newHttpClient();
-
-    final var statuses =
-      new ArrayList<CheckVersionLibraryStatusType>(librariesToCheck.size());
-
-    for (final var library : librariesToCheck) {
-      statuses.add(library.check(client));
-    }
-
-    return new CheckVersionResults(statuses);
-  }
-
-  private static ArrayList<CheckVersionLibrary> parseLibraries(
+  /**
+   * Parse the libraries declared in the given version catalog.
+   *
+   * @param librariesPath     The version catalog
+   * @param checkLibraries    The {@code group:artifact} names of the
+   *                          libraries that should be checked; all other
+   *                          libraries are marked as ignored
+   * @param routes            The rules that determine the repositories
+   *                          checked for each library
+   *
+   * @return The libraries in the catalog
+   *
+   * @throws IOException   On I/O errors
+   * @throws ExitException If the catalog is malformed, or does not contain
+   *                       all of the libraries that should be checked
+   */
+
+  public static List<CheckVersionLibrary> parseLibraries(
     final Path librariesPath,
     final Collection<String> checkLibraries,
-    final Set<String> checkRepositories)
+    final CheckVersionRepositoryRoutes routes)
     throws IOException, ExitException
   {
     final var librariesResult =
@@ -186,7 +525,7 @@ public final class CheckVersions
       librariesToCheck.add(
         parseLibrary(
           checkLibraries,
-          checkRepositories,
+          routes,
           libraries,
           versions,
           namesLeftOver,
@@ -205,7 +544,7 @@ public final class CheckVersions
 
   private static CheckVersionLibrary parseLibrary(
     final Collection<String> checkLibraries,
-    final Set<String> checkRepositories,
+    final CheckVersionRepositoryRoutes routes,
     final TomlTable libraries,
     final TomlTable versions,
     final Set<String> namesLeftOver,
@@ -237,7 +576,7 @@ public final class CheckVersions
       group,
       artifact,
       new DefaultArtifactVersion(version),
-      checkRepositories,
+      routes.repositoriesFor(group),
       shouldIgnore
     );
   }
@@ -0,0 +1,115 @@
+package org.librarysimplified.ci.check_versions;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The state shared between successive version checks in the same process.
+ *
+ * A process that runs a single check uses a fresh context, and so shares
+ * nothing. A long-running process (see the {@code serve} command) keeps a
+ * single context for its whole lifetime, so that the transport (and its
+ * connection pool), the results of recent lookups, and parsed version
+ * catalogs are reused between checks.
+ */
+
+public final class CheckVersionsContext
+{
+  private final Optional<CheckVersionLookupMemo> lookups;
+  private final Map<Path, Map.Entry<List<Object>, List<CheckVersionLibrary>>> catalogs;
+  private final Map<List<Object>, CheckVersionTransport> transports;
+
+  private CheckVersionsContext(
+    final Optional<CheckVersionLookupMemo> inLookups)
+  {
+    this.lookups =
+      Objects.requireNonNull(inLookups, "lookups");
+    this.catalogs =
+      new ConcurrentHashMap<>();
+    this.transports =
+      new ConcurrentHashMap<>();
+  }
+
+  /**
+   * @return A context for a process that runs a single check
+   */
+
+  public static CheckVersionsContext create()
+  {
+    return new CheckVersionsContext(Optional.empty());
+  }
+
+  /**
+   * @param lookupExpiry The time for which the results of lookups are reused
+   *
+   * @return A context for a long-running process
+   */
+
+  public static CheckVersionsContext createResident(
+    final Duration lookupExpiry)
+  {
+    return new CheckVersionsContext(
+      Optional.of(new CheckVersionLookupMemo(lookupExpiry, Clock.systemUTC())));
+  }
+
+  /**
+   * Retrieve the shared transport for the connect timeout and stream limit
+   * of the given check, creating it if necessary. Checks that give the same
+   * connect timeout and stream limit share a transport (and so its
+   * connection pool); a check that gives different values gets a transport
+   * of its own.
+   *
+   * @param parameters The parameters of the check
+   *
+   * @return The transport
+   */
+
+  CheckVersionTransport transport(
+    final CheckVersionsParameters parameters)
+  {
+    final var connectTimeout =
+      Duration.ofSeconds(parameters.connectTimeoutSeconds);
+    final var maxStreamsPerHost =
+      parameters.maxStreamsPerHost;
+
+    return this.transports.computeIfAbsent(
+      List.of(connectTimeout, Integer.valueOf(maxStreamsPerHost)),
+      key -> CheckVersionTransport.create(connectTimeout, maxStreamsPerHost));
+  }
+
+  Optional<CheckVersionLookupMemo> lookups()
+  {
+    return this.lookups;
+  }
+
+  /**
+   * Retrieve the libraries previously parsed from the given catalog, if the
+   * catalog was parsed with the same inputs. Only the most recent result is
+   * kept for each catalog.
+   */
+
+  Optional<List<CheckVersionLibrary>> catalog(
+    final Path catalog,
+    final List<Object> key)
+  {
+    final var entry = this.catalogs.get(catalog);
+    if (entry != null && entry.getKey().equals(key)) {
+      return Optional.of(entry.getValue());
+    }
+    return Optional.empty();
+  }
+
+  void catalogParsed(
+    final Path catalog,
+    final List<Object> key,
+    final List<CheckVersionLibrary> libraries)
+  {
+    this.catalogs.put(catalog, Map.entry(key, List.copyOf(libraries)));
+  }
+}
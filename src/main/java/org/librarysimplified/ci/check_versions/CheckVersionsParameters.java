@@ -3,6 +3,8 @@ package org.librarysimplified.ci.check_versions;
 import com.beust.jcommander.Parameter;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The structure used to hold command-line parameters.
@@ -11,10 +13,16 @@ import java.nio.file.Path;
 public final class CheckVersionsParameters
 {
   @Parameter(
-    required = true,
+    required = false,
     names = "--configuration",
-    description = "The configuration file")
-  Path configurationFile;
+    description = "A configuration file (may be specified multiple times to check several projects at once)")
+  List<Path> configurationFiles = new ArrayList<>();
+
+  @Parameter(
+    required = false,
+    names = "--manifest",
+    description = "A file listing configuration files, one per line, to be checked in addition to any given with --configuration")
+  Path manifestFile;
 
   @Parameter(
     required = false,
@@ -22,6 +30,132 @@ public final class CheckVersionsParameters
     description = "The formatter to use to display results")
   String formatterName = CheckVersionStatusPlainFormatter.formatterName();
 
+  @Parameter(
+    required = false,
+    names = "--threads",
+    description = "The maximum number of libraries to check concurrently")
+  int threads = 8;
+
+  @Parameter(
+    required = false,
+    names = "--changedSince",
+    description = "Check only the libraries whose version catalog entries changed between the given git revision and HEAD")
+  String changedSince;
+
+  @Parameter(
+    required = false,
+    names = "--raceRepositories",
+    description = "Query all repositories at once (earlier repositories in the list still take precedence)")
+  boolean raceRepositories;
+
+  @Parameter(
+    required = false,
+    names = "--cacheDirectory",
+    description = "The directory used to cache repository metadata and misses between runs (caching is disabled if not specified)")
+  Path cacheDirectory;
+
+  @Parameter(
+    required = false,
+    names = "--cacheExpirySeconds",
+    description = "The time after which cached metadata that has not been revalidated is evicted")
+  long cacheExpirySeconds = 604800L;
+
+  @Parameter(
+    required = false,
+    names = "--cacheMaximumSize",
+    description = "The maximum size in bytes of the metadata cache")
+  long cacheMaximumSize = 67108864L;
+
+  @Parameter(
+    required = false,
+    names = "--negativeCacheExpirySeconds",
+    description = "The time for which a repository that does not contain an artifact is skipped without being asked again")
+  long negativeCacheExpirySeconds = 86400L;
+
+  @Parameter(
+    required = false,
+    names = "--connectTimeoutSeconds",
+    description = "The maximum time to wait for a connection to a repository to be established")
+  long connectTimeoutSeconds = 10L;
+
+  @Parameter(
+    required = false,
+    names = "--requestTimeoutSeconds",
+    description = "The maximum time to wait for a response from a repository")
+  long requestTimeoutSeconds = 30L;
+
+  @Parameter(
+    required = false,
+    names = "--retryAttempts",
+    description = "The maximum number of attempts made for each repository request (including the first)")
+  int retryAttempts = 3;
+
+  @Parameter(
+    required = false,
+    names = "--retryBaseDelayMilliseconds",
+    description = "The delay before the first retry (later retries back off exponentially, with random jitter)")
+  long retryBaseDelayMilliseconds = 250L;
+
+  @Parameter(
+    required = false,
+    names = "--retryMaximumDelayMilliseconds",
+    description = "The maximum delay before any retry (a request is not retried if the server asks for a longer delay)")
+  long retryMaximumDelayMilliseconds = 10000L;
+
+  @Parameter(
+    required = false,
+    names = "--circuitBreakerThreshold",
+    description = "The number of timeouts or server errors after which a repository is skipped for the rest of the run (0 disables the circuit breaker)")
+  int circuitBreakerThreshold = 5;
+
+  @Parameter(
+    required = false,
+    names = "--maxStreamsPerHost",
+    description = "The maximum number of requests in flight to each repository host")
+  int maxStreamsPerHost = 16;
+
+  @Parameter(
+    required = false,
+    names = "--requestsPerSecond",
+    description = "The maximum rate of requests to each repository host (0 disables rate limiting); the rate is lowered automatically when a host asks for requests to slow down")
+  double requestsPerSecond = 50.0;
+
+  @Parameter(
+    required = false,
+    names = "--requestBurst",
+    description = "The number of requests that may be sent to a host at once before the rate limit applies")
+  int requestBurst = 16;
+
+  @Parameter(
+    required = false,
+    names = "--snapshot",
+    description = "Look up releases in a snapshot produced by the prefetch command, instead of in the repositories")
+  Path snapshotFile;
+
+  @Parameter(
+    required = false,
+    names = "--failFast",
+    description = "Stop checking as soon as any library is found to be out-of-date or fails the check, and report only the libraries checked so far")
+  boolean failFast;
+
+  @Parameter(
+    required = false,
+    names = "--transitive",
+    description = "Also fetch the POM of each checked library, walk its dependencies, and report the transitive dependencies that are out-of-date")
+  boolean transitive;
+
+  @Parameter(
+    required = false,
+    names = "--transitiveThreads",
+    description = "The number of POMs to fetch at once when walking transitive dependencies")
+  int transitiveThreads = 16;
+
+  @Parameter(
+    required = false,
+    names = "--metricsFile",
+    description = "A file to which metrics about the run are written in the Prometheus text format")
+  Path metricsFile;
+
   public CheckVersionsParameters()
   {
 
@@ -0,0 +1,397 @@
+package org.librarysimplified.ci.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * A set of metrics collected during a single run of a command, written out
+ * in the Prometheus text exposition format. Written to a file with a
+ * {@code .prom} suffix in the directory watched by the node exporter's
+ * textfile collector, the metrics of the most recent run are published
+ * alongside the runner's other metrics.
+ *
+ * Metrics are identified by name and labels, and are created when first
+ * used. All methods are safe to call from multiple threads.
+ */
+
+public final class MetricsRegistry
+{
+  /**
+   * The upper bounds of the histogram buckets, in seconds. These are the
+   * default buckets of the Prometheus client libraries.
+   */
+
+  private static final double[] BUCKETS = {
+    0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1.0, 2.5, 5.0, 10.0,
+  };
+
+  private final ConcurrentHashMap<String, Family> families;
+
+  private MetricsRegistry()
+  {
+    this.families = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * @return A new, empty registry
+   */
+
+  public static MetricsRegistry create()
+  {
+    return new MetricsRegistry();
+  }
+
+  /**
+   * Add to a counter.
+   *
+   * @param name   The metric name
+   * @param help   The metric description
+   * @param labels The labels that identify the series
+   * @param amount The (non-negative) amount to add
+   */
+
+  public void counterAdd(
+    final String name,
+    final String help,
+    final Map<String, String> labels,
+    final double amount)
+  {
+    if (amount < 0.0) {
+      throw new IllegalArgumentException(
+        String.format("Counter %s cannot be decreased (%f)", name, amount));
+    }
+    this.familyOf(name, help, Type.COUNTER)
+      .scalarOf(labels)
+      .add(amount);
+  }
+
+  /**
+   * Set a gauge.
+   *
+   * @param name   The metric name
+   * @param help   The metric description
+   * @param labels The labels that identify the series
+   * @param value  The value
+   */
+
+  public void gaugeSet(
+    final String name,
+    final String help,
+    final Map<String, String> labels,
+    final double value)
+  {
+    this.familyOf(name, help, Type.GAUGE)
+      .scalarOf(labels)
+      .set(value);
+  }
+
+  /**
+   * Record an observation, such as a duration in seconds, in a histogram.
+   *
+   * @param name   The metric name
+   * @param help   The metric description
+   * @param labels The labels that identify the series
+   * @param value  The observed value
+   */
+
+  public void observe(
+    final String name,
+    final String help,
+    final Map<String, String> labels,
+    final double value)
+  {
+    this.familyOf(name, help, Type.HISTOGRAM)
+      .histogramOf(labels)
+      .observe(value);
+  }
+
+  private Family familyOf(
+    final String name,
+    final String help,
+    final Type type)
+  {
+    final var family =
+      this.families.computeIfAbsent(name, n -> new Family(n, help, type));
+    if (family.type != type) {
+      throw new IllegalStateException(
+        String.format(
+          "Metric %s is a %s, not a %s",
+          name,
+          family.type.text,
+          type.text));
+    }
+    return family;
+  }
+
+  /**
+   * @return The metrics in the Prometheus text exposition format
+   */
+
+  public String show()
+  {
+    final var text = new StringBuilder(4096);
+    for (final var family : new TreeMap<>(this.families).values()) {
+      family.show(text);
+    }
+    return text.toString();
+  }
+
+  /**
+   * Write the metrics to the given file. The file is replaced atomically,
+   * so that a collector never reads a partially written file, and is made
+   * readable by other users, so that a collector running as a different
+   * user can read it.
+   *
+   * @param file The output file
+   *
+   * @throws IOException On I/O errors
+   */
+
+  public void writeFile(
+    final Path file)
+    throws IOException
+  {
+    final var absolute = file.toAbsolutePath();
+    final var directory = absolute.getParent();
+    Files.createDirectories(directory);
+
+    final var temporary =
+      Files.createTempFile(directory, absolute.getFileName().toString(), ".tmp");
+    try {
+      Files.writeString(temporary, this.show(), StandardCharsets.UTF_8);
+      if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+        Files.setPosixFilePermissions(
+          temporary, PosixFilePermissions.fromString("rw-r--r--"));
+      }
+      Files.move(temporary, absolute, ATOMIC_MOVE, REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  private enum Type
+  {
+    COUNTER("counter"),
+    GAUGE("gauge"),
+    HISTOGRAM("histogram");
+
+    private final String text;
+
+    Type(
+      final String inText)
+    {
+      this.text = inText;
+    }
+  }
+
+  private static final class Family
+  {
+    private final String name;
+    private final String help;
+    private final Type type;
+    private final ConcurrentHashMap<Map<String, String>, Object> series;
+
+    Family(
+      final String inName,
+      final String inHelp,
+      final Type inType)
+    {
+      this.name =
+        Objects.requireNonNull(inName, "name");
+      this.help =
+        Objects.requireNonNull(inHelp, "help");
+      this.type =
+        Objects.requireNonNull(inType, "type");
+      this.series =
+        new ConcurrentHashMap<>();
+    }
+
+    Scalar scalarOf(
+      final Map<String, String> labels)
+    {
+      return (Scalar) this.series.computeIfAbsent(
+        new TreeMap<>(labels), k -> new Scalar());
+    }
+
+    Histogram histogramOf(
+      final Map<String, String> labels)
+    {
+      return (Histogram) this.series.computeIfAbsent(
+        new TreeMap<>(labels), k -> new Histogram());
+    }
+
+    void show(
+      final StringBuilder text)
+    {
+      text.append("# HELP ")
+        .append(this.name)
+        .append(' ')
+        .append(this.help.replace("\\", "\\\\").replace("\n", "\\n"))
+        .append('\n');
+      text.append("# TYPE ")
+        .append(this.name)
+        .append(' ')
+        .append(this.type.text)
+        .append('\n');
+
+      final var sorted =
+        new TreeMap<String, Map.Entry<Map<String, String>, Object>>();
+      for (final var entry : this.series.entrySet()) {
+        sorted.put(labelsText(entry.getKey(), null, null), entry);
+      }
+
+      for (final var entry : sorted.values()) {
+        final var labels = entry.getKey();
+        final var value = entry.getValue();
+        if (value instanceof Histogram) {
+          ((Histogram) value).show(this.name, labels, text);
+        } else {
+          text.append(this.name)
+            .append(labelsText(labels, null, null))
+            .append(' ')
+            .append(numberText(((Scalar) value).get()))
+            .append('\n');
+        }
+      }
+    }
+  }
+
+  private static final class Scalar
+  {
+    private double value;
+
+    Scalar()
+    {
+
+    }
+
+    synchronized void add(
+      final double amount)
+    {
+      this.value += amount;
+    }
+
+    synchronized void set(
+      final double newValue)
+    {
+      this.value = newValue;
+    }
+
+    synchronized double get()
+    {
+      return this.value;
+    }
+  }
+
+  private static final class Histogram
+  {
+    private final long[] counts;
+    private long count;
+    private double sum;
+
+    Histogram()
+    {
+      this.counts = new long[BUCKETS.length];
+    }
+
+    synchronized void observe(
+      final double value)
+    {
+      for (int index = 0; index < BUCKETS.length; ++index) {
+        if (value <= BUCKETS[index]) {
+          ++this.counts[index];
+        }
+      }
+      ++this.count;
+      this.sum += value;
+    }
+
+    synchronized void show(
+      final String name,
+      final Map<String, String> labels,
+      final StringBuilder text)
+    {
+      for (int index = 0; index < BUCKETS.length; ++index) {
+        text.append(name)
+          .append("_bucket")
+          .append(labelsText(labels, "le", numberText(BUCKETS[index])))
+          .append(' ')
+          .append(this.counts[index])
+          .append('\n');
+      }
+      text.append(name)
+        .append("_bucket")
+        .append(labelsText(labels, "le", "+Inf"))
+        .append(' ')
+        .append(this.count)
+        .append('\n');
+      text.append(name)
+        .append("_sum")
+        .append(labelsText(labels, null, null))
+        .append(' ')
+        .append(numberText(this.sum))
+        .append('\n');
+      text.append(name)
+        .append("_count")
+        .append(labelsText(labels, null, null))
+        .append(' ')
+        .append(this.count)
+        .append('\n');
+    }
+  }
+
+  private static String labelsText(
+    final Map<String, String> labels,
+    final String extraName,
+    final String extraValue)
+  {
+    final var pairs = new ArrayList<String>(labels.size() + 1);
+    for (final var entry : labels.entrySet()) {
+      pairs.add(labelText(entry.getKey(), entry.getValue()));
+    }
+    if (extraName != null) {
+      pairs.add(labelText(extraName, extraValue));
+    }
+    if (pairs.isEmpty()) {
+      return "";
+    }
+    return "{" + String.join(",", pairs) + "}";
+  }
+
+  private static String labelText(
+    final String name,
+    final String value)
+  {
+    return name
+      + "=\""
+      + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")
+      + "\"";
+  }
+
+  private static String numberText(
+    final double value)
+  {
+    if (Double.isNaN(value)) {
+      return "NaN";
+    }
+    if (Double.isInfinite(value)) {
+      return value > 0.0 ? "+Inf" : "-Inf";
+    }
+    if (value == Math.rint(value) && Math.abs(value) < 1.0e15) {
+      return Long.toString((long) value);
+    }
+    return Double.toString(value);
+  }
+}
@@ -0,0 +1,5 @@
+/**
+ * CI tools (Metrics).
+ */
+
+package org.librarysimplified.ci.metrics;
@@ -0,0 +1,530 @@
+package org.librarysimplified.ci.serve;
+
+import com.beust.jcommander.JCommander;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.librarysimplified.ci.ExitException;
+import org.librarysimplified.ci.check_commits_since.CheckCommitsSince;
+import org.librarysimplified.ci.check_commits_since.CheckCommitsSinceContext;
+import org.librarysimplified.ci.check_versions.CheckVersions;
+import org.librarysimplified.ci.check_versions.CheckVersionsContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * A long-running process that runs checks on behalf of the CI scripts.
+ *
+ * The process listens on a local port, and accepts {@code POST} requests to
+ * {@code /check-versions} and {@code /check-commits-since}. The body of a
+ * request holds the command-line arguments of the check, one per line, and
+ * the {@code X-Working-Directory} header gives the directory against which
+ * relative paths are resolved. The body of the response holds the output
+ * of the check, the {@code X-Exit-Code} header holds the exit code that the
+ * check would have had if it had been run in its own process, and each
+ * {@code X-Log} header holds a message logged during the check.
+ *
+ * Checks can run arbitrary file operations as the user running the process
+ * (such as writing {@code --metricsFile}), so only clients that can read
+ * the user's files are served. At startup, the process writes a random
+ * token to a file that only the user can read, and rejects any request
+ * whose {@code X-Token} header does not hold that token with {@code 403}.
+ * Every response carries the SHA-256 checksum of the jar file from which
+ * the process was started in {@code X-Jar-SHA256}. A request that gives a
+ * different checksum in its own {@code X-Jar-SHA256} header is rejected
+ * with {@code 409}, so that clients never use a daemon started from
+ * another version of the tools.
+ *
+ * Checks are run one at a time, in the order they are received. Each kind
+ * of check keeps a context for the lifetime of the process, so that HTTP
+ * connections, the results of recent lookups, parsed version catalogs, and
+ * open git repositories are reused between checks.
+ */
+
+public final class Serve implements AutoCloseable
+{
+  private static final Logger LOG = Logger.getLogger("Serve");
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final CheckVersionsContext versionsContext;
+  private final CheckCommitsSinceContext commitsContext;
+  private final CountDownLatch closed;
+  private final Path tokenFile;
+  private final byte[] token;
+  private final String jarChecksum;
+
+  private Serve(
+    final HttpServer inServer,
+    final ExecutorService inExecutor,
+    final CheckVersionsContext inVersionsContext,
+    final CheckCommitsSinceContext inCommitsContext,
+    final Path inTokenFile,
+    final byte[] inToken,
+    final String inJarChecksum)
+  {
+    this.server = inServer;
+    this.executor = inExecutor;
+    this.versionsContext = inVersionsContext;
+    this.commitsContext = inCommitsContext;
+    this.tokenFile = inTokenFile;
+    this.token = inToken;
+    this.jarChecksum = inJarChecksum;
+    this.closed = new CountDownLatch(1);
+  }
+
+  public static void main(
+    final String[] args)
+    throws Exception
+  {
+    final var serve = start(args);
+    Runtime.getRuntime().addShutdownHook(new Thread(serve::close));
+    serve.closed.await();
+  }
+
+  /**
+   * Start a server.
+   *
+   * @param args The command-line arguments
+   *
+   * @return The running server
+   *
+   * @throws IOException   On I/O errors
+   * @throws ExitException If the arguments are invalid
+   */
+
+  public static Serve start(
+    final String[] args)
+    throws IOException, ExitException
+  {
+    final var parameters = new ServeParameters();
+
+    try {
+      JCommander.newBuilder()
+        .addObject(parameters)
+        .build()
+        .parse(args);
+    } catch (final Exception e) {
+      LOG.severe("Error parsing arguments: " + e.getMessage());
+      throw new ExitException(1);
+    }
+
+    if (parameters.lookupExpirySeconds < 0L) {
+      LOG.severe("The lookup expiry time must be non-negative (got " + parameters.lookupExpirySeconds + ")");
+      throw new ExitException(1);
+    }
+
+    final var server =
+      HttpServer.create(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), parameters.port),
+        16);
+
+    final var tokenFile =
+      parameters.tokenFile != null
+        ? parameters.tokenFile.toAbsolutePath()
+        : Paths.get(System.getProperty("user.home"), ".cache", "ci-tools")
+        .resolve(String.format("daemon-%d.token", server.getAddress().getPort()));
+
+    final var token = newToken();
+    try {
+      writeToken(tokenFile, token);
+    } catch (final IOException e) {
+      server.stop(0);
+      LOG.severe("Failed to write the token file " + tokenFile + ": " + e);
+      throw new ExitException(1);
+    }
+
+    final var executor =
+      Executors.newSingleThreadExecutor(runnable -> {
+        final var thread = new Thread(runnable);
+        thread.setName("Serve");
+        return thread;
+      });
+
+    final var serve =
+      new Serve(
+        server,
+        executor,
+        CheckVersionsContext.createResident(
+          Duration.ofSeconds(parameters.lookupExpirySeconds)),
+        CheckCommitsSinceContext.createResident(),
+        tokenFile,
+        token.getBytes(StandardCharsets.US_ASCII),
+        checksumOfJar()
+      );
+
+    server.setExecutor(executor);
+    server.createContext("/check-versions", exchange -> {
+      serve.handle(exchange, "/check-versions", (workingDirectory, arguments, out) -> {
+        CheckVersions.run(serve.versionsContext, workingDirectory, arguments, out);
+      });
+    });
+    server.createContext("/check-commits-since", exchange -> {
+      serve.handle(exchange, "/check-commits-since", (workingDirectory, arguments, out) -> {
+        CheckCommitsSince.run(serve.commitsContext, workingDirectory, arguments, out);
+      });
+    });
+    server.start();
+
+    LOG.info("Listening on " + server.getAddress());
+    LOG.info("Token written to " + tokenFile);
+    return serve;
+  }
+
+  private static String newToken()
+  {
+    final var bytes = new byte[32];
+    new SecureRandom().nextBytes(bytes);
+    return hexOf(bytes);
+  }
+
+  /**
+   * Write the token to a file that only the current user can read. The
+   * file is written to a temporary file (which is created readable only by
+   * its owner) and then moved into place, so that clients never see a
+   * partially written token.
+   */
+
+  private static void writeToken(
+    final Path file,
+    final String token)
+    throws IOException
+  {
+    final var directory = file.getParent();
+    if (!Files.isDirectory(directory)) {
+      if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+        Files.createDirectories(
+          directory,
+          PosixFilePermissions.asFileAttribute(
+            PosixFilePermissions.fromString("rwx------")));
+      } else {
+        Files.createDirectories(directory);
+      }
+    }
+
+    final var temporary =
+      Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+    try {
+      Files.writeString(temporary, token + "\n", StandardCharsets.US_ASCII);
+      if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+        Files.setPosixFilePermissions(
+          temporary, PosixFilePermissions.fromString("rw-------"));
+      }
+      Files.move(temporary, file, ATOMIC_MOVE, REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * @return The SHA-256 checksum of the jar file from which this class was
+   * loaded, or an empty string if the class was not loaded from a jar file
+   */
+
+  private static String checksumOfJar()
+  {
+    try {
+      final var source = Serve.class.getProtectionDomain().getCodeSource();
+      if (source == null) {
+        return "";
+      }
+      final var path = Paths.get(source.getLocation().toURI());
+      if (!Files.isRegularFile(path)) {
+        return "";
+      }
+
+      final var digest = MessageDigest.getInstance("SHA-256");
+      try (var stream = Files.newInputStream(path)) {
+        final var buffer = new byte[65536];
+        while (true) {
+          final var count = stream.read(buffer);
+          if (count == -1) {
+            break;
+          }
+          digest.update(buffer, 0, count);
+        }
+      }
+      return hexOf(digest.digest());
+    } catch (final IOException | URISyntaxException | NoSuchAlgorithmException
+                   | SecurityException | IllegalArgumentException e) {
+      LOG.warning("Could not determine the checksum of the jar file: " + e);
+      return "";
+    }
+  }
+
+  private static String hexOf(
+    final byte[] bytes)
+  {
+    final var text = new StringBuilder(bytes.length * 2);
+    for (final var b : bytes) {
+      text.append(String.format("%02x", Integer.valueOf(b & 0xff)));
+    }
+    return text.toString();
+  }
+
+  /**
+   * @return The port on which the server is listening
+   */
+
+  public int port()
+  {
+    return this.server.getAddress().getPort();
+  }
+
+  /**
+   * @return The file holding the token that clients must present
+   */
+
+  public Path tokenFile()
+  {
+    return this.tokenFile;
+  }
+
+  /**
+   * @return The SHA-256 checksum of the jar file from which the server was
+   * started, or an empty string if it was not started from a jar file
+   */
+
+  public String jarChecksum()
+  {
+    return this.jarChecksum;
+  }
+
+  private boolean isAuthorized(
+    final String presented)
+  {
+    if (presented == null) {
+      return false;
+    }
+    return MessageDigest.isEqual(
+      this.token, presented.trim().getBytes(StandardCharsets.US_ASCII));
+  }
+
+  /**
+   * Reject a request without reading its body. The connection is closed,
+   * as the unread body would otherwise be taken as the next request.
+   */
+
+  private static void reject(
+    final HttpExchange exchange,
+    final int statusCode)
+    throws IOException
+  {
+    exchange.getResponseHeaders().add("Connection", "close");
+    exchange.sendResponseHeaders(statusCode, -1L);
+  }
+
+  private void handle(
+    final HttpExchange exchange,
+    final String path,
+    final CommandType command)
+    throws IOException
+  {
+    try {
+      final var requestHeaders = exchange.getRequestHeaders();
+      if (!this.isAuthorized(requestHeaders.getFirst("X-Token"))) {
+        reject(exchange, 403);
+        return;
+      }
+
+      exchange.getResponseHeaders().add("X-Jar-SHA256", this.jarChecksum);
+      final var expectedChecksum =
+        requestHeaders.getFirst("X-Jar-SHA256");
+      if (expectedChecksum != null
+        && !expectedChecksum.trim().equalsIgnoreCase(this.jarChecksum)) {
+        reject(exchange, 409);
+        return;
+      }
+
+      if (!path.equals(exchange.getRequestURI().getPath())) {
+        exchange.sendResponseHeaders(404, -1L);
+        return;
+      }
+      if (!"POST".equals(exchange.getRequestMethod())) {
+        exchange.sendResponseHeaders(405, -1L);
+        return;
+      }
+
+      final var directoryName =
+        requestHeaders.getFirst("X-Working-Directory");
+      if (directoryName == null || !Paths.get(directoryName).isAbsolute()) {
+        exchange.sendResponseHeaders(400, -1L);
+        return;
+      }
+
+      final var workingDirectory = Paths.get(directoryName);
+      final var body =
+        new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+
+      final var output = new ByteArrayOutputStream();
+      final var messages = new ArrayList<String>();
+      final var capture = new CapturingHandler(messages);
+      final var root = Logger.getLogger("");
+
+      int exitCode = 0;
+      root.addHandler(capture);
+      try (var out = new PrintStream(output, true, StandardCharsets.UTF_8)) {
+        final var arguments =
+          argumentsOf(workingDirectory, body);
+        command.run(workingDirectory, arguments, out);
+      } catch (final ExitException e) {
+        exitCode = e.exitCode();
+      } catch (final Exception e) {
+        LOG.severe(path + ": " + e);
+        exitCode = 1;
+      } finally {
+        root.removeHandler(capture);
+      }
+
+      final var headers = exchange.getResponseHeaders();
+      headers.add("Content-Type", "text/plain; charset=UTF-8");
+      headers.add("X-Exit-Code", Integer.toString(exitCode));
+      for (final var message : messages) {
+        headers.add("X-Log", message);
+      }
+
+      final var data = output.toByteArray();
+      exchange.sendResponseHeaders(200, data.length == 0 ? -1L : (long) data.length);
+      if (data.length > 0) {
+        exchange.getResponseBody().write(data);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Split the request body into arguments. As on the command line, an
+   * argument of the form {@code @file} is replaced by the lines of the named
+   * file.
+   */
+
+  private static String[] argumentsOf(
+    final Path workingDirectory,
+    final String body)
+    throws IOException
+  {
+    final var arguments = new ArrayList<String>();
+    for (final var line : body.split("\n")) {
+      final var argument = line.replace("\r", "");
+      if (argument.isEmpty()) {
+        continue;
+      }
+      if (argument.startsWith("@")) {
+        final var file = workingDirectory.resolve(argument.substring(1));
+        for (final var fileLine : Files.readAllLines(file)) {
+          final var trimmed = fileLine.trim();
+          if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+            arguments.add(trimmed);
+          }
+        }
+        continue;
+      }
+      arguments.add(argument);
+    }
+    return arguments.toArray(new String[0]);
+  }
+
+  @Override
+  public void close()
+  {
+    if (this.closed.getCount() == 0L) {
+      return;
+    }
+
+    this.server.stop(0);
+    this.executor.shutdownNow();
+    this.commitsContext.close();
+
+    try {
+      Files.deleteIfExists(this.tokenFile);
+    } catch (final IOException e) {
+      LOG.warning("Failed to delete the token file " + this.tokenFile + ": " + e);
+    }
+    this.closed.countDown();
+  }
+
+  private interface CommandType
+  {
+    void run(
+      Path workingDirectory,
+      String[] arguments,
+      PrintStream out)
+      throws Exception;
+  }
+
+  /**
+   * A log handler that collects the messages logged during a single check,
+   * so that they can be returned to the client.
+   */
+
+  private static final class CapturingHandler extends Handler
+  {
+    private final List<String> messages;
+    private final SimpleFormatter formatter;
+
+    CapturingHandler(
+      final List<String> inMessages)
+    {
+      this.messages = inMessages;
+      this.formatter = new SimpleFormatter();
+    }
+
+    @Override
+    public void publish(
+      final LogRecord record)
+    {
+      if (!this.isLoggable(record)) {
+        return;
+      }
+
+      final var text =
+        String.format(
+          "%s: %s",
+          record.getLevel(),
+          this.formatter.formatMessage(record));
+
+      synchronized (this.messages) {
+        this.messages.add(text.replace('\r', ' ').replace('\n', ' '));
+      }
+    }
+
+    @Override
+    public void flush()
+    {
+
+    }
+
+    @Override
+    public void close()
+    {
+
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package org.librarysimplified.ci.serve;
+
+import com.beust.jcommander.Parameter;
+
+import java.nio.file.Path;
+
+/**
+ * The structure used to hold command-line parameters.
+ */
+
+public final class ServeParameters
+{
+  @Parameter(
+    required = false,
+    names = "--port",
+    description = "The local port on which to listen (0 selects any free port)")
+  int port = 9150;
+
+  @Parameter(
+    required = false,
+    names = "--lookupExpirySeconds",
+    description = "The time for which the result of looking up an artifact is reused by later checks")
+  long lookupExpirySeconds = 300L;
+
+  @Parameter(
+    required = false,
+    names = "--tokenFile",
+    description = "The file to which the token that clients must present is written (by default, daemon-<port>.token in ~/.cache/ci-tools)")
+  Path tokenFile;
+
+  public ServeParameters()
+  {
+
+  }
+}
@@ -0,0 +1,5 @@
+/**
+ * CI tools (Resident check daemon).
+ */
+
+package org.librarysimplified.ci.serve;
@@ -12,12 +12,14 @@ import org.librarysimplified.ci.ExitException;
 import org.librarysimplified.ci.check_commits_since.CheckCommitsSince;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.logging.Logger;
 
 import static org.joda.time.Instant.now;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public final class CheckCommitsSinceTest
 {
@@ -314,6 +316,69 @@ public final class CheckCommitsSinceTest
     });
   }
 
+  /**
+   * Metrics about the run are written to the metrics file, even when the
+   * check fails.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testMetricsWritten()
+    throws Exception
+  {
+    try (var git = Git.init()
+      .setDirectory(this.directory.toFile())
+      .setGitDir(this.directoryGit.toFile())
+      .setInitialBranch("develop")
+      .call()) {
+      LOG.info("created " + this.directoryGit);
+      final var commit0 =
+        commitOnDate(git, date("2021-01-01T00:00:00Z"), "Message 0");
+      tagOnDate(git, date("2021-01-02T00:00:00Z"), commit0, "tag0");
+
+      final var commit1 =
+        commitOnDate(git, date("2021-01-03T00:00:00Z"), "Message 1");
+      tagOnDate(git, date("2021-01-04T00:00:00Z"), commit1, "tag1");
+
+      commitOnDate(git, date("2021-01-05T00:00:00Z"), "Message 2");
+      commitOnDate(git, date("2021-01-06T00:00:00Z"), "Message 3");
+    }
+
+    final var metricsFile =
+      this.directory.resolve("check-commits-since.prom");
+
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckCommitsSince.main(new String[]{
+          "--project",
+          "Somewhere/Else",
+          "--branch",
+          "develop",
+          "--repository",
+          this.directoryGit.toString(),
+          "--releaseDaysMaximum",
+          "14",
+          "--releaseCommitCount",
+          "2",
+          "--metricsFile",
+          metricsFile.toString()
+        });
+      });
+    assertEquals(1, ex.exitCode());
+
+    final var labels = "{branch=\"develop\",project=\"Somewhere/Else\"}";
+    final var metrics = Files.readString(metricsFile);
+    assertTrue(metrics.contains(
+      "ci_check_commits_since_tags" + labels + " 2\n"));
+    assertTrue(metrics.contains(
+      "ci_check_commits_since_commits" + labels + " 2\n"));
+    assertTrue(metrics.contains(
+      "ci_check_commits_since_commits_visited" + labels + " 3\n"));
+    assertTrue(metrics.contains(
+      "ci_check_commits_since_walk_duration_seconds" + labels + " "));
+  }
+
   private static Instant date(
     final String text)
   {
@@ -1,20 +1,44 @@
 package org.librarysimplified.ci.tests;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.librarysimplified.ci.check_versions.CheckVersionPrefetch;
 import org.librarysimplified.ci.check_versions.CheckVersions;
+import org.librarysimplified.ci.check_versions.CheckVersionsContext;
 import org.librarysimplified.ci.ExitException;
 import org.mockserver.integration.ClientAndServer;
+import org.mockserver.matchers.Times;
+import org.mockserver.verify.VerificationTimes;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.librarysimplified.ci.tests.TestDirectories.resourceBytesOf;
@@ -563,6 +587,192 @@ public final class CheckVersionsTest
     this.server0.verify(request().withPath("/a/b/maven-metadata.xml"));
   }
 
+  /**
+   * Checking libraries one at a time produces the same results as checking
+   * them concurrently.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibrariesOutOfDateSingleThread()
+    throws Exception
+  {
+    this.writeVersionsFile("moreVersions.toml");
+
+    Files.writeString(
+      this.libraryListPath,
+      "x:y\n" +
+        "y:z\n" +
+        "a:b\n");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseTooOld.xml"
+      );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+    this.server0
+      .when(request().withPath("/y/z/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+    this.server0
+      .when(request().withPath("/a/b/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.main(new String[]{
+          "--configuration",
+          this.configPath.toString(),
+          "--threads",
+          "1"
+        });
+      });
+    assertEquals(1, ex.exitCode());
+
+    this.server0.verify(request().withPath("/x/y/maven-metadata.xml"));
+    this.server0.verify(request().withPath("/y/z/maven-metadata.xml"));
+    this.server0.verify(request().withPath("/a/b/maven-metadata.xml"));
+  }
+
+  /**
+   * Libraries checked concurrently are reported in catalog order, exactly
+   * as they are when checked one at a time, however the lookups happen to
+   * complete.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibrariesOutOfDateConcurrentOrder()
+    throws Exception
+  {
+    Files.writeString(
+      this.tomlPath,
+      "[versions]\n" +
+        "ab = \"1.0.0\"\n" +
+        "xy = \"1.0.0\"\n" +
+        "yz = \"1.0.0\"\n" +
+        "\n" +
+        "[libraries]\n" +
+        "ab = { module = \"a:b\", version.ref = \"ab\" }\n" +
+        "xy = { module = \"x:y\", version.ref = \"xy\" }\n" +
+        "yz = { module = \"y:z\", version.ref = \"yz\" }\n");
+
+    Files.writeString(
+      this.libraryListPath,
+      "a:b\n" +
+        "x:y\n" +
+        "y:z\n");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseTooOld.xml"
+      );
+
+    /*
+     * Earlier libraries take longer to look up, so that the concurrent
+     * lookups complete in the reverse of catalog order.
+     */
+
+    this.server0
+      .when(request().withPath("/a/b/maven-metadata.xml"))
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(200))
+                 .withDelay(TimeUnit.MILLISECONDS, 900L)
+                 .withBody(versionText));
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(200))
+                 .withDelay(TimeUnit.MILLISECONDS, 450L)
+                 .withBody(versionText));
+    this.server0
+      .when(request().withPath("/y/z/maven-metadata.xml"))
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(200))
+                 .withBody(versionText));
+
+    final var outputs = new ArrayList<String>();
+    for (final var threads : List.of("1", "3")) {
+      final var output = new ByteArrayOutputStream();
+      final var ex =
+        assertThrows(ExitException.class, () -> {
+          CheckVersions.run(
+            CheckVersionsContext.create(),
+            this.directory,
+            new String[]{
+              "--configuration",
+              this.configPath.toString(),
+              "--threads",
+              threads
+            },
+            new PrintStream(output, true, "UTF-8")
+          );
+        });
+      assertEquals(1, ex.exitCode());
+      outputs.add(output.toString("UTF-8"));
+    }
+
+    final var rows = new ArrayList<String>();
+    for (final var line : outputs.get(1).split("\n")) {
+      final var cells = line.split("[\\u2502\\u2551|]");
+      if (cells.length > 2 && line.contains("1.0.0")) {
+        rows.add(cells[1].trim() + ":" + cells[2].trim());
+      }
+    }
+    assertEquals(List.of("a:b", "x:y", "y:z"), rows, outputs.get(1));
+    assertEquals(outputs.get(0), outputs.get(1));
+  }
+
+  /**
+   * The command-line tool fails if a nonsensical thread count is provided.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testThreadCountInvalid()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.main(new String[]{
+          "--configuration",
+          this.configPath.toString(),
+          "--threads",
+          "0"
+        });
+      });
+    assertEquals(1, ex.exitCode());
+  }
+
   private void writeVersionsFile(
     final String name)
     throws IOException
@@ -832,6 +1042,2972 @@ public final class CheckVersionsTest
     this.server1.verify(request().withPath("/x/y/maven-metadata.xml"));
   }
 
+  /**
+   * A library is found if it exists on at least one of the repositories,
+   * when all repositories are queried at once.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibraryOnSecondRepositoryOKRacing()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/\n" +
+        "http://127.0.0.1:10001/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(404)));
+    this.server1
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+
+    CheckVersions.main(new String[]{
+      "--configuration",
+      this.configPath.toString(),
+      "--raceRepositories"
+    });
+
+    this.server0.verify(request().withPath("/x/y/maven-metadata.xml"));
+    this.server1.verify(request().withPath("/x/y/maven-metadata.xml"));
+  }
+
+  /**
+   * When all repositories are queried at once, the first repository in the
+   * list takes precedence over later repositories.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibraryRacingPrecedence()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/\n" +
+        "http://127.0.0.1:10001/"
+    );
+
+    final var versionOK =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+    final var versionTooOld =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseTooOld.xml"
+      );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionOK));
+    this.server1
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionTooOld));
+
+    CheckVersions.main(new String[]{
+      "--configuration",
+      this.configPath.toString(),
+      "--raceRepositories"
+    });
+
+    this.server0.verify(request().withPath("/x/y/maven-metadata.xml"));
+  }
+
+  /**
+   * Cached metadata is revalidated with a conditional request, and a
+   * "not modified" response is answered from the cache.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibraryCacheRevalidated()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+
+    this.server0
+      .when(request()
+              .withPath("/x/y/maven-metadata.xml")
+              .withHeader("If-None-Match", "\"abc\""))
+      .respond(response().withStatusCode(Integer.valueOf(304)));
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(200))
+                 .withHeader("ETag", "\"abc\"")
+                 .withBody(versionText));
+
+    final var cacheDirectory = this.directory.resolve("cache");
+    for (int index = 0; index < 2; ++index) {
+      CheckVersions.main(new String[]{
+        "--configuration",
+        this.configPath.toString(),
+        "--cacheDirectory",
+        cacheDirectory.toString()
+      });
+    }
+
+    this.server0.verify(
+      request()
+        .withPath("/x/y/maven-metadata.xml")
+        .withHeader("If-None-Match", "\"abc\""),
+      VerificationTimes.once()
+    );
+  }
+
+  /**
+   * Cached metadata is evicted when it is older than the cache expiry time.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibraryCacheExpired()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(200))
+                 .withHeader("ETag", "\"abc\"")
+                 .withBody(versionText));
+
+    final var cacheDirectory = this.directory.resolve("cache");
+    for (int index = 0; index < 2; ++index) {
+      CheckVersions.main(new String[]{
+        "--configuration",
+        this.configPath.toString(),
+        "--cacheDirectory",
+        cacheDirectory.toString(),
+        "--cacheExpirySeconds",
+        "0"
+      });
+    }
+
+    this.server0.verify(
+      request()
+        .withPath("/x/y/maven-metadata.xml")
+        .withHeader("If-None-Match", "\"abc\""),
+      VerificationTimes.never()
+    );
+
+    try (var files = Files.list(cacheDirectory)) {
+      assertEquals(0L, files.count());
+    }
+  }
+
+  /**
+   * Multiple catalog aliases for the same module result in a single request.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibraryAliasesDeduplicated()
+    throws Exception
+  {
+    this.writeVersionsFile("aliasedVersions.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+
+    CheckVersions.main(new String[]{
+      "--configuration",
+      this.configPath.toString()
+    });
+
+    this.server0.verify(
+      request().withPath("/x/y/maven-metadata.xml"),
+      VerificationTimes.once()
+    );
+  }
+
+  /**
+   * Only the release element directly within the versioning element is
+   * considered, and namespaced metadata is accepted.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibraryOKNamespaced()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseNamespaced.xml"
+      );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+
+    CheckVersions.main(new String[]{
+      "--configuration",
+      this.configPath.toString()
+    });
+
+    this.server0.verify(request().withPath("/x/y/maven-metadata.xml"));
+  }
+
+  /**
+   * Server errors are retried up to the configured number of attempts.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibraryServerErrorRetried()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(500)));
+
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.main(new String[]{
+          "--configuration",
+          this.configPath.toString(),
+          "--retryAttempts",
+          "3",
+          "--retryBaseDelayMilliseconds",
+          "1"
+        });
+      });
+    assertEquals(1, ex.exitCode());
+
+    this.server0.verify(
+      request().withPath("/x/y/maven-metadata.xml"),
+      VerificationTimes.exactly(3)
+    );
+  }
+
+  /**
+   * A library check succeeds if a retry succeeds after the server asks
+   * clients to slow down.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibraryThrottledRecovers()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"), Times.once())
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(429))
+                 .withHeader("Retry-After", "0"));
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+
+    CheckVersions.main(new String[]{
+      "--configuration",
+      this.configPath.toString(),
+      "--retryBaseDelayMilliseconds",
+      "1"
+    });
+
+    this.server0.verify(
+      request().withPath("/x/y/maven-metadata.xml"),
+      VerificationTimes.exactly(2)
+    );
+  }
+
+  /**
+   * A {@code Retry-After} header given as an HTTP date is honoured.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibraryThrottledRetryAfterDate()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+
+    final var retryAt =
+      ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(3L);
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"), Times.once())
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(503))
+                 .withHeader(
+                   "Retry-After",
+                   DateTimeFormatter.RFC_1123_DATE_TIME.format(retryAt)));
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+
+    final var timeStarted = System.nanoTime();
+    CheckVersions.main(new String[]{
+      "--configuration",
+      this.configPath.toString(),
+      "--retryBaseDelayMilliseconds",
+      "1",
+      "--retryMaximumDelayMilliseconds",
+      "10000"
+    });
+    final var elapsed = Duration.ofNanos(System.nanoTime() - timeStarted);
+
+    this.server0.verify(
+      request().withPath("/x/y/maven-metadata.xml"),
+      VerificationTimes.exactly(2)
+    );
+    assertTrue(
+      elapsed.toMillis() >= 1_500L,
+      "Retry waited for the date given, took " + elapsed);
+  }
+
+  /**
+   * A request is not retried if the server asks for a longer delay than the
+   * maximum retry delay, even with rate limiting turned off.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibraryThrottledRetryAfterTooLong()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"), Times.once())
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(429))
+                 .withHeader("Retry-After", "60"));
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+
+    final var timeStarted = System.nanoTime();
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.main(new String[]{
+          "--configuration",
+          this.configPath.toString(),
+          "--requestsPerSecond",
+          "0",
+          "--retryBaseDelayMilliseconds",
+          "1",
+          "--retryMaximumDelayMilliseconds",
+          "1000"
+        });
+      });
+    final var elapsed = Duration.ofNanos(System.nanoTime() - timeStarted);
+
+    assertEquals(1, ex.exitCode());
+    this.server0.verify(
+      request().withPath("/x/y/maven-metadata.xml"),
+      VerificationTimes.once()
+    );
+    assertTrue(
+      elapsed.toMillis() < 30_000L,
+      "Did not wait for the delay given, took " + elapsed);
+  }
+
+  /**
+   * A library check fails if the server does not respond in time.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibraryRequestTimeout()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(200))
+                 .withDelay(TimeUnit.SECONDS, 3L)
+                 .withBody(versionText));
+
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.main(new String[]{
+          "--configuration",
+          this.configPath.toString(),
+          "--requestTimeoutSeconds",
+          "1",
+          "--retryAttempts",
+          "1"
+        });
+      });
+    assertEquals(1, ex.exitCode());
+  }
+
+  /**
+   * A non-positive retry attempt count is rejected.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRetryAttemptsInvalid()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.main(new String[]{
+          "--configuration",
+          this.configPath.toString(),
+          "--retryAttempts",
+          "0"
+        });
+      });
+    assertEquals(1, ex.exitCode());
+  }
+
+  /**
+   * A repository is skipped for the remaining libraries once its circuit
+   * breaker opens.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRepositoryCircuitBreakerOpens()
+    throws Exception
+  {
+    this.writeVersionsFile("moreVersions.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y\ny:z\na:b");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    this.server0
+      .when(request())
+      .respond(response().withStatusCode(Integer.valueOf(503)));
+
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.main(new String[]{
+          "--configuration",
+          this.configPath.toString(),
+          "--threads",
+          "1",
+          "--retryAttempts",
+          "1",
+          "--circuitBreakerThreshold",
+          "1"
+        });
+      });
+    assertEquals(1, ex.exitCode());
+
+    this.server0.verify(request(), VerificationTimes.once());
+  }
+
+  /**
+   * A repository is never skipped if the circuit breaker is disabled.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRepositoryCircuitBreakerDisabled()
+    throws Exception
+  {
+    this.writeVersionsFile("moreVersions.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y\ny:z\na:b");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    this.server0
+      .when(request())
+      .respond(response().withStatusCode(Integer.valueOf(503)));
+
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.main(new String[]{
+          "--configuration",
+          this.configPath.toString(),
+          "--threads",
+          "1",
+          "--retryAttempts",
+          "1",
+          "--circuitBreakerThreshold",
+          "0"
+        });
+      });
+    assertEquals(1, ex.exitCode());
+
+    this.server0.verify(request(), VerificationTimes.exactly(3));
+  }
+
+  /**
+   * A repository that is known not to contain an artifact is not asked
+   * again on later runs.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibraryKnownMissSkipped()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/\n" +
+        "http://127.0.0.1:10001/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(404)));
+    this.server1
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+
+    final var cacheDirectory = this.directory.resolve("cache");
+    for (int index = 0; index < 2; ++index) {
+      CheckVersions.main(new String[]{
+        "--configuration",
+        this.configPath.toString(),
+        "--cacheDirectory",
+        cacheDirectory.toString()
+      });
+    }
+
+    this.server0.verify(
+      request().withPath("/x/y/maven-metadata.xml"),
+      VerificationTimes.once()
+    );
+    this.server1.verify(
+      request().withPath("/x/y/maven-metadata.xml"),
+      VerificationTimes.exactly(2)
+    );
+  }
+
+  /**
+   * Misses saved by another process while a check is running are kept when
+   * the check saves its own misses.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibraryKnownMissesMerged()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/\n" +
+        "http://127.0.0.1:10001/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(404)));
+    this.server1
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(200))
+                 .withDelay(TimeUnit.SECONDS, 2L)
+                 .withBody(versionText));
+
+    final var cacheDirectory = this.directory.resolve("cache");
+    final var executor = Executors.newSingleThreadExecutor();
+    try {
+      final var check = executor.submit(() -> {
+        CheckVersions.main(new String[]{
+          "--configuration",
+          this.configPath.toString(),
+          "--cacheDirectory",
+          cacheDirectory.toString()
+        });
+        return null;
+      });
+
+      Thread.sleep(1_000L);
+
+      final var other =
+        String.join("\t", "http://127.0.0.1:10000/", "a", "b", Instant.now().toString());
+      Files.writeString(cacheDirectory.resolve("misses.tsv"), other + "\n");
+
+      check.get(60L, TimeUnit.SECONDS);
+
+      final var lines =
+        Files.readAllLines(cacheDirectory.resolve("misses.tsv"));
+      assertEquals(2, lines.size(), lines.toString());
+      assertTrue(lines.contains(other), lines.toString());
+      assertTrue(
+        lines.stream().anyMatch(l -> l.startsWith("http://127.0.0.1:10000/\tx\ty\t")),
+        lines.toString());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Libraries are checked against the repositories routed to their group
+   * prefix, and other libraries use the default repositories.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRepositoryRoutes()
+    throws Exception
+  {
+    this.writeVersionsFile("moreVersions.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y\ny:z\na:b");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/\n" +
+        "\n" +
+        "# Everything in the y group lives on the second server.\n" +
+        "[y]\n" +
+        "http://127.0.0.1:10001/\n"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+
+    this.server0
+      .when(request())
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+    this.server1
+      .when(request())
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+
+    CheckVersions.main(new String[]{
+      "--configuration",
+      this.configPath.toString()
+    });
+
+    this.server0.verify(
+      request().withPath("/x/y/maven-metadata.xml"),
+      VerificationTimes.once());
+    this.server0.verify(
+      request().withPath("/a/b/maven-metadata.xml"),
+      VerificationTimes.once());
+    this.server0.verify(
+      request().withPath("/y/z/maven-metadata.xml"),
+      VerificationTimes.never());
+    this.server1.verify(
+      request().withPath("/y/z/maven-metadata.xml"),
+      VerificationTimes.once());
+    this.server1.verify(
+      request().withPath("/x/y/maven-metadata.xml"),
+      VerificationTimes.never());
+  }
+
+  /**
+   * Malformed repository sections are rejected.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRepositoryRoutesMalformed()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/\n" +
+        "[x\n" +
+        "http://127.0.0.1:10001/\n"
+    );
+
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.main(new String[]{
+          "--configuration",
+          this.configPath.toString()
+        });
+      });
+    assertEquals(1, ex.exitCode());
+  }
+
+  /**
+   * Only libraries whose catalog entries changed since the base revision
+   * are checked when an incremental check is requested.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibrariesChangedSince()
+    throws Exception
+  {
+    this.writeVersionsFile("moreVersions.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y\ny:z\na:b");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+
+    this.server0
+      .when(request())
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+
+    final var author =
+      new PersonIdent("Author", "author@example.com");
+
+    try (var git = Git.init()
+      .setDirectory(this.directory.toFile())
+      .call()) {
+      git.add()
+        .addFilepattern(this.tomlPath.getFileName().toString())
+        .call();
+      git.commit()
+        .setAuthor(author)
+        .setCommitter(author)
+        .setMessage("Initial catalog")
+        .call();
+      git.tag()
+        .setName("base")
+        .setAnnotated(false)
+        .call();
+
+      Files.writeString(
+        this.tomlPath,
+        Files.readString(this.tomlPath)
+          .replace("yz = \"1.0.0\"", "yz = \"1.0.1\""));
+
+      git.add()
+        .addFilepattern(this.tomlPath.getFileName().toString())
+        .call();
+      git.commit()
+        .setAuthor(author)
+        .setCommitter(author)
+        .setMessage("Update y:z")
+        .call();
+    }
+
+    CheckVersions.main(new String[]{
+      "--configuration",
+      this.configPath.toString(),
+      "--changedSince",
+      "base"
+    });
+
+    this.server0.verify(
+      request().withPath("/y/z/maven-metadata.xml"),
+      VerificationTimes.once());
+    this.server0.verify(
+      request().withPath("/x/y/maven-metadata.xml"),
+      VerificationTimes.never());
+    this.server0.verify(
+      request().withPath("/a/b/maven-metadata.xml"),
+      VerificationTimes.never());
+  }
+
+  /**
+   * An incremental check fails if the base revision does not exist.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibrariesChangedSinceUnknownRevision()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var author =
+      new PersonIdent("Author", "author@example.com");
+
+    try (var git = Git.init()
+      .setDirectory(this.directory.toFile())
+      .call()) {
+      git.add()
+        .addFilepattern(this.tomlPath.getFileName().toString())
+        .call();
+      git.commit()
+        .setAuthor(author)
+        .setCommitter(author)
+        .setMessage("Initial catalog")
+        .call();
+    }
+
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.main(new String[]{
+          "--configuration",
+          this.configPath.toString(),
+          "--changedSince",
+          "nonexistent"
+        });
+      });
+    assertEquals(1, ex.exitCode());
+  }
+
+  /**
+   * Several projects can be checked at once, and artifacts shared between
+   * projects are only looked up once.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testProjectsBatch()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var otherDirectory = this.directory.resolve("other");
+    Files.createDirectories(otherDirectory);
+    resourceOf(CheckVersionsTest.class, otherDirectory, "moreVersions.toml");
+    Files.writeString(
+      otherDirectory.resolve("libraryList.txt"), "x:y\ny:z");
+    Files.writeString(
+      otherDirectory.resolve("libraryRepositoryList.txt"),
+      "http://127.0.0.1:10000/"
+    );
+
+    final var otherConfig = new Properties();
+    otherConfig.setProperty(
+      "versionCatalogFile", "moreVersions.toml");
+    otherConfig.setProperty(
+      "libraryListFile", "libraryList.txt");
+    otherConfig.setProperty(
+      "libraryRepositoryFile", "libraryRepositoryList.txt");
+
+    try (var output = Files.newOutputStream(
+      otherDirectory.resolve("checkVersion.properties"))) {
+      otherConfig.store(output, "");
+    }
+
+    final var manifest = this.directory.resolve("manifest.txt");
+    Files.writeString(
+      manifest,
+      "# Paths are relative to the manifest.\n" +
+        "other/checkVersion.properties\n"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+
+    this.server0
+      .when(request())
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+
+    CheckVersions.main(new String[]{
+      "--configuration",
+      this.configPath.toString(),
+      "--manifest",
+      manifest.toString()
+    });
+
+    this.server0.verify(
+      request().withPath("/x/y/maven-metadata.xml"),
+      VerificationTimes.once());
+    this.server0.verify(
+      request().withPath("/y/z/maven-metadata.xml"),
+      VerificationTimes.once());
+  }
+
+  /**
+   * At least one configuration file must be provided.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testProjectsNone()
+    throws Exception
+  {
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.main(new String[]{
+          "--threads",
+          "1"
+        });
+      });
+    assertEquals(1, ex.exitCode());
+  }
+
+  /**
+   * Metrics about the run are written to the metrics file.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testMetricsWritten()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(200))
+                 .withBody(versionText));
+
+    final var metricsFile =
+      this.directory.resolve("metrics").resolve("check-versions.prom");
+
+    CheckVersions.main(new String[]{
+      "--configuration",
+      this.configPath.toString(),
+      "--metricsFile",
+      metricsFile.toString()
+    });
+
+    final var metrics = Files.readString(metricsFile);
+    assertTrue(metrics.contains(
+      "# TYPE ci_check_versions_requests_total counter\n"));
+    assertTrue(metrics.contains(
+      "ci_check_versions_requests_total{repository=\"http://127.0.0.1:10000/\",status=\"200\"} 1\n"));
+    assertTrue(metrics.contains(
+      "ci_check_versions_response_bytes_total{repository=\"http://127.0.0.1:10000/\"} "
+        + versionText.length + "\n"));
+    assertTrue(metrics.contains(
+      "ci_check_versions_lookup_duration_seconds_count{library=\"x:y\"} 1\n"));
+    assertTrue(metrics.contains(
+      "ci_check_versions_lookup_duration_seconds_bucket{library=\"x:y\",le=\"+Inf\"} 1\n"));
+    assertTrue(metrics.contains(
+      "ci_check_versions_parse_duration_seconds_count{document=\"catalog\"} 1\n"));
+    assertTrue(metrics.contains(
+      "ci_check_versions_run_duration_seconds "));
+  }
+
+  /**
+   * Metrics are written even when the check fails.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testMetricsWrittenOnFailure()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(404)));
+
+    final var metricsFile =
+      this.directory.resolve("check-versions.prom");
+
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.main(new String[]{
+          "--configuration",
+          this.configPath.toString(),
+          "--metricsFile",
+          metricsFile.toString()
+        });
+      });
+    assertEquals(1, ex.exitCode());
+
+    final var metrics = Files.readString(metricsFile);
+    assertTrue(metrics.contains(
+      "ci_check_versions_requests_total{repository=\"http://127.0.0.1:10000/\",status=\"404\"} 1\n"));
+  }
+
+  /**
+   * The ndjson formatter writes one JSON object per library.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testFormatterNDJSON()
+    throws Exception
+  {
+    this.writeVersionsFile("moreVersions.toml");
+
+    Files.writeString(
+      this.libraryListPath,
+      "x:y\n" +
+        "y:z\n");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseTooOld.xml"
+      );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+    this.server0
+      .when(request().withPath("/y/z/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(404)));
+
+    final var output = new ByteArrayOutputStream();
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.run(
+          CheckVersionsContext.create(),
+          this.directory,
+          new String[]{
+            "--configuration",
+            this.configPath.toString(),
+            "--formatter",
+            "ndjson"
+          },
+          new PrintStream(output, true, "UTF-8")
+        );
+      });
+    assertEquals(1, ex.exitCode());
+
+    final var mapper = new ObjectMapper();
+    final var records = new HashMap<String, JsonNode>();
+    for (final var line : output.toString("UTF-8").split("\n")) {
+      final var record = mapper.readTree(line);
+      records.put(
+        record.get("group").asText() + ":" + record.get("artifact").asText(),
+        record);
+    }
+    assertEquals(3, records.size());
+
+    final var xy = records.get("x:y");
+    assertEquals("1.0.0", xy.get("current").asText());
+    assertEquals("1.1.1", xy.get("available").asText());
+    assertEquals("out-of-date", xy.get("status").asText());
+    assertEquals("http://127.0.0.1:10000/", xy.get("repository").asText());
+    assertEquals(1, xy.get("attempts").asInt());
+    assertTrue(xy.get("timings").has("lookupMilliseconds"));
+    assertTrue(xy.get("timings").has("elapsedMilliseconds"));
+    assertTrue(!xy.has("project"));
+
+    final var yz = records.get("y:z");
+    assertEquals("unavailable", yz.get("status").asText());
+    assertTrue(yz.get("available").isNull());
+
+    final var ab = records.get("a:b");
+    assertEquals("ignored", ab.get("status").asText());
+  }
+
+  /**
+   * In fail-fast mode, the first out-of-date library cancels the remaining
+   * checks, and a partial report is printed.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testFailFast()
+    throws Exception
+  {
+    this.writeVersionsFile("moreVersions.toml");
+
+    Files.writeString(
+      this.libraryListPath,
+      "x:y\n" +
+        "y:z\n");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseTooOld.xml"
+      );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+    this.server0
+      .when(request().withPath("/y/z/maven-metadata.xml"))
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(200))
+                 .withDelay(TimeUnit.SECONDS, 20L)
+                 .withBody(versionText));
+
+    final var output = new ByteArrayOutputStream();
+    final var timeStarted = System.nanoTime();
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.run(
+          CheckVersionsContext.create(),
+          this.directory,
+          new String[]{
+            "--configuration",
+            this.configPath.toString(),
+            "--failFast"
+          },
+          new PrintStream(output, true, "UTF-8")
+        );
+      });
+    assertEquals(1, ex.exitCode());
+
+    final var elapsed =
+      TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - timeStarted);
+    assertTrue(elapsed < 10L, "Elapsed " + elapsed);
+
+    final var text = output.toString("UTF-8");
+    assertTrue(text.contains("Newer version 1.1.1 is available"), text);
+    assertTrue(text.contains(
+      "1 libraries were checked. 1 libraries were ignored. "
+        + "1 libraries were not checked, as the check was cancelled."), text);
+  }
+
+  /**
+   * In fail-fast mode, a project whose checks were all cancelled by a
+   * failure in another project is not reported as up-to-date.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testFailFastProjectCancelled()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var otherDirectory = this.directory.resolve("other");
+    Files.createDirectories(otherDirectory);
+    resourceOf(CheckVersionsTest.class, otherDirectory, "moreVersions.toml");
+    Files.writeString(
+      otherDirectory.resolve("libraryList.txt"), "a:b");
+    Files.writeString(
+      otherDirectory.resolve("libraryRepositoryList.txt"),
+      "http://127.0.0.1:10000/"
+    );
+
+    final var otherConfig = new Properties();
+    otherConfig.setProperty(
+      "versionCatalogFile", "moreVersions.toml");
+    otherConfig.setProperty(
+      "libraryListFile", "libraryList.txt");
+    otherConfig.setProperty(
+      "libraryRepositoryFile", "libraryRepositoryList.txt");
+
+    final var otherConfigPath =
+      otherDirectory.resolve("checkVersion.properties");
+    try (var output = Files.newOutputStream(otherConfigPath)) {
+      otherConfig.store(output, "");
+    }
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseTooOld.xml"
+      );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+    this.server0
+      .when(request().withPath("/a/b/maven-metadata.xml"))
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(200))
+                 .withDelay(TimeUnit.SECONDS, 20L)
+                 .withBody(versionText));
+
+    final var output = new ByteArrayOutputStream();
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.run(
+          CheckVersionsContext.create(),
+          this.directory,
+          new String[]{
+            "--configuration",
+            this.configPath.toString(),
+            "--configuration",
+            otherConfigPath.toString(),
+            "--failFast"
+          },
+          new PrintStream(output, true, "UTF-8")
+        );
+      });
+    assertEquals(1, ex.exitCode());
+
+    final var text = output.toString("UTF-8");
+    final var other =
+      text.substring(text.indexOf("Project: " + otherConfigPath));
+    assertTrue(other.contains(
+      "The check was cancelled before all of the libraries were checked!"), text);
+    assertFalse(other.contains("up-to-date"), text);
+  }
+
+  /**
+   * Libraries can be checked against a mirror on the local file system, in
+   * which case no requests are made to later repositories.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLocalRepositoryMirror()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    final var mirror = this.directory.resolve("mirror");
+    final var artifactDirectory = mirror.resolve("x").resolve("y");
+    Files.createDirectories(artifactDirectory);
+    Files.write(
+      artifactDirectory.resolve("maven-metadata.xml"),
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      ));
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      mirror.toUri() + "\nhttp://127.0.0.1:10000/\n"
+    );
+
+    CheckVersions.main(new String[]{
+      "--configuration",
+      this.configPath.toString()
+    });
+
+    this.server0.verify(
+      request().withPath("/x/y/maven-metadata.xml"),
+      VerificationTimes.never());
+  }
+
+  /**
+   * In a local repository maintained by Maven, the greatest release among
+   * the metadata files of all remote repositories is used.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLocalRepositoryMaven()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    final var repository = this.directory.resolve("m2");
+    final var artifactDirectory = repository.resolve("x").resolve("y");
+    Files.createDirectories(artifactDirectory);
+    Files.write(
+      artifactDirectory.resolve("maven-metadata-central.xml"),
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      ));
+    Files.write(
+      artifactDirectory.resolve("maven-metadata-google.xml"),
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseTooOld.xml"
+      ));
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      repository.toUri().toString()
+    );
+
+    final var output = new ByteArrayOutputStream();
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.run(
+          CheckVersionsContext.create(),
+          this.directory,
+          new String[]{
+            "--configuration",
+            this.configPath.toString()
+          },
+          new PrintStream(output, true, "UTF-8")
+        );
+      });
+    assertEquals(1, ex.exitCode());
+
+    final var text = output.toString("UTF-8");
+    assertTrue(text.contains("Newer version 1.1.1 is available"), text);
+  }
+
+  /**
+   * In a local repository maintained by Maven, metadata files without a
+   * release (such as those written for locally installed snapshots) are
+   * ignored.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLocalRepositoryMavenSnapshotOnly()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    final var repository = this.directory.resolve("m2");
+    final var artifactDirectory = repository.resolve("x").resolve("y");
+    Files.createDirectories(artifactDirectory);
+    Files.write(
+      artifactDirectory.resolve("maven-metadata-central.xml"),
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseTooOld.xml"
+      ));
+    Files.writeString(
+      artifactDirectory.resolve("maven-metadata-local.xml"),
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+        "<metadata>\n" +
+        "  <groupId>x</groupId>\n" +
+        "  <artifactId>y</artifactId>\n" +
+        "  <versioning>\n" +
+        "    <versions>\n" +
+        "      <version>2.0.0-SNAPSHOT</version>\n" +
+        "    </versions>\n" +
+        "    <lastUpdated>20210101000000</lastUpdated>\n" +
+        "  </versioning>\n" +
+        "</metadata>\n");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      repository.toUri().toString()
+    );
+
+    final var output = new ByteArrayOutputStream();
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.run(
+          CheckVersionsContext.create(),
+          this.directory,
+          new String[]{
+            "--configuration",
+            this.configPath.toString()
+          },
+          new PrintStream(output, true, "UTF-8")
+        );
+      });
+    assertEquals(1, ex.exitCode());
+
+    final var text = output.toString("UTF-8");
+    assertTrue(text.contains("Newer version 1.1.1 is available"), text);
+  }
+
+  /**
+   * Artifacts missing from a local repository are looked up in the next
+   * repository.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLocalRepositoryMissing()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    final var mirror = this.directory.resolve("mirror");
+    Files.createDirectories(mirror);
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      mirror.toUri() + "\nhttp://127.0.0.1:10000/\n"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+
+    CheckVersions.main(new String[]{
+      "--configuration",
+      this.configPath.toString(),
+      "--raceRepositories"
+    });
+
+    this.server0.verify(
+      request().withPath("/x/y/maven-metadata.xml"),
+      VerificationTimes.once());
+  }
+
+  /**
+   * Local repositories must be absolute.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLocalRepositoryRelative()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "file:mirror/"
+    );
+
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.main(new String[]{
+          "--configuration",
+          this.configPath.toString()
+        });
+      });
+    assertEquals(1, ex.exitCode());
+  }
+
+  /**
+   * A snapshot written by the prefetch command contains every library in
+   * the catalog, and can be checked against without contacting any
+   * repository.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testPrefetchSnapshot()
+    throws Exception
+  {
+    this.writeVersionsFile("moreVersions.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y\n");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        resourceBytesOf(
+          CheckVersionsTest.class,
+          this.directory,
+          "basicVersionResponseTooOld.xml")));
+    this.server0
+      .when(request().withPath("/y/z/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        resourceBytesOf(
+          CheckVersionsTest.class,
+          this.directory,
+          "basicVersionResponseOK.xml")));
+    this.server0
+      .when(request().withPath("/a/b/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(404)));
+
+    final var snapshot = this.directory.resolve("snapshot.bin");
+    final var prefetchOutput = new ByteArrayOutputStream();
+    CheckVersionPrefetch.run(
+      CheckVersionsContext.create(),
+      this.directory,
+      new String[]{
+        "--configuration",
+        this.configPath.toString(),
+        "--output",
+        "snapshot.bin"
+      },
+      new PrintStream(prefetchOutput, true, "UTF-8")
+    );
+    assertTrue(Files.isRegularFile(snapshot));
+    assertTrue(
+      prefetchOutput.toString("UTF-8").contains("Wrote 2 of 3 libraries"),
+      prefetchOutput.toString("UTF-8"));
+
+    Files.writeString(
+      this.libraryListPath, "y:z\n");
+    CheckVersions.main(new String[]{
+      "--configuration",
+      this.configPath.toString(),
+      "--snapshot",
+      snapshot.toString()
+    });
+
+    Files.writeString(
+      this.libraryListPath, "x:y\ny:z\n");
+    final var checkOutput = new ByteArrayOutputStream();
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.run(
+          CheckVersionsContext.create(),
+          this.directory,
+          new String[]{
+            "--configuration",
+            this.configPath.toString(),
+            "--snapshot",
+            snapshot.toString()
+          },
+          new PrintStream(checkOutput, true, "UTF-8")
+        );
+      });
+    assertEquals(1, ex.exitCode());
+    assertTrue(
+      checkOutput.toString("UTF-8").contains("Newer version 1.1.1 is available"),
+      checkOutput.toString("UTF-8"));
+
+    Files.writeString(
+      this.libraryListPath, "a:b\n");
+    assertThrows(ExitException.class, () -> {
+      CheckVersions.main(new String[]{
+        "--configuration",
+        this.configPath.toString(),
+        "--snapshot",
+        snapshot.toString()
+      });
+    });
+
+    this.server0.verify(
+      request().withPath("/x/y/maven-metadata.xml"),
+      VerificationTimes.once());
+    this.server0.verify(
+      request().withPath("/y/z/maven-metadata.xml"),
+      VerificationTimes.once());
+  }
+
+  /**
+   * Checking against a snapshot that does not exist fails.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testPrefetchSnapshotMissing()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.main(new String[]{
+          "--configuration",
+          this.configPath.toString(),
+          "--snapshot",
+          this.directory.resolve("nonexistent.bin").toString()
+        });
+      });
+    assertEquals(1, ex.exitCode());
+  }
+
+  /**
+   * A host that asks the client to slow down has its rate lowered, and the
+   * state of its rate limiter is recorded.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRateLimitThrottled()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"), Times.once())
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(429))
+                 .withHeader("Retry-After", "1"));
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+
+    final var metricsFile =
+      this.directory.resolve("check-versions.prom");
+
+    final var timeStarted = System.nanoTime();
+    CheckVersions.main(new String[]{
+      "--configuration",
+      this.configPath.toString(),
+      "--retryBaseDelayMilliseconds",
+      "1",
+      "--metricsFile",
+      metricsFile.toString()
+    });
+    final var elapsed = Duration.ofNanos(System.nanoTime() - timeStarted);
+    assertTrue(elapsed.toMillis() >= 1000L, "Waited " + elapsed);
+
+    final var metrics = Files.readString(metricsFile);
+    assertTrue(metrics.contains(
+      "ci_check_versions_rate_limit_throttled_total{host=\"127.0.0.1:10000\"} 1\n"));
+    assertTrue(metrics.contains(
+      "ci_check_versions_rate_limit_requests_per_second{host=\"127.0.0.1:10000\"} "));
+    assertFalse(metrics.contains(
+      "ci_check_versions_rate_limit_requests_per_second{host=\"127.0.0.1:10000\"} 50\n"));
+  }
+
+  /**
+   * A burst of requests that are all throttled together halves the rate
+   * once, rather than once for each throttled request.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRateLimitThrottledBurst()
+    throws Exception
+  {
+    this.writeVersionsFile("moreVersions.toml");
+
+    Files.writeString(
+      this.libraryListPath,
+      "x:y\n" +
+        "y:z\n" +
+        "a:b\n");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+
+    for (final var path : List.of("/x/y", "/y/z", "/a/b")) {
+      this.server0
+        .when(request().withPath(path + "/maven-metadata.xml"), Times.once())
+        .respond(response()
+                   .withStatusCode(Integer.valueOf(429))
+                   .withHeader("Retry-After", "0"));
+      this.server0
+        .when(request().withPath(path + "/maven-metadata.xml"))
+        .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+          versionText));
+    }
+
+    final var metricsFile =
+      this.directory.resolve("check-versions.prom");
+
+    CheckVersions.main(new String[]{
+      "--configuration",
+      this.configPath.toString(),
+      "--requestsPerSecond",
+      "50",
+      "--retryBaseDelayMilliseconds",
+      "1",
+      "--metricsFile",
+      metricsFile.toString()
+    });
+
+    final var metrics = Files.readString(metricsFile);
+    assertTrue(metrics.contains(
+      "ci_check_versions_rate_limit_throttled_total{host=\"127.0.0.1:10000\"} 3\n"),
+      metrics);
+
+    final var prefix =
+      "ci_check_versions_rate_limit_requests_per_second{host=\"127.0.0.1:10000\"} ";
+    final var rate =
+      metrics.lines()
+        .filter(line -> line.startsWith(prefix))
+        .map(line -> Double.valueOf(line.substring(prefix.length())))
+        .findFirst()
+        .orElseThrow();
+
+    assertTrue(rate.doubleValue() >= 25.0, "Rate " + rate);
+    assertTrue(rate.doubleValue() < 50.0, "Rate " + rate);
+  }
+
+  /**
+   * Requests to a host are spaced out once the burst has been used.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRateLimitSpacesRequests()
+    throws Exception
+  {
+    this.writeVersionsFile("moreVersions.toml");
+
+    Files.writeString(
+      this.libraryListPath,
+      "x:y\n" +
+        "y:z\n" +
+        "a:b\n");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseTooOld.xml"
+      );
+
+    this.server0
+      .when(request())
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+
+    final var metricsFile =
+      this.directory.resolve("check-versions.prom");
+
+    final var timeStarted = System.nanoTime();
+    assertThrows(ExitException.class, () -> {
+      CheckVersions.main(new String[]{
+        "--configuration",
+        this.configPath.toString(),
+        "--requestsPerSecond",
+        "4",
+        "--requestBurst",
+        "1",
+        "--metricsFile",
+        metricsFile.toString()
+      });
+    });
+    final var elapsed = Duration.ofNanos(System.nanoTime() - timeStarted);
+    assertTrue(elapsed.toMillis() >= 450L, "Waited " + elapsed);
+
+    this.server0.verify(request(), VerificationTimes.exactly(3));
+
+    final var metrics = Files.readString(metricsFile);
+    assertTrue(metrics.contains(
+      "ci_check_versions_rate_limit_wait_seconds_total{host=\"127.0.0.1:10000\"} "));
+  }
+
+  /**
+   * A negative request rate is rejected.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testRateLimitInvalid()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.main(new String[]{
+          "--configuration",
+          this.configPath.toString(),
+          "--requestsPerSecond",
+          "-1"
+        });
+      });
+    assertEquals(1, ex.exitCode());
+  }
+
+  /**
+   * Compressed responses are asked for, and decompressed.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibraryCompressedGzip()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+
+    final var compressed = new ByteArrayOutputStream();
+    try (var output = new GZIPOutputStream(compressed)) {
+      output.write(versionText);
+    }
+
+    this.server0
+      .when(request()
+              .withPath("/x/y/maven-metadata.xml")
+              .withHeader("Accept-Encoding", "gzip, deflate"))
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(200))
+                 .withHeader("Content-Encoding", "gzip")
+                 .withBody(compressed.toByteArray()));
+
+    final var metricsFile =
+      this.directory.resolve("check-versions.prom");
+
+    CheckVersions.main(new String[]{
+      "--configuration",
+      this.configPath.toString(),
+      "--metricsFile",
+      metricsFile.toString()
+    });
+
+    final var metrics = Files.readString(metricsFile);
+    assertTrue(metrics.contains(
+      "ci_check_versions_response_bytes_total{repository=\"http://127.0.0.1:10000/\"} "
+        + compressed.size() + "\n"));
+    assertTrue(metrics.contains(
+      "ci_check_versions_response_decoded_bytes_total{repository=\"http://127.0.0.1:10000/\"} "));
+    assertTrue(metrics.contains(
+      "ci_check_versions_request_bytes_total{repository=\"http://127.0.0.1:10000/\"} "));
+  }
+
+  /**
+   * Responses compressed with deflate are decompressed, whether or not the
+   * server includes the zlib wrapper.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibraryCompressedDeflate()
+    throws Exception
+  {
+    this.writeVersionsFile("moreVersions.toml");
+
+    Files.writeString(
+      this.libraryListPath,
+      "x:y\n" +
+        "y:z\n");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseTooOld.xml"
+      );
+
+    final var zlib = new ByteArrayOutputStream();
+    try (var output = new DeflaterOutputStream(zlib, new Deflater(9, false))) {
+      output.write(versionText);
+    }
+    final var raw = new ByteArrayOutputStream();
+    try (var output = new DeflaterOutputStream(raw, new Deflater(9, true))) {
+      output.write(versionText);
+    }
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(200))
+                 .withHeader("Content-Encoding", "deflate")
+                 .withBody(zlib.toByteArray()));
+    this.server0
+      .when(request().withPath("/y/z/maven-metadata.xml"))
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(200))
+                 .withHeader("Content-Encoding", "deflate")
+                 .withBody(raw.toByteArray()));
+
+    final var output = new ByteArrayOutputStream();
+    assertThrows(ExitException.class, () -> {
+      CheckVersions.run(
+        CheckVersionsContext.create(),
+        this.directory,
+        new String[]{
+          "--configuration",
+          this.configPath.toString()
+        },
+        new PrintStream(output, true, "UTF-8"));
+    });
+
+    final var text = output.toString("UTF-8");
+    assertEquals(2, text.split("Newer version 1.1.1 is available", -1).length - 1, text);
+  }
+
+  /**
+   * A response with a content coding that was not asked for fails the
+   * check.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibraryCompressedUnsupported()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(200))
+                 .withHeader("Content-Encoding", "br")
+                 .withBody(new byte[]{1, 2, 3, 4}));
+
+    final var output = new ByteArrayOutputStream();
+    assertThrows(ExitException.class, () -> {
+      CheckVersions.run(
+        CheckVersionsContext.create(),
+        this.directory,
+        new String[]{
+          "--configuration",
+          this.configPath.toString()
+        },
+        new PrintStream(output, true, "UTF-8"));
+    });
+
+    final var text = output.toString("UTF-8");
+    assertTrue(text.contains("Unsupported content coding 'br'"), text);
+  }
+
+  /**
+   * Requests to a host beyond the stream limit wait for earlier requests to
+   * complete.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testStreamsPerHostLimited()
+    throws Exception
+  {
+    this.writeVersionsFile("moreVersions.toml");
+
+    Files.writeString(
+      this.libraryListPath,
+      "x:y\n" +
+        "y:z\n" +
+        "a:b\n");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseTooOld.xml"
+      );
+
+    this.server0
+      .when(request())
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(200))
+                 .withDelay(TimeUnit.MILLISECONDS, 400L)
+                 .withBody(versionText));
+
+    final var timeStarted = System.nanoTime();
+    assertThrows(ExitException.class, () -> {
+      CheckVersions.main(new String[]{
+        "--configuration",
+        this.configPath.toString(),
+        "--maxStreamsPerHost",
+        "1"
+      });
+    });
+    final var elapsed = Duration.ofNanos(System.nanoTime() - timeStarted);
+    assertTrue(elapsed.toMillis() >= 1200L, "Waited " + elapsed);
+
+    this.server0.verify(request(), VerificationTimes.exactly(3));
+  }
+
+  /**
+   * A non-positive stream limit is rejected.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testStreamsPerHostInvalid()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.main(new String[]{
+          "--configuration",
+          this.configPath.toString(),
+          "--maxStreamsPerHost",
+          "0"
+        });
+      });
+    assertEquals(1, ex.exitCode());
+  }
+
+  /**
+   * The cache stores one entry per artifact, and no response bodies.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibraryCacheStoresNoBodies()
+    throws Exception
+  {
+    this.writeVersionsFile("moreVersions.toml");
+
+    Files.writeString(
+      this.libraryListPath,
+      "x:y\n" +
+        "y:z\n");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseTooOld.xml"
+      );
+
+    this.server0
+      .when(request())
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(200))
+                 .withBody(versionText));
+
+    final var cacheDirectory = this.directory.resolve("cache");
+    assertThrows(ExitException.class, () -> {
+      CheckVersions.main(new String[]{
+        "--configuration",
+        this.configPath.toString(),
+        "--cacheDirectory",
+        cacheDirectory.toString()
+      });
+    });
+
+    final var names = new ArrayList<String>();
+    try (var files = Files.list(cacheDirectory)) {
+      files.forEach(file -> names.add(file.getFileName().toString()));
+    }
+    assertEquals(2L, names.stream().filter(n -> n.endsWith(".properties")).count(), names.toString());
+    assertEquals(0L, names.stream().filter(n -> n.endsWith(".xml")).count(), names.toString());
+    assertTrue(Files.isRegularFile(this.directory.resolve("cache.lock")));
+  }
+
+  /**
+   * When several processes share a cache and want the same artifact at the
+   * same time, only one of them fetches it.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testLibraryCacheSharedBetweenProcesses()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var versionText =
+      resourceBytesOf(
+        CheckVersionsTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response()
+                 .withStatusCode(Integer.valueOf(200))
+                 .withDelay(TimeUnit.SECONDS, 3L)
+                 .withBody(versionText));
+
+    final var cacheDirectory = this.directory.resolve("cache");
+    final var processes = new ArrayList<Process>();
+    for (int index = 0; index < 2; ++index) {
+      processes.add(
+        new ProcessBuilder(
+          StartupArchives.javaExecutable(),
+          "-classpath",
+          System.getProperty("java.class.path"),
+          CheckVersions.class.getName(),
+          "--configuration",
+          this.configPath.toString(),
+          "--cacheDirectory",
+          cacheDirectory.toString())
+          .redirectErrorStream(true)
+          .redirectOutput(this.directory.resolve("process" + index + ".log").toFile())
+          .start());
+    }
+
+    for (int index = 0; index < processes.size(); ++index) {
+      final var process = processes.get(index);
+      assertTrue(process.waitFor(60L, TimeUnit.SECONDS));
+      assertEquals(
+        0,
+        process.exitValue(),
+        Files.readString(this.directory.resolve("process" + index + ".log")));
+    }
+
+    this.server0.verify(
+      request().withPath("/x/y/maven-metadata.xml"),
+      VerificationTimes.once()
+    );
+  }
+
+  private static String metadataOf(
+    final String group,
+    final String artifact,
+    final String release)
+  {
+    return String.join(
+      "\n",
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?>",
+      "<metadata>",
+      "  <groupId>" + group + "</groupId>",
+      "  <artifactId>" + artifact + "</artifactId>",
+      "  <versioning>",
+      "    <release>" + release + "</release>",
+      "  </versioning>",
+      "</metadata>"
+    );
+  }
+
+  /**
+   * Serve the dependency graph used by the transitive tests:
+   *
+   * <pre>
+   * x:y:1.0.0 (parent p:parent:1)
+   *   d:e:${e.version} (excluding h:i)
+   *     f:g:1.0
+   *       h:i:1.0
+   *     m:n:2.0
+   *   m:n (managed by the parent)
+   *   t:u:1.0 (test)
+   *   o:p:1.0 (optional)
+   * </pre>
+   */
+
+  private void serveTransitiveGraph()
+    throws IOException
+  {
+    final var poms = new String[][]{
+      {"/x/y/1.0.0/y-1.0.0.pom", "transitiveXY.pom"},
+      {"/p/parent/1/parent-1.pom", "transitiveParent.pom"},
+      {"/d/e/2.0/e-2.0.pom", "transitiveDE.pom"},
+      {"/f/g/1.0/g-1.0.pom", "transitiveFG.pom"},
+    };
+
+    for (final var pom : poms) {
+      this.server0
+        .when(request().withPath(pom[0]))
+        .respond(response()
+                   .withStatusCode(Integer.valueOf(200))
+                   .withBody(resourceBytesOf(
+                     CheckVersionsTest.class, this.directory, pom[1])));
+    }
+
+    final var releases = new String[][]{
+      {"x", "y", "1.0.0"},
+      {"d", "e", "2.0"},
+      {"f", "g", "1.5"},
+      {"m", "n", "4.0"},
+    };
+
+    for (final var release : releases) {
+      this.server0
+        .when(request().withPath(
+          "/" + release[0] + "/" + release[1] + "/maven-metadata.xml"))
+        .respond(response()
+                   .withStatusCode(Integer.valueOf(200))
+                   .withBody(metadataOf(release[0], release[1], release[2])));
+    }
+
+    this.server0
+      .when(request())
+      .respond(response().withStatusCode(Integer.valueOf(404)));
+  }
+
+  /**
+   * In transitive mode, the dependencies of checked libraries are walked
+   * through parent POMs, managed versions, and properties, and the
+   * out-of-date dependencies are reported with the path that pulls them
+   * in. Test, optional, and excluded dependencies are not followed, and the
+   * nearest declaration of an artifact wins.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testTransitiveOutOfDate()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    this.serveTransitiveGraph();
+
+    final var output = new ByteArrayOutputStream();
+    CheckVersions.run(
+      CheckVersionsContext.create(),
+      this.directory,
+      new String[]{
+        "--configuration",
+        this.configPath.toString(),
+        "--formatter",
+        "ndjson",
+        "--transitive"
+      },
+      new PrintStream(output, true, "UTF-8")
+    );
+
+    final var mapper = new ObjectMapper();
+    final var records = new HashMap<String, JsonNode>();
+    for (final var line : output.toString("UTF-8").split("\n")) {
+      final var record = mapper.readTree(line);
+      records.put(
+        record.get("group").asText() + ":" + record.get("artifact").asText(),
+        record);
+    }
+    assertEquals(3, records.size());
+    assertEquals("up-to-date", records.get("x:y").get("status").asText());
+
+    final var fg = records.get("f:g");
+    assertEquals("transitive-out-of-date", fg.get("status").asText());
+    assertEquals("1.0", fg.get("current").asText());
+    assertEquals("1.5", fg.get("available").asText());
+    assertEquals(
+      "[\"x:y:1.0.0\",\"d:e:2.0\",\"f:g:1.0\"]",
+      fg.get("path").toString());
+
+    final var mn = records.get("m:n");
+    assertEquals("transitive-out-of-date", mn.get("status").asText());
+    assertEquals("3.0", mn.get("current").asText());
+    assertEquals("4.0", mn.get("available").asText());
+    assertEquals(
+      "[\"x:y:1.0.0\",\"m:n:3.0\"]",
+      mn.get("path").toString());
+
+    this.server0.verify(
+      request().withPath("/p/parent/1/parent-1.pom"),
+      VerificationTimes.once()
+    );
+    this.server0.verify(
+      request().withPath("/h/i/.*"),
+      VerificationTimes.exactly(0)
+    );
+    this.server0.verify(
+      request().withPath("/t/u/.*"),
+      VerificationTimes.exactly(0)
+    );
+    this.server0.verify(
+      request().withPath("/o/p/.*"),
+      VerificationTimes.exactly(0)
+    );
+  }
+
+  /**
+   * Out-of-date transitive dependencies are listed by the plain formatter,
+   * but do not fail the check. Without {@code --transitive}, no POMs are
+   * fetched at all.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testTransitivePlain()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    this.serveTransitiveGraph();
+
+    final var plain = new ByteArrayOutputStream();
+    CheckVersions.run(
+      CheckVersionsContext.create(),
+      this.directory,
+      new String[]{
+        "--configuration",
+        this.configPath.toString()
+      },
+      new PrintStream(plain, true, "UTF-8")
+    );
+
+    assertFalse(plain.toString("UTF-8").contains("transitive"));
+    this.server0.verify(
+      request().withPath("/.*\\.pom"),
+      VerificationTimes.exactly(0)
+    );
+
+    final var transitive = new ByteArrayOutputStream();
+    CheckVersions.run(
+      CheckVersionsContext.create(),
+      this.directory,
+      new String[]{
+        "--configuration",
+        this.configPath.toString(),
+        "--transitive",
+        "--transitiveThreads",
+        "2"
+      },
+      new PrintStream(transitive, true, "UTF-8")
+    );
+
+    final var text = transitive.toString("UTF-8");
+    assertTrue(text.contains("All of the checked libraries are up-to-date."));
+    assertTrue(text.contains("2 transitive dependencies are out-of-date"));
+    assertTrue(text.contains("x:y:1.0.0 -> d:e:2.0 -> f:g:1.0"));
+    assertTrue(text.contains("x:y:1.0.0 -> m:n:3.0"));
+  }
+
+  /**
+   * In transitive mode, the sections inherited from a parent POM are
+   * interpolated with the child's properties, and the child's dependency
+   * management applies to the dependencies declared by the parent.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testTransitiveInheritance()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var poms = new String[][]{
+      {"/x/y/1.0.0/y-1.0.0.pom", "transitiveInheritedChild.pom"},
+      {"/p/inherited/1/inherited-1.pom", "transitiveInheritedParent.pom"},
+    };
+
+    for (final var pom : poms) {
+      this.server0
+        .when(request().withPath(pom[0]))
+        .respond(response()
+                   .withStatusCode(Integer.valueOf(200))
+                   .withBody(resourceBytesOf(
+                     CheckVersionsTest.class, this.directory, pom[1])));
+    }
+
+    this.serveTransitiveGraph();
+
+    final var output = new ByteArrayOutputStream();
+    CheckVersions.run(
+      CheckVersionsContext.create(),
+      this.directory,
+      new String[]{
+        "--configuration",
+        this.configPath.toString(),
+        "--formatter",
+        "ndjson",
+        "--transitive"
+      },
+      new PrintStream(output, true, "UTF-8")
+    );
+
+    final var mapper = new ObjectMapper();
+    final var records = new HashMap<String, JsonNode>();
+    for (final var line : output.toString("UTF-8").split("\n")) {
+      final var record = mapper.readTree(line);
+      records.put(
+        record.get("group").asText() + ":" + record.get("artifact").asText(),
+        record);
+    }
+    assertEquals(3, records.size());
+
+    final var fg = records.get("f:g");
+    assertEquals("transitive-out-of-date", fg.get("status").asText());
+    assertEquals("1.2", fg.get("current").asText());
+    assertEquals(
+      "[\"x:y:1.0.0\",\"f:g:1.2\"]",
+      fg.get("path").toString());
+
+    final var mn = records.get("m:n");
+    assertEquals("transitive-out-of-date", mn.get("status").asText());
+    assertEquals("3.5", mn.get("current").asText());
+    assertEquals(
+      "[\"x:y:1.0.0\",\"m:n:3.5\"]",
+      mn.get("path").toString());
+  }
+
+  /**
+   * In transitive mode, a repository that refuses to serve a POM is passed
+   * over, and the POM is fetched from the next repository.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testTransitivePomRepositoryRefused()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10001/\n" +
+        "http://127.0.0.1:10000/"
+    );
+
+    this.server1
+      .when(request().withPath("/x/y/1.0.0/y-1.0.0.pom"))
+      .respond(response().withStatusCode(Integer.valueOf(403)));
+    this.server1
+      .when(request())
+      .respond(response().withStatusCode(Integer.valueOf(404)));
+
+    this.serveTransitiveGraph();
+
+    final var output = new ByteArrayOutputStream();
+    CheckVersions.run(
+      CheckVersionsContext.create(),
+      this.directory,
+      new String[]{
+        "--configuration",
+        this.configPath.toString(),
+        "--formatter",
+        "ndjson",
+        "--transitive"
+      },
+      new PrintStream(output, true, "UTF-8")
+    );
+
+    final var mapper = new ObjectMapper();
+    final var records = new HashMap<String, JsonNode>();
+    for (final var line : output.toString("UTF-8").split("\n")) {
+      final var record = mapper.readTree(line);
+      records.put(
+        record.get("group").asText() + ":" + record.get("artifact").asText(),
+        record);
+    }
+    assertEquals(3, records.size());
+    assertEquals("up-to-date", records.get("x:y").get("status").asText());
+    assertEquals(
+      "transitive-out-of-date", records.get("f:g").get("status").asText());
+    assertEquals(
+      "transitive-out-of-date", records.get("m:n").get("status").asText());
+
+    this.server1.verify(
+      request().withPath("/x/y/1.0.0/y-1.0.0.pom"),
+      VerificationTimes.once()
+    );
+    this.server0.verify(
+      request().withPath("/x/y/1.0.0/y-1.0.0.pom"),
+      VerificationTimes.once()
+    );
+  }
+
+  /**
+   * Snapshots do not contain POMs, and so cannot be used in transitive
+   * mode.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testTransitiveSnapshotRejected()
+    throws Exception
+  {
+    this.writeVersionsFile("basicVersion.toml");
+
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath,
+      "http://127.0.0.1:10000/"
+    );
+
+    final var snapshot = this.directory.resolve("snapshot.tsv");
+    Files.writeString(snapshot, "");
+
+    final var ex =
+      assertThrows(ExitException.class, () -> {
+        CheckVersions.main(new String[]{
+          "--configuration",
+          this.configPath.toString(),
+          "--snapshot",
+          snapshot.toString(),
+          "--transitive"
+        });
+      });
+    assertEquals(1, ex.exitCode());
+  }
+
+  /**
+   * A large catalog can be checked against a slow repository running in
+   * the test process.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testFakeRepositoryManyLibraries()
+    throws Exception
+  {
+    try (var repository = FakeMavenRepository.create(1000)) {
+      repository.setLatency(Duration.ofMillis(5L), Duration.ofMillis(5L));
+
+      final var configuration =
+        repository.writeProject(this.directory, 1000);
+
+      final var output = new ByteArrayOutputStream();
+      CheckVersions.run(
+        CheckVersionsContext.create(),
+        this.directory,
+        new String[]{
+          "--configuration",
+          configuration.toString(),
+          "--threads",
+          "32",
+          "--maxStreamsPerHost",
+          "32",
+          "--requestsPerSecond",
+          "0"
+        },
+        new PrintStream(output, true, "UTF-8")
+      );
+
+      final var text = output.toString("UTF-8");
+      assertTrue(text.contains("All of the checked libraries are up-to-date."));
+      assertTrue(text.contains("1000 libraries were checked."));
+      assertEquals(1000L, repository.requests());
+      assertEquals(1000L, repository.responses(200));
+      assertEquals(
+        1L,
+        repository.requestsFor("/org/example/group99/artifact999/maven-metadata.xml"));
+    }
+  }
+
+  /**
+   * Lookups that fail, or that are throttled, by a repository running in
+   * the test process are retried until they succeed.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testFakeRepositoryErrorsRetried()
+    throws Exception
+  {
+    try (var repository = FakeMavenRepository.create(200)) {
+      repository.setLatency(Duration.ZERO, Duration.ofMillis(2L));
+      repository.setErrorRate(0.2);
+      repository.setThrottleRate(0.1, Duration.ZERO);
+
+      final var configuration =
+        repository.writeProject(this.directory, 200);
+
+      CheckVersions.run(
+        CheckVersionsContext.create(),
+        this.directory,
+        new String[]{
+          "--configuration",
+          configuration.toString(),
+          "--requestsPerSecond",
+          "0",
+          "--retryAttempts",
+          "20",
+          "--retryBaseDelayMilliseconds",
+          "1",
+          "--retryMaximumDelayMilliseconds",
+          "10"
+        },
+        new PrintStream(new ByteArrayOutputStream(), true, "UTF-8")
+      );
+
+      assertEquals(200L, repository.responses(200));
+      assertTrue(repository.responses(500) > 0L);
+      assertTrue(repository.responses(429) > 0L);
+      assertEquals(
+        repository.requests(),
+        repository.responses(200)
+          + repository.responses(500)
+          + repository.responses(429));
+    }
+  }
+
+  /**
+   * A repository running in the test process throttles requests beyond its
+   * request limit, and the client slows down until they are accepted.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testFakeRepositoryRequestLimit()
+    throws Exception
+  {
+    try (var repository = FakeMavenRepository.create(40)) {
+      repository.setRequestLimit(20);
+
+      final var configuration =
+        repository.writeProject(this.directory, 40);
+
+      CheckVersions.run(
+        CheckVersionsContext.create(),
+        this.directory,
+        new String[]{
+          "--configuration",
+          configuration.toString(),
+          "--requestsPerSecond",
+          "30",
+          "--requestBurst",
+          "8",
+          "--retryAttempts",
+          "20",
+          "--retryBaseDelayMilliseconds",
+          "50",
+          "--retryMaximumDelayMilliseconds",
+          "1000"
+        },
+        new PrintStream(new ByteArrayOutputStream(), true, "UTF-8")
+      );
+
+      assertEquals(40L, repository.responses(200));
+      assertTrue(repository.responses(429) > 0L);
+    }
+  }
+
   /**
    * Versions have the expected comparison behaviour.
    */
@@ -0,0 +1,440 @@
+package org.librarysimplified.ci.tests;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * A fake Maven repository served over HTTP from inside the test process,
+ * on an ephemeral port, so that any number of repositories can run at once.
+ *
+ * The repository holds {@code artifactCount} synthetic artifacts, named as
+ * by {@link #moduleName(int)}, with metadata generated on request. Network
+ * conditions can be changed at any time: each response can be delayed by a
+ * fixed latency plus a random jitter, a fraction of requests can fail with
+ * {@code 500} or be throttled with {@code 429}, and requests beyond a
+ * per-second limit are throttled as a real repository would. Delayed
+ * responses are sent from a scheduler, so slow responses do not tie up
+ * server threads.
+ */
+
+public final class FakeMavenRepository implements AutoCloseable
+{
+  private static final Pattern METADATA_PATH =
+    Pattern.compile("/org/example/group([0-9]+)/artifact([0-9]+)/maven-metadata\\.xml");
+
+  /*
+   * The JDK server writes the response headers and the body separately.
+   * Without TCP_NODELAY, the body of each response on a kept-alive
+   * connection then waits for the client's delayed acknowledgement of the
+   * headers, which adds around 40ms to every request. The property is read
+   * once, when the first server is created in the process.
+   */
+
+  static {
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final ScheduledExecutorService scheduler;
+  private final int artifactCount;
+  private final LongAdder requests;
+  private final ConcurrentHashMap<Integer, LongAdder> statuses;
+  private final ConcurrentHashMap<String, LongAdder> paths;
+  private final AtomicLong windowStart;
+  private final AtomicInteger windowRequests;
+  private volatile long latencyNanos;
+  private volatile long jitterNanos;
+  private volatile double errorRate;
+  private volatile double throttleRate;
+  private volatile long retryAfterSeconds;
+  private volatile int requestLimit;
+
+  private FakeMavenRepository(
+    final HttpServer inServer,
+    final ExecutorService inExecutor,
+    final ScheduledExecutorService inScheduler,
+    final int inArtifactCount)
+  {
+    this.server =
+      Objects.requireNonNull(inServer, "server");
+    this.executor =
+      Objects.requireNonNull(inExecutor, "executor");
+    this.scheduler =
+      Objects.requireNonNull(inScheduler, "scheduler");
+    this.artifactCount = inArtifactCount;
+    this.requests = new LongAdder();
+    this.statuses = new ConcurrentHashMap<>();
+    this.paths = new ConcurrentHashMap<>();
+    this.windowStart = new AtomicLong(System.nanoTime());
+    this.windowRequests = new AtomicInteger(0);
+  }
+
+  /**
+   * Start a repository.
+   *
+   * @param artifactCount The number of artifacts in the repository
+   *
+   * @return The repository
+   *
+   * @throws IOException On errors
+   */
+
+  public static FakeMavenRepository create(
+    final int artifactCount)
+    throws IOException
+  {
+    final var threadIndex = new AtomicInteger(0);
+    final var executor =
+      Executors.newFixedThreadPool(8, runnable -> {
+        final var thread = new Thread(runnable);
+        thread.setName(
+          String.format("FakeMavenRepository-%d", threadIndex.incrementAndGet()));
+        thread.setDaemon(true);
+        return thread;
+      });
+    final var scheduler =
+      Executors.newScheduledThreadPool(4, runnable -> {
+        final var thread = new Thread(runnable);
+        thread.setName(
+          String.format("FakeMavenRepository-%d", threadIndex.incrementAndGet()));
+        thread.setDaemon(true);
+        return thread;
+      });
+
+    final var server =
+      HttpServer.create(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+
+    final var repository =
+      new FakeMavenRepository(server, executor, scheduler, artifactCount);
+
+    server.setExecutor(executor);
+    server.createContext("/", repository::handle);
+    server.start();
+    return repository;
+  }
+
+  /**
+   * @param index The artifact index
+   *
+   * @return The {@code group:artifact} name of the artifact with the given
+   * index
+   */
+
+  public static String moduleName(
+    final int index)
+  {
+    return String.format("org.example.group%d:artifact%d", index / 10, index);
+  }
+
+  /**
+   * @param index The artifact index
+   *
+   * @return The latest release of the artifact with the given index
+   */
+
+  public static String releaseOf(
+    final int index)
+  {
+    return String.format("1.%d.0", index % 50);
+  }
+
+  /**
+   * @return The base URI of the repository, with a trailing slash
+   */
+
+  public String address()
+  {
+    return String.format(
+      "http://127.0.0.1:%d/", this.server.getAddress().getPort());
+  }
+
+  /**
+   * Delay every response.
+   *
+   * @param latency The fixed delay
+   * @param jitter  The maximum random delay added to the fixed delay
+   */
+
+  public void setLatency(
+    final Duration latency,
+    final Duration jitter)
+  {
+    this.latencyNanos = latency.toNanos();
+    this.jitterNanos = jitter.toNanos();
+  }
+
+  /**
+   * @param rate The fraction of requests that fail with {@code 500}
+   */
+
+  public void setErrorRate(
+    final double rate)
+  {
+    this.errorRate = rate;
+  }
+
+  /**
+   * @param rate       The fraction of requests that are throttled with
+   *                   {@code 429}
+   * @param retryAfter The delay given in {@code Retry-After}
+   */
+
+  public void setThrottleRate(
+    final double rate,
+    final Duration retryAfter)
+  {
+    this.throttleRate = rate;
+    this.retryAfterSeconds = retryAfter.toSeconds();
+  }
+
+  /**
+   * @param requestsPerSecond The number of requests accepted in each second,
+   *                          beyond which requests are throttled with
+   *                          {@code 429} and asked to retry after a second,
+   *                          or {@code 0} for no limit
+   */
+
+  public void setRequestLimit(
+    final int requestsPerSecond)
+  {
+    this.requestLimit = requestsPerSecond;
+  }
+
+  /**
+   * @return The number of requests received
+   */
+
+  public long requests()
+  {
+    return this.requests.sum();
+  }
+
+  /**
+   * @param status An HTTP status code
+   *
+   * @return The number of responses sent with the given status
+   */
+
+  public long responses(
+    final int status)
+  {
+    final var count = this.statuses.get(Integer.valueOf(status));
+    return count == null ? 0L : count.sum();
+  }
+
+  /**
+   * @param path A request path
+   *
+   * @return The number of requests received for the given path
+   */
+
+  public long requestsFor(
+    final String path)
+  {
+    final var count = this.paths.get(path);
+    return count == null ? 0L : count.sum();
+  }
+
+  /**
+   * Write a project whose version catalog declares the latest release of
+   * each of the first {@code libraryCount} artifacts, all of which are
+   * checked against this repository.
+   *
+   * @param directory    The directory to which the project is written
+   * @param libraryCount The number of libraries
+   *
+   * @return The configuration file of the project
+   *
+   * @throws IOException On errors
+   */
+
+  public Path writeProject(
+    final Path directory,
+    final int libraryCount)
+    throws IOException
+  {
+    final var catalog = new StringBuilder(libraryCount * 96);
+    final var libraries = new StringBuilder(libraryCount * 40);
+
+    catalog.append("[versions]\n");
+    for (int index = 0; index < libraryCount; ++index) {
+      catalog.append(String.format("v%d = \"%s\"\n", index, releaseOf(index)));
+    }
+    catalog.append("\n[libraries]\n");
+    for (int index = 0; index < libraryCount; ++index) {
+      catalog.append(
+        String.format(
+          "l%d = { module = \"%s\", version.ref = \"v%d\" }\n",
+          index,
+          moduleName(index),
+          index));
+      libraries.append(moduleName(index)).append('\n');
+    }
+
+    final var toml =
+      Files.writeString(directory.resolve("versions.toml"), catalog);
+    final var libraryList =
+      Files.writeString(directory.resolve("libraryList.txt"), libraries);
+    final var repositoryList =
+      Files.writeString(
+        directory.resolve("libraryRepositoryList.txt"), this.address());
+
+    final var config = new Properties();
+    config.setProperty("versionCatalogFile", toml.toString());
+    config.setProperty("libraryListFile", libraryList.toString());
+    config.setProperty("libraryRepositoryFile", repositoryList.toString());
+
+    final var configuration = directory.resolve("checkVersion.properties");
+    try (var output = Files.newOutputStream(configuration)) {
+      config.store(output, "");
+    }
+    return configuration;
+  }
+
+  private void handle(
+    final HttpExchange exchange)
+  {
+    this.requests.increment();
+
+    final var path = exchange.getRequestURI().getPath();
+    this.paths.computeIfAbsent(path, p -> new LongAdder()).increment();
+
+    final var random = ThreadLocalRandom.current();
+    final var delay =
+      this.latencyNanos
+        + (this.jitterNanos > 0L ? random.nextLong(this.jitterNanos) : 0L);
+
+    final int status;
+    final byte[] body;
+    if (this.isOverLimit()) {
+      status = 429;
+      body = null;
+      exchange.getResponseHeaders().add("Retry-After", "1");
+    } else if (random.nextDouble() < this.throttleRate) {
+      status = 429;
+      body = null;
+      exchange.getResponseHeaders()
+        .add("Retry-After", Long.toString(this.retryAfterSeconds));
+    } else if (random.nextDouble() < this.errorRate) {
+      status = 500;
+      body = null;
+    } else {
+      body = this.metadataFor(path);
+      status = body == null ? 404 : 200;
+    }
+
+    if (delay <= 0L) {
+      this.respond(exchange, status, body);
+    } else {
+      this.scheduler.schedule(
+        () -> this.respond(exchange, status, body), delay, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private boolean isOverLimit()
+  {
+    final var limit = this.requestLimit;
+    if (limit <= 0) {
+      return false;
+    }
+
+    final var now = System.nanoTime();
+    final var start = this.windowStart.get();
+    if (now - start >= 1_000_000_000L && this.windowStart.compareAndSet(start, now)) {
+      this.windowRequests.set(0);
+    }
+    return this.windowRequests.incrementAndGet() > limit;
+  }
+
+  private void respond(
+    final HttpExchange exchange,
+    final int status,
+    final byte[] body)
+  {
+    this.statuses.computeIfAbsent(Integer.valueOf(status), s -> new LongAdder())
+      .increment();
+
+    try {
+      if (body == null || "HEAD".equals(exchange.getRequestMethod())) {
+        exchange.sendResponseHeaders(status, -1L);
+      } else {
+        exchange.getResponseHeaders().add("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+      }
+    } catch (final IOException e) {
+      // The client went away.
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private byte[] metadataFor(
+    final String path)
+  {
+    final var matcher = METADATA_PATH.matcher(path);
+    if (!matcher.matches()) {
+      return null;
+    }
+
+    final int group;
+    final int index;
+    try {
+      group = Integer.parseInt(matcher.group(1));
+      index = Integer.parseInt(matcher.group(2));
+    } catch (final NumberFormatException e) {
+      return null;
+    }
+    if (index >= this.artifactCount || index / 10 != group) {
+      return null;
+    }
+
+    final var release = releaseOf(index);
+    final var text = new StringBuilder(512);
+    text.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    text.append("<metadata>\n");
+    text.append("  <groupId>org.example.group").append(group).append("</groupId>\n");
+    text.append("  <artifactId>artifact").append(index).append("</artifactId>\n");
+    text.append("  <versioning>\n");
+    text.append("    <latest>").append(release).append("</latest>\n");
+    text.append("    <release>").append(release).append("</release>\n");
+    text.append("    <versions>\n");
+    text.append("      <version>1.0.0</version>\n");
+    text.append("      <version>").append(release).append("</version>\n");
+    text.append("    </versions>\n");
+    text.append("    <lastUpdated>20200930144951</lastUpdated>\n");
+    text.append("  </versioning>\n");
+    text.append("</metadata>\n");
+    return text.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void close()
+  {
+    this.server.stop(0);
+    this.scheduler.shutdownNow();
+    this.executor.shutdownNow();
+  }
+}
@@ -0,0 +1,288 @@
+package org.librarysimplified.ci.tests;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.librarysimplified.ci.serve.Serve;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.verify.VerificationTimes;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.librarysimplified.ci.tests.TestDirectories.resourceBytesOf;
+import static org.librarysimplified.ci.tests.TestDirectories.resourceOf;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+public final class ServeTest
+{
+  private Path directory;
+  private Path libraryListPath;
+  private Path libraryRepositoryListPath;
+  private ClientAndServer server0;
+  private Serve serve;
+  private HttpClient client;
+  private String token;
+
+  @BeforeEach
+  public void setup()
+    throws Exception
+  {
+    this.directory =
+      TestDirectories.createTempDirectory();
+    this.libraryListPath =
+      this.directory.resolve("libraryList.txt");
+    this.libraryRepositoryListPath =
+      this.directory.resolve("libraryRepositoryList.txt");
+
+    final var config = new Properties();
+    config.setProperty(
+      "versionCatalogFile", "versions.toml");
+    config.setProperty(
+      "libraryListFile", "libraryList.txt");
+    config.setProperty(
+      "libraryRepositoryFile", "libraryRepositoryList.txt");
+
+    try (var output =
+           Files.newOutputStream(this.directory.resolve("checkVersion.properties"))) {
+      config.store(output, "");
+    }
+
+    resourceOf(ServeTest.class, this.directory, "basicVersion.toml");
+    Files.move(
+      this.directory.resolve("basicVersion.toml"),
+      this.directory.resolve("versions.toml"));
+
+    this.server0 =
+      startClientAndServer(Integer.valueOf(10000));
+    this.serve =
+      Serve.start(new String[]{
+        "--port",
+        "0",
+        "--tokenFile",
+        this.directory.resolve("daemon.token").toString()
+      });
+    this.client =
+      HttpClient.newHttpClient();
+    this.token =
+      Files.readString(this.serve.tokenFile(), StandardCharsets.US_ASCII).trim();
+  }
+
+  @AfterEach
+  public void tearDown()
+  {
+    this.serve.close();
+    this.server0.stop();
+  }
+
+  private HttpResponse<String> post(
+    final String command,
+    final String body)
+    throws IOException, InterruptedException
+  {
+    return this.client.send(
+      HttpRequest.newBuilder()
+        .uri(URI.create(String.format(
+          "http://127.0.0.1:%d/%s", this.serve.port(), command)))
+        .header("X-Working-Directory", this.directory.toString())
+        .header("X-Token", this.token)
+        .POST(HttpRequest.BodyPublishers.ofString(body))
+        .build(),
+      HttpResponse.BodyHandlers.ofString()
+    );
+  }
+
+  /**
+   * A check run by the server succeeds, relative paths are resolved against
+   * the given working directory, and a repeated check reuses the result of
+   * the earlier lookup.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testCheckVersionsRepeated()
+    throws Exception
+  {
+    Files.writeString(
+      this.libraryListPath, "x:y");
+    Files.writeString(
+      this.libraryRepositoryListPath, "http://127.0.0.1:10000/");
+
+    final var versionText =
+      resourceBytesOf(
+        ServeTest.class,
+        this.directory,
+        "basicVersionResponseOK.xml"
+      );
+
+    this.server0
+      .when(request().withPath("/x/y/maven-metadata.xml"))
+      .respond(response().withStatusCode(Integer.valueOf(200)).withBody(
+        versionText));
+
+    for (int index = 0; index < 2; ++index) {
+      final var result =
+        this.post(
+          "check-versions",
+          "--configuration\ncheckVersion.properties\n");
+
+      assertEquals(200, result.statusCode());
+      assertEquals(
+        "0", result.headers().firstValue("X-Exit-Code").orElseThrow());
+      assertTrue(
+        result.body().contains("1 libraries were checked."),
+        result.body());
+    }
+
+    this.server0.verify(
+      request().withPath("/x/y/maven-metadata.xml"),
+      VerificationTimes.exactly(1)
+    );
+  }
+
+  /**
+   * A failing check is reported through the exit code header, along with the
+   * messages logged by the check.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testCheckVersionsFails()
+    throws Exception
+  {
+    final var result =
+      this.post("check-versions", "--formatter\nnonexistent\n");
+
+    assertEquals(200, result.statusCode());
+    assertEquals(
+      "1", result.headers().firstValue("X-Exit-Code").orElseThrow());
+    assertTrue(
+      result.headers().allValues("X-Log").stream()
+        .anyMatch(m -> m.startsWith("SEVERE")),
+      result.headers().toString());
+  }
+
+  /**
+   * Requests without a working directory are rejected.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testWorkingDirectoryRequired()
+    throws Exception
+  {
+    final var result =
+      this.client.send(
+        HttpRequest.newBuilder()
+          .uri(URI.create(String.format(
+            "http://127.0.0.1:%d/check-versions", this.serve.port())))
+          .header("X-Token", this.token)
+          .POST(HttpRequest.BodyPublishers.ofString(""))
+          .build(),
+        HttpResponse.BodyHandlers.ofString()
+      );
+
+    assertEquals(400, result.statusCode());
+  }
+
+  /**
+   * The token is written to a file that only the current user can read, and
+   * requests that do not present it are rejected before anything is run.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testTokenRequired()
+    throws Exception
+  {
+    if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      assertEquals(
+        "rw-------",
+        PosixFilePermissions.toString(
+          Files.getPosixFilePermissions(this.serve.tokenFile())));
+    }
+
+    final var metricsFile = this.directory.resolve("metrics.prom");
+    for (final var presented : new String[]{null, "", "0" + this.token.substring(1)}) {
+      final var builder =
+        HttpRequest.newBuilder()
+          .uri(URI.create(String.format(
+            "http://127.0.0.1:%d/check-versions", this.serve.port())))
+          .header("X-Working-Directory", this.directory.toString())
+          .POST(HttpRequest.BodyPublishers.ofString(
+            "--metricsFile\n" + metricsFile + "\n"));
+      if (presented != null) {
+        builder.header("X-Token", presented);
+      }
+
+      final var result =
+        this.client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+      assertEquals(403, result.statusCode());
+    }
+
+    assertFalse(Files.exists(metricsFile));
+  }
+
+  /**
+   * Every response gives the checksum of the server's jar file, and a
+   * request that expects a different jar file is rejected.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testJarChecksumMismatch()
+    throws Exception
+  {
+    final var result =
+      this.client.send(
+        HttpRequest.newBuilder()
+          .uri(URI.create(String.format(
+            "http://127.0.0.1:%d/check-versions", this.serve.port())))
+          .header("X-Working-Directory", this.directory.toString())
+          .header("X-Token", this.token)
+          .header("X-Jar-SHA256", "0".repeat(64))
+          .POST(HttpRequest.BodyPublishers.ofString("--formatter\nnonexistent\n"))
+          .build(),
+        HttpResponse.BodyHandlers.ofString()
+      );
+
+    assertEquals(409, result.statusCode());
+    assertEquals(
+      this.serve.jarChecksum(),
+      result.headers().firstValue("X-Jar-SHA256").orElseThrow());
+  }
+
+  /**
+   * The token file is removed when the server is closed.
+   *
+   * @throws Exception On errors
+   */
+
+  @Test
+  public void testTokenFileRemoved()
+    throws Exception
+  {
+    assertTrue(Files.exists(this.serve.tokenFile()));
+    this.serve.close();
+    assertFalse(Files.exists(this.serve.tokenFile()));
+  }
+}
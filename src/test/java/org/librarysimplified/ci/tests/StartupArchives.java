@@ -0,0 +1,184 @@
+package org.librarysimplified.ci.tests;
+
+import org.librarysimplified.ci.Main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Produce a class-data-sharing archive for the command-line jar. This is
+ * run by the build after the jar has been produced.
+ *
+ * The commands are run against a {@link StartupFixture} in a separate JVM
+ * that loads the application from the jar, and the classes loaded by that
+ * JVM are written to a class list ({@code ci-tools.classlist} beside
+ * {@code ci-tools.jar}). The class list is then used to dump an archive
+ * ({@code ci-tools.jsa}). A JVM can only use an archive with the exact jar
+ * file (including its modification time) from which the archive was
+ * dumped, so the class list is kept so that archives can be dumped again
+ * wherever the jar is installed. If a second argument is given, the class
+ * list is also copied to that file, so that it can be installed beside
+ * {@code ci-tools.jar} as {@code ci-tools.sh} expects.
+ */
+
+public final class StartupArchives
+{
+  private static final Logger LOG = Logger.getLogger("StartupArchives");
+
+  private StartupArchives()
+  {
+
+  }
+
+  /**
+   * @param jar The command-line jar
+   *
+   * @return The class list for the given jar
+   */
+
+  public static Path classListOf(
+    final Path jar)
+  {
+    return siblingOf(jar, ".classlist");
+  }
+
+  /**
+   * @param jar The command-line jar
+   *
+   * @return The archive for the given jar
+   */
+
+  public static Path archiveOf(
+    final Path jar)
+  {
+    return siblingOf(jar, ".jsa");
+  }
+
+  private static Path siblingOf(
+    final Path jar,
+    final String suffix)
+  {
+    final var name = jar.getFileName().toString();
+    final var base =
+      name.endsWith(".jar") ? name.substring(0, name.length() - 4) : name;
+    return jar.resolveSibling(base + suffix);
+  }
+
+  /**
+   * @return The {@code java} executable of the running JVM
+   */
+
+  public static String javaExecutable()
+  {
+    return Paths.get(System.getProperty("java.home"), "bin", "java")
+      .toString();
+  }
+
+  public static void main(
+    final String[] args)
+    throws Exception
+  {
+    if (args.length < 1 || args.length > 2) {
+      throw new IllegalArgumentException(
+        "usage: StartupArchives <jar> [<installed class list>]");
+    }
+
+    final var jar = Paths.get(args[0]).toAbsolutePath();
+    final var classList = classListOf(jar);
+    final var archive = archiveOf(jar);
+
+    try (var fixture = StartupFixture.create()) {
+      final var command = new ArrayList<String>();
+      command.add(javaExecutable());
+      command.add("-XX:DumpLoadedClassList=" + classList);
+      command.add("-classpath");
+      command.add(jar + File.pathSeparator + System.getProperty("java.class.path"));
+      command.add(Training.class.getName());
+      command.addAll(fixture.checkVersionsArguments());
+      command.add("--");
+      command.addAll(fixture.checkCommitsSinceArguments());
+
+      run("training", command, jar.resolveSibling("cds-training.log"));
+    }
+
+    run(
+      "dump",
+      List.of(
+        javaExecutable(),
+        "-Xshare:dump",
+        "-XX:SharedClassListFile=" + classList,
+        "-XX:SharedArchiveFile=" + archive,
+        "-classpath",
+        jar.toString()
+      ),
+      jar.resolveSibling("cds-dump.log")
+    );
+
+    LOG.info("Wrote " + classList);
+    LOG.info("Wrote " + archive);
+
+    if (args.length == 2) {
+      final var installed = Paths.get(args[1]).toAbsolutePath();
+      Files.copy(classList, installed, StandardCopyOption.REPLACE_EXISTING);
+      LOG.info("Installed " + classList + " as " + installed);
+    }
+  }
+
+  private static void run(
+    final String name,
+    final List<String> command,
+    final Path log)
+    throws IOException, InterruptedException
+  {
+    final var process =
+      new ProcessBuilder(command)
+        .redirectErrorStream(true)
+        .redirectOutput(log.toFile())
+        .start();
+
+    final var exitCode = process.waitFor();
+    if (exitCode != 0) {
+      throw new IOException(
+        String.format(
+          "The %s process failed with exit code %d (see %s)%n%s",
+          name,
+          Integer.valueOf(exitCode),
+          log,
+          Files.readString(log)));
+    }
+  }
+
+  /**
+   * The training run. Each group of arguments, separated by {@code --}, is
+   * passed to {@link Main} in turn.
+   */
+
+  public static final class Training
+  {
+    private Training()
+    {
+
+    }
+
+    public static void main(
+      final String[] args)
+      throws Exception
+    {
+      var start = 0;
+      for (int index = 0; index <= args.length; ++index) {
+        if (index == args.length || "--".equals(args[index])) {
+          Main.main(Arrays.copyOfRange(args, start, index));
+          start = index + 1;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,179 @@
+package org.librarysimplified.ci.tests;
+
+import com.sun.net.httpserver.HttpServer;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.PersonIdent;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import static org.librarysimplified.ci.tests.TestDirectories.resourceBytesOf;
+import static org.librarysimplified.ci.tests.TestDirectories.resourceOf;
+
+/**
+ * A local environment against which the commands can be run without any
+ * network access: a Maven repository served over HTTP on an ephemeral port,
+ * a version catalog whose libraries live in that repository, and a git
+ * repository with a release tag. The fixture is used to train the
+ * class-data-sharing archive, and by the startup benchmarks.
+ */
+
+public final class StartupFixture implements AutoCloseable
+{
+  private final Path directory;
+  private final HttpServer server;
+  private final Path configuration;
+  private final Path gitDirectory;
+
+  private StartupFixture(
+    final Path inDirectory,
+    final HttpServer inServer,
+    final Path inConfiguration,
+    final Path inGitDirectory)
+  {
+    this.directory = inDirectory;
+    this.server = inServer;
+    this.configuration = inConfiguration;
+    this.gitDirectory = inGitDirectory;
+  }
+
+  /**
+   * Create a fixture.
+   *
+   * @return The fixture
+   *
+   * @throws Exception On errors
+   */
+
+  public static StartupFixture create()
+    throws Exception
+  {
+    final var directory =
+      TestDirectories.createTempDirectory();
+
+    final var metadata =
+      resourceBytesOf(StartupFixture.class, directory, "basicVersionResponseOK.xml");
+
+    final var server =
+      HttpServer.create(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+
+    server.createContext("/", exchange -> {
+      try {
+        if (exchange.getRequestURI().getPath().endsWith("/maven-metadata.xml")) {
+          exchange.sendResponseHeaders(200, metadata.length);
+          exchange.getResponseBody().write(metadata);
+        } else {
+          exchange.sendResponseHeaders(404, -1L);
+        }
+      } finally {
+        exchange.close();
+      }
+    });
+    server.start();
+
+    final var toml =
+      resourceOf(StartupFixture.class, directory, "basicVersion.toml");
+    final var libraryList =
+      Files.writeString(directory.resolve("libraryList.txt"), "x:y");
+    final var repositoryList =
+      Files.writeString(
+        directory.resolve("libraryRepositoryList.txt"),
+        String.format("http://127.0.0.1:%d/", server.getAddress().getPort()));
+
+    final var config = new Properties();
+    config.setProperty("versionCatalogFile", toml.toString());
+    config.setProperty("libraryListFile", libraryList.toString());
+    config.setProperty("libraryRepositoryFile", repositoryList.toString());
+
+    final var configuration = directory.resolve("checkVersion.properties");
+    try (var output = Files.newOutputStream(configuration)) {
+      config.store(output, "");
+    }
+
+    final var gitDirectory = directory.resolve("git").resolve(".git");
+    try (var git = Git.init()
+      .setDirectory(gitDirectory.getParent().toFile())
+      .setGitDir(gitDirectory.toFile())
+      .setInitialBranch("develop")
+      .call()) {
+      final var now = Instant.now();
+      final var author =
+        new PersonIdent(git.getRepository());
+      final var released =
+        new PersonIdent(author, Date.from(now));
+
+      final var release =
+        git.commit()
+          .setMessage("Release")
+          .setSign(Boolean.FALSE)
+          .setAllowEmpty(true)
+          .setCommitter(released)
+          .call();
+
+      git.tag()
+        .setName("v1.0.0")
+        .setMessage("v1.0.0")
+        .setSigned(false)
+        .setTagger(released)
+        .setObjectId(release)
+        .call();
+
+      git.commit()
+        .setMessage("Change")
+        .setSign(Boolean.FALSE)
+        .setAllowEmpty(true)
+        .setCommitter(released)
+        .call();
+    }
+
+    return new StartupFixture(directory, server, configuration, gitDirectory);
+  }
+
+  /**
+   * @return The arguments to {@code ci-tools.jar} that check the versions of
+   * the fixture's libraries
+   */
+
+  public List<String> checkVersionsArguments()
+  {
+    return List.of(
+      "check-versions",
+      "--configuration",
+      this.configuration.toString()
+    );
+  }
+
+  /**
+   * @return The arguments to {@code ci-tools.jar} that check the commits in
+   * the fixture's git repository
+   */
+
+  public List<String> checkCommitsSinceArguments()
+  {
+    return List.of(
+      "check-commits-since",
+      "--project",
+      "Fixture/Startup",
+      "--branch",
+      "develop",
+      "--repository",
+      this.gitDirectory.toString()
+    );
+  }
+
+  @Override
+  public void close()
+    throws IOException
+  {
+    this.server.stop(0);
+    TestDirectories.deleteDirectory(this.directory);
+  }
+}